@@ -65,7 +65,7 @@ public class Main {
         // =========================
         Printer.printlnGreen("STEP 1: Cross-Validation for classifier & feature selection");
 
-        Instances allData = datasetController.convertTablesawToWekaInstances(
+        Instances allData = datasetController.loadDatasetAInstances(
                 datasetA,
                 releases.stream().map(Release::getReleaseName).toList(),
                 projectName + "_CV"
@@ -113,7 +113,7 @@ public class Main {
         // =========================
         Printer.printlnGreen("STEP 2: Training final model on full dataset (no leakage)");
 
-        Instances finalTraining = datasetController.convertTablesawToWekaInstances(
+        Instances finalTraining = datasetController.loadDatasetAInstances(
                 datasetA,
                 releases.stream().map(Release::getReleaseName).toList(),
                 projectName + "_final"
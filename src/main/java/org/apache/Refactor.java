@@ -7,6 +7,8 @@ import org.apache.controller.milestone1.MetricsController;
 import org.apache.logging.Printer;
 import org.apache.model.AnalyzedClass;
 import org.apache.model.Release;
+import org.apache.utilities.dataset.DatasetCsvReader;
+import org.apache.utilities.dataset.InstancesCache;
 import org.apache.utilities.writer.CsvWriter;
 import weka.attributeSelection.InfoGainAttributeEval;
 import weka.attributeSelection.Ranker;
@@ -17,8 +19,8 @@ import weka.classifiers.trees.RandomTree;
 import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.core.converters.CSVLoader;
-import weka.core.converters.ConverterUtils.DataSource;
 import weka.filters.Filter;
 import weka.filters.supervised.attribute.AttributeSelection;
 import weka.filters.supervised.instance.SMOTE;
@@ -43,6 +45,18 @@ public class Refactor {
     private static final String STORM_CLEANED_CSV = "refactor/storm_cleaned_temp.csv";
     private static final String BOOKKEEPER_CLEANED_CSV = "refactor/bookkeeper_cleaned_temp.csv";
 
+    // Preprocessing del training: da aggiornare insieme a PREPROCESS_VERSION se cambia il codice dei filtri
+    private static final int PREPROCESS_VERSION = 1;
+    private static final String[] HISTORICAL_ATTRIBUTES = {
+            // Metriche storiche da CsvWriter
+            "Revisions", "Authors", "TotalChurn", "MaxChurn", "AvgChurn",
+            "MethodRevisions", "MethodAuthors", "MethodAge", "MethodHistory",
+            "MethodAddedLOC", "MethodRemovedLOC", "MethodTotalChurn", "MethodMaxChurn", "MethodAvgChurn",
+            // Altre metriche storiche possibili
+            "Release"
+    };
+    private static final double RANKER_THRESHOLD = 0.00;
+
     public static void main(String[] args) throws Exception {
 
         Printer.printlnGreen("\n=== REFACTOR ANALYSIS - FASE 1: CALCOLO METRICHE ===\n");
@@ -117,7 +131,8 @@ public class Refactor {
             Instances trainRaw = loadTrainingSet(trainingPath);
             if (trainRaw == null || trainRaw.numInstances()==0) return;
 
-            Instances trainProcessed = preprocessLikeOriginal(trainRaw);
+            Instances trainProcessed = InstancesCache.shared().get(Paths.get(trainingPath), preprocessVariant(),
+                    () -> preprocessLikeOriginal(trainRaw));
             Printer.printlnGreen("✓ Training preprocessato (feature selection applicata)");
             prepareBugginessAttribute(trainProcessed, true);
 
@@ -154,7 +169,7 @@ public class Refactor {
 
     private static Instances loadTrainingSet(String trainingPath) {
         try {
-            Instances trainRaw = new DataSource(trainingPath).getDataSet();
+            Instances trainRaw = DatasetCsvReader.loadDataSource(trainingPath);
             if (trainRaw.classIndex() == -1) {
                 trainRaw.setClassIndex(trainRaw.numAttributes() - 1);
             }
@@ -282,13 +297,7 @@ public class Refactor {
         data = Filter.useFilter(data, removeStrings);
 
         // 2. RIMOZIONE METRICHE STORICHE (non azionabili per What-If)
-        String[] toDelete = {
-                // Metriche storiche da CsvWriter
-                "Revisions", "Authors", "TotalChurn", "MaxChurn", "AvgChurn",
-                // Altre metriche storiche possibili
-                "Release"
-        };
-        for (String colName : toDelete) {
+        for (String colName : HISTORICAL_ATTRIBUTES) {
             Attribute attr = data.attribute(colName);
             if (attr != null) {
                 Remove rm = new Remove();
@@ -299,17 +308,32 @@ public class Refactor {
         }
 
         // 3. FEATURE SELECTION (Information Gain)
+        AttributeSelection fs = featureSelection();
+        fs.setInputFormat(data);
+        data = Filter.useFilter(data, fs);
+
+
+        return data;
+    }
+
+    private static AttributeSelection featureSelection() {
         AttributeSelection fs = new AttributeSelection();
         InfoGainAttributeEval eval = new InfoGainAttributeEval();
         Ranker search = new Ranker();
-        search.setThreshold(0.00);
+        search.setThreshold(RANKER_THRESHOLD);
         fs.setEvaluator(eval);
         fs.setSearch(search);
-        fs.setInputFormat(data);
-        data = Filter.useFilter(data, fs);
-
+        return fs;
+    }
 
-        return data;
+    /**
+     * Variante di InstancesCache per il training preprocessato: attributi rimossi, configurazione completa della
+     * feature selection (valutatore e Ranker con la soglia) e versione del preprocessing.
+     */
+    private static String preprocessVariant() {
+        return DatasetCsvReader.cacheVariant("refactor-preprocess/" + PREPROCESS_VERSION
+                + "|remove=string," + String.join(",", HISTORICAL_ATTRIBUTES)
+                + "|select=" + Utils.joinOptions(featureSelection().getOptions()));
     }
 
     /**
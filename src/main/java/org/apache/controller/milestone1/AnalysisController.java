@@ -1,6 +1,7 @@
 package org.apache.controller.milestone1;
 
 import org.apache.logging.Printer;
+import org.apache.utilities.ExecutionPools;
 import org.apache.utilities.JsonReader;
 import org.json.JSONObject;
 
@@ -8,7 +9,6 @@ import java.util.Iterator;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 
 public class AnalysisController {
@@ -25,7 +25,10 @@ public class AnalysisController {
 
         CountDownLatch latch = new CountDownLatch(numTasks);
 
-        try (ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())) {
+        Printer.print("Esecuzione " + (ExecutionPools.isVirtual() ? "su virtual thread" : "su thread di piattaforma")
+                + ", pool CPU di " + ExecutionPools.cpuThreads() + " thread.\n");
+        // I progetti passano gran parte del tempo in attesa di Jira, Git e PMD: un virtual thread per progetto
+        try (ExecutorService executorService = ExecutionPools.newIoExecutor(Runtime.getRuntime().availableProcessors())) {
             int count = 0;
             while (keys.hasNext()) {
                 String key = keys.next();
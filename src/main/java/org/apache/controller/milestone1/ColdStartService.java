@@ -0,0 +1,216 @@
+package org.apache.controller.milestone1;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.Printer;
+import org.apache.model.JiraSnapshot;
+import org.apache.utilities.ExecutionPools;
+import org.apache.utilities.RunConfig;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Valori di P per il cold start di Proportion, calcolati su un insieme di progetti Apache di riferimento
+ * (COLD_START_PROJECTS) invece che sul solo progetto analizzato.
+ * I progetti mancanti o scaduti (più vecchi di COLD_START_MAX_AGE_DAYS giorni) vengono scaricati in parallelo;
+ * i valori sono salvati con la data di calcolo in COLD_START_CACHE_FILE (default cold_start_proportions.json nella
+ * cartella di RunConfig.cacheDirectory()), quindi nelle esecuzioni successive sono disponibili subito.
+ * Il calcolo avviene una sola volta per JVM, solo quando un progetto ha davvero bisogno del cold start
+ * (meno di cinque ticket con IV nota), ed è condiviso da tutti i progetti.
+ */
+public class ColdStartService {
+
+    private static final String ENABLED_KEY = "COLD_START_SERVICE";
+    private static final String PROJECTS_KEY = "COLD_START_PROJECTS";
+    private static final String CACHE_FILE_KEY = "COLD_START_CACHE_FILE";
+    private static final String MAX_AGE_KEY = "COLD_START_MAX_AGE_DAYS";
+    private static final String DEFAULT_PROJECTS = "AVRO,BOOKKEEPER,OPENJPA,STORM,SYNCOPE,TAJO,ZOOKEEPER";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * P medio di un progetto di riferimento; proportion vale -1 se il progetto non ha ticket utilizzabili.
+     */
+    public record Entry(String project, double proportion, int ticketsWithIv, String computedAt) {}
+
+    /**
+     * Contenuto del file di cache.
+     */
+    public record CacheData(List<Entry> projects) {}
+
+    private static final class SharedHolder {
+        private static final ColdStartService INSTANCE = new ColdStartService(
+                Arrays.stream(RunConfig.getString(PROJECTS_KEY, DEFAULT_PROJECTS).split(","))
+                        .map(s -> s.trim().toUpperCase(Locale.ROOT))
+                        .filter(s -> !s.isEmpty())
+                        .distinct()
+                        .toList(),
+                cacheFile(),
+                Duration.ofDays(Math.max(0, RunConfig.getInt(MAX_AGE_KEY, 30))));
+    }
+
+    private final List<String> projects;
+    private final Path cacheFile;
+    private final Duration maxAge;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<String, Entry> entries;
+
+    public ColdStartService(List<String> projects, Path cacheFile, Duration maxAge) {
+        this.projects = projects;
+        this.cacheFile = cacheFile;
+        this.maxAge = maxAge;
+    }
+
+    private static Path cacheFile() {
+        String file = RunConfig.getString(CACHE_FILE_KEY, null);
+        return file != null ? Paths.get(file) : RunConfig.cacheDirectory().resolve("cold_start_proportions.json");
+    }
+
+    public static boolean isEnabled() {
+        return RunConfig.getBoolean(ENABLED_KEY, true);
+    }
+
+    public static ColdStartService shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Valori di P dei progetti di riferimento diversi dal progetto analizzato, più il P del progetto stesso se calcolabile.
+     * La lista restituita è nuova e può essere modificata (Proportion la ordina).
+     */
+    public List<Double> coldStartProportions(String targetName, double ownProportion) {
+        List<Double> values = new ArrayList<>();
+        for (Entry entry : entries().values()) {
+            if (!entry.project().equalsIgnoreCase(targetName) && entry.proportion() >= 0) {
+                values.add(entry.proportion());
+            }
+        }
+        if (ownProportion >= 0) {
+            values.add(ownProportion);
+        }
+        return values;
+    }
+
+    private Map<String, Entry> entries() {
+        lock.lock();
+        try {
+            if (entries == null) {
+                entries = refresh();
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, Entry> refresh() {
+        Map<String, Entry> cached = load();
+        Instant now = Instant.now();
+        List<String> stale = projects.stream().filter(p -> !isFresh(cached.get(p), now)).toList();
+
+        if (!stale.isEmpty()) {
+            Printer.print("Cold start: calcolo di P per " + stale + " in parallelo\n");
+            List<Future<Entry>> futures = new ArrayList<>();
+            try (ExecutorService executor = ExecutionPools.newIoExecutor(stale.size())) {
+                for (String project : stale) {
+                    futures.add(executor.submit(() -> compute(project)));
+                }
+                for (int i = 0; i < stale.size(); i++) {
+                    Entry entry = await(stale.get(i), futures.get(i));
+                    if (entry != null) cached.put(entry.project(), entry);
+                }
+            }
+            save(cached);
+        }
+
+        Map<String, Entry> result = new LinkedHashMap<>();
+        for (String project : projects) {
+            Entry entry = cached.get(project);
+            if (entry != null) result.put(project, entry);
+        }
+        Printer.print(String.format("Cold start: P disponibile per %d/%d progetti di riferimento%n",
+                result.values().stream().filter(e -> e.proportion() >= 0).count(), projects.size()));
+        return result;
+    }
+
+    private static Entry compute(String project) throws Exception {
+        JiraSnapshot snapshot = JiraController.fetchSnapshot(project);
+        var ticketsWithIv = snapshot.ticketsWithInjectedVersion();
+        double p = new ProportionController().calculateAverageProportion(ticketsWithIv);
+        return new Entry(project, p, ticketsWithIv.size(), snapshot.getFetchedAt().toString());
+    }
+
+    private static Entry await(String project, Future<Entry> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Printer.printYellow("Cold start: impossibile calcolare P per " + project + ": " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private boolean isFresh(Entry entry, Instant now) {
+        if (entry == null || entry.computedAt() == null) return false;
+        try {
+            return Instant.parse(entry.computedAt()).plus(maxAge).isAfter(now);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private Map<String, Entry> load() {
+        Map<String, Entry> cached = new LinkedHashMap<>();
+        if (!Files.exists(cacheFile)) return cached;
+        try {
+            CacheData data = MAPPER.readValue(cacheFile.toFile(), CacheData.class);
+            if (data.projects() != null) {
+                data.projects().forEach(e -> cached.put(e.project(), e));
+            }
+        } catch (IOException e) {
+            Printer.printYellow("Cache del cold start illeggibile, la ricalcolo: " + e.getMessage());
+        }
+        return cached;
+    }
+
+    private void save(Map<String, Entry> cached) {
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, "cold_start", ".tmp");
+            try {
+                MAPPER.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), new CacheData(new ArrayList<>(cached.values())));
+                try {
+                    Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            Printer.printYellow("Impossibile salvare la cache del cold start: " + e.getMessage());
+        }
+    }
+}
@@ -5,6 +5,8 @@ import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.Printer;
 import org.apache.model.*;
+import org.apache.utilities.ExecutionPools;
+import org.apache.utilities.metrics.MetricsEngine;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -60,6 +62,17 @@ public class GitController {
     private Map<Commit, List<Commit>> bugIntroducingCommitsMap;
     @Getter
     private Map<String, List<Commit>> commitsPerFile;
+    // Contatori di revisioni e autori per file, aggiornati mentre si indicizza la storia
+    private final Map<String, FileHistoryCounter> historyCountersPerFile;
+    private final Map<String, Integer> authorIds;
+    @Getter
+    @Setter
+    private MetricsEngine metricsEngine;
+    // Id stabili dei metodi fra le release del progetto
+    @Getter
+    private final MethodIdentityTable methodIdentityTable = new MethodIdentityTable();
+    // Modalità delta: snapshot della release precedente (path -> blob e classe analizzata)
+    private Map<String, SnapshotEntry> previousSnapshot = new HashMap<>();
     private final String targetName ;
     private  static final String JAVA=".java";
     private static final String TEST="/src/test/";
@@ -91,6 +104,9 @@ public class GitController {
         this.buggyFilesPerCommit = new HashMap<>();
         this.bugIntroducingCommitsMap = new HashMap<>();
         this.commitsPerFile = new HashMap<>();
+        this.historyCountersPerFile = new HashMap<>();
+        this.authorIds = new HashMap<>();
+        this.metricsEngine = MetricsEngine.fromConfig();
     }
 
     public void buildCommitHistory() throws GitAPIException, IOException {
@@ -476,22 +492,129 @@ public class GitController {
         Commit lastCommit = release.getCommitList().getLast();
         Map<String, String> classesNameCodeMap = getClassesNameCodeInfos(lastCommit.getRevCommit());
 
-        for (Map.Entry<String, String> classInfo : classesNameCodeMap.entrySet()) {
-            String className = classInfo.getKey();
+        // Lettura dei blob sul thread chiamante (I/O), parsing sul pool CPU
+        return ExecutionPools.onCpu(() -> {
+            for (Map.Entry<String, String> classInfo : classesNameCodeMap.entrySet()) {
+                String className = classInfo.getKey();
 
-            AnalyzedClass ac = getAnalyzedClass(release, classInfo, className);
+                AnalyzedClass ac = getAnalyzedClass(release, className, classInfo.getValue(), metricsEngine);
 
 
-            List<Commit> fullHistory = this.commitsPerFile.get(className);
-            if (fullHistory != null) {
-                ac.setTouchingClassCommitList(new ArrayList<>(fullHistory));
+                List<Commit> fullHistory = this.commitsPerFile.get(className);
+                if (fullHistory != null) {
+                    ac.setTouchingClassCommitList(new ArrayList<>(fullHistory));
+                }
+                classList.add(ac);
             }
-            classList.add(ac);
+            return classList;
+        });
+    }
+
+
+
+    /**
+     * Modalità delta: confronta l'albero della release con quello della release precedente tramite gli id dei blob.
+     * I file invariati riusano l'AnalyzedClass già calcolata (metriche statiche e storiche), i file modificati
+     * vengono riparsati ma ereditano le metriche storiche del path, i file nuovi vengono calcolati da zero.
+     * Le classi sono restituite nello stesso ordine di getClassesForRelease, quindi il CSV non cambia.
+     */
+    public List<AnalyzedClass> getClassesForReleaseDelta(Release release) throws IOException {
+        List<AnalyzedClass> classList = new ArrayList<>();
+        if (release.getCommitList().isEmpty()) {
+            return classList;
         }
+
+        RevCommit revCommit = release.getCommitList().getLast().getRevCommit();
+        Map<String, ObjectId> blobIds = getClassesBlobIds(revCommit);
+
+        // Prima passata (I/O): legge solo i blob nuovi o cambiati
+        Map<String, String> changedContents = new HashMap<>();
+        for (Map.Entry<String, ObjectId> blob : blobIds.entrySet()) {
+            SnapshotEntry previous = previousSnapshot.get(blob.getKey());
+            if (previous == null || !previous.blobId().equals(blob.getValue())) {
+                String content = readBlob(blob.getValue(), blob.getKey(), revCommit);
+                if (content != null) {
+                    changedContents.put(blob.getKey(), content);
+                }
+            }
+        }
+
+        // Seconda passata (CPU): parsing dei file cambiati, copia degli invariati
+        Map<String, SnapshotEntry> currentSnapshot = new HashMap<>();
+        int[] counts = new int[3];
+        ExecutionPools.onCpu(() -> {
+            for (Map.Entry<String, ObjectId> blob : blobIds.entrySet()) {
+                String className = blob.getKey();
+                SnapshotEntry previous = previousSnapshot.get(className);
+                AnalyzedClass ac;
+
+                if (previous != null && previous.blobId().equals(blob.getValue())) {
+                    ac = carryForward(previous.analyzedClass(), release);
+                    counts[0]++;
+                } else {
+                    String content = changedContents.get(className);
+                    if (content == null) {
+                        continue;
+                    }
+                    ac = getAnalyzedClass(release, className, content, metricsEngine);
+                    List<Commit> fullHistory = this.commitsPerFile.get(className);
+                    if (fullHistory != null) {
+                        ac.setTouchingClassCommitList(new ArrayList<>(fullHistory));
+                    }
+                    if (previous != null) {
+                        // La storia del path non dipende dal contenuto: revisioni, autori e churn restano validi
+                        ac.setPreviousVersion(previous.analyzedClass());
+                        ac.setReuseProcessMetrics(true);
+                        counts[1]++;
+                    } else {
+                        counts[2]++;
+                    }
+                }
+                currentSnapshot.put(className, new SnapshotEntry(blob.getValue(), ac));
+                classList.add(ac);
+            }
+            return null;
+        });
+
+        this.previousSnapshot = currentSnapshot;
+        Printer.print(String.format("Delta release %s: %d classi invariate, %d modificate, %d nuove.%n",
+                release.getReleaseName(), counts[0], counts[1], counts[2]));
         return classList;
     }
 
+    private AnalyzedClass carryForward(AnalyzedClass previous, Release release) {
+        // Copia: la release precedente può essere ancora in lavorazione nella pipeline
+        AnalyzedClass copy = new AnalyzedClass(previous, release);
+        copy.setReuseStaticMetrics(true);
+        copy.setReuseProcessMetrics(true);
+        return copy;
+    }
 
+    private Map<String, ObjectId> getClassesBlobIds(RevCommit revCommit) throws IOException {
+        Map<String, ObjectId> blobIds = new HashMap<>();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revCommit.getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                if (path.endsWith(JAVA) && !path.contains(TEST)) {
+                    blobIds.put(path, treeWalk.getObjectId(0));
+                }
+            }
+        }
+        return blobIds;
+    }
+
+    private String readBlob(ObjectId blobId, String path, RevCommit revCommit) {
+        try {
+            return new String(repository.open(blobId).getBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Printer.errorPrint("Cannot read file " + path + " in commit " + revCommit.getName()+"\n");
+            return null;
+        }
+    }
+
+    private record SnapshotEntry(ObjectId blobId, AnalyzedClass analyzedClass) {}
 
     public void buildFileCommitHistoryMap() {
         Printer.print("Building commit history map for each file...\n");
@@ -499,8 +622,10 @@ public class GitController {
             if (commit.getRevCommit().getParentCount() > 0) {
                 try {
                     List<String> touchedFiles = getTouchedClassesNames(commit.getRevCommit());
+                    int authorId = getAuthorId(commit);
                     for (String filePath : touchedFiles) {
                         commitsPerFile.computeIfAbsent(filePath, k -> new ArrayList<>()).add(commit);
+                        historyCountersPerFile.computeIfAbsent(filePath, k -> new FileHistoryCounter()).add(authorId);
                     }
                 } catch (IOException e) {
                     Printer.printYellow("Error analyzing touched files for commit " + commit.getRevCommit().getName() + ": " + e.getMessage());
@@ -570,12 +695,47 @@ public class GitController {
 
     public record ClassChangeStats(int linesAdded, int linesDeleted) {}
 
+    /**
+     * Id intero dell'autore del commit, assegnato la prima volta che il nome viene incontrato.
+     */
+    public int getAuthorId(Commit commit) {
+        return authorIds.computeIfAbsent(commit.getAuthor(), k -> authorIds.size());
+    }
+
+    /**
+     * Contatori della storia del file, null se il file non è mai stato toccato da un commit con parent.
+     */
+    public FileHistoryCounter getHistoryCounter(String filePath) {
+        return historyCountersPerFile.get(filePath);
+    }
+
+    /**
+     * Numero di revisioni e insieme degli autori (bitset sugli id degli autori) di un file.
+     */
+    public static final class FileHistoryCounter {
+        private final BitSet authors = new BitSet();
+        private int revisions;
+
+        void add(int authorId) {
+            revisions++;
+            authors.set(authorId);
+        }
+
+        public int getRevisions() {
+            return revisions;
+        }
+
+        public int getNumAuthors() {
+            return authors.cardinality();
+        }
+    }
+
     public String getRepoPath() {
         return DEFAULT_REPO_BASE_PATH+ File.separator + targetName.toLowerCase() + File.separator;
     }
 
 
-    private static AnalyzedClass getAnalyzedClass(Release release, Map.Entry<String, String> classInfo, String className) {
+    private static AnalyzedClass getAnalyzedClass(Release release, String className, String content, MetricsEngine engine) {
         String packageName = "";
         String fileName = className;
 
@@ -586,7 +746,7 @@ public class GitController {
         }
         // Questo costruttore non dovrebbe parsare i metodi o popolare la loro storia.
         // Tale logica è stata spostata in populateMethodsForAnalyzedClass.
-        return new AnalyzedClass(className, classInfo.getValue(), release,packageName,fileName);
+        return new AnalyzedClass(className, content, release,packageName,fileName, engine);
     }
 
 
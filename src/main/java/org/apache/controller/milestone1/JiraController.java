@@ -2,16 +2,29 @@ package org.apache.controller.milestone1;
 
 import lombok.Getter;
 import org.apache.logging.Printer;
+import org.apache.model.JiraSnapshot;
 import org.apache.model.Release;
+import org.apache.model.ReleaseRegistry;
 import org.apache.model.Ticket;
-import org.apache.utilities.JsonReader;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.apache.utilities.JiraHttpClient;
+import org.apache.utilities.JiraJsonStream;
+import org.apache.utilities.JiraJsonStream.IssueFields;
+import org.apache.utilities.JiraJsonStream.SearchPage;
+import org.apache.utilities.JiraJsonStream.VersionFields;
+import org.apache.utilities.JiraTicketStore;
+import org.apache.utilities.RunConfig;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class JiraController {
@@ -23,7 +36,22 @@ public class JiraController {
 
     @Getter
     private List<Ticket> fixedTickets;
-    private static final String JIRA_BASE_URL = "https://issues.apache.org/jira/rest/api/2/";
+    // Indice delle release per nome e data, costruito dopo averle caricate
+    @Getter
+    private ReleaseRegistry releaseRegistry = ReleaseRegistry.of(List.of());
+    private static final int PAGE_SIZE = 1000;
+    // Sincronizzazione incrementale: si scaricano solo i ticket aggiornati dopo l'ultima esecuzione
+    private static final String INCREMENTAL_KEY = "JIRA_INCREMENTAL";
+    private static final String STORE_DIR_KEY = "JIRA_STORE_DIR";
+    // Sincronizzazione completa: forzata, oppure quando l'ultima ha più di JIRA_FULL_SYNC_DAYS giorni (0 = sempre)
+    private static final String FULL_SYNC_KEY = "JIRA_FULL_SYNC";
+    private static final String FULL_SYNC_DAYS_KEY = "JIRA_FULL_SYNC_DAYS";
+    private static final int DEFAULT_FULL_SYNC_DAYS = 7;
+    private static final String BUG_TYPE = "Bug";
+    // Margine sull'high-water mark: la JQL ha precisione al minuto e usa il fuso orario del server
+    private static final long SYNC_OVERLAP_HOURS = 24;
+    private static final DateTimeFormatter JQL_DATE = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+    private final JiraHttpClient httpClient = JiraHttpClient.shared();
 
     //Costruttore
     public JiraController(String targetName) {
@@ -34,20 +62,37 @@ public class JiraController {
     }
 
 
+    /**
+     * Controller costruito su uno snapshot già scaricato: nessuna richiesta a Jira.
+     */
+    public JiraController(JiraSnapshot snapshot) {
+        this(snapshot.getProject());
+        this.releases.addAll(snapshot.getReleases());
+        this.releaseRegistry = ReleaseRegistry.of(this.releases);
+        this.tickets.addAll(snapshot.getFixedTickets());
+        this.fixedTickets = new ArrayList<>(snapshot.getFixedTickets());
+    }
+
+    /**
+     * Scarica release e ticket del progetto una sola volta e li restituisce come snapshot condivisibile.
+     */
+    public static JiraSnapshot fetchSnapshot(String targetName) throws IOException, URISyntaxException {
+        JiraController jiraController = new JiraController(targetName);
+        jiraController.injectRelease();
+        jiraController.injectTickets();
+        return new JiraSnapshot(jiraController.targetName, jiraController.releases,
+                jiraController.fixedTickets, Instant.now());
+    }
+
     //Fase 1: Scarico le informazioni sulle versioni da Jira e le carico nello stato interno
     public void injectRelease() throws IOException, URISyntaxException {
-        String urlString = JIRA_BASE_URL + "project/" + targetName ;
-        JSONObject json = JsonReader.readJsonFromUrl(urlString);
-        JSONArray versions = json.getJSONArray("versions");
-
-        for (int i = 0; i < versions.length(); i++) {
-            String releaseID = null;
-            String releaseName = null;
-            String releaseDate = null;
-            JSONObject version = versions.getJSONObject(i);
-            if (version.has("id")) releaseID = version.getString("id");
-            if (version.has("name")) releaseName = version.getString("name");
-            if (version.has("releaseDate")) releaseDate = version.getString("releaseDate");
+        String urlString = JiraHttpClient.baseUrl() + "project/" + targetName ;
+        List<VersionFields> versions = httpClient.get(urlString, JiraJsonStream::readVersions);
+
+        for (VersionFields version : versions) {
+            String releaseID = version.id();
+            String releaseName = version.name();
+            String releaseDate = version.releaseDate();
             if (releaseID == null || releaseName == null || releaseDate == null) {
                 Printer.printYellow("Incomplete version data: " + version);
                 continue;
@@ -61,31 +106,22 @@ public class JiraController {
             }
         }
         releases.sort(Comparator.comparing(Release::getReleaseDate));
+        this.releaseRegistry = ReleaseRegistry.of(releases);
 
     }
 
     //Fase 2: Scarico i ticket (bug "Fixed") da Jira e li carico nello stato interno
     public void injectTickets() throws IOException, URISyntaxException {
-        int startAt = 0;
-        int total;
-
-        do {
-            JSONObject json = fetchTicketsBatch(startAt);
-            JSONArray issues = json.getJSONArray("issues");
-            total = json.getInt("total");
-
-            for (Object issueObj : issues) {
-                JSONObject issue = (JSONObject) issueObj;
-                try {
-                    Ticket ticket = processIssue(issue);
-                    if (ticket != null) tickets.add(ticket);
-                } catch (Exception e) {
-                    Printer.printYellow("Impossibile processare un ticket. Causa: " + e.getMessage());
-                }
+        if (RunConfig.getBoolean(INCREMENTAL_KEY, false)) {
+            // L'archivio conserva gli issue, quindi qui si convertono dopo la sincronizzazione
+            for (IssueFields issue : syncTicketStore()) {
+                Ticket ticket = toTicket(issue);
+                if (ticket != null) tickets.add(ticket);
             }
-
-            startAt += issues.length();
-        } while (startAt < total);
+        } else {
+            // Ogni pagina diventa una lista di Ticket appena letta: gli IssueFields non vengono accumulati
+            tickets.addAll(fetch(bugsJql(), this::toTicket));
+        }
 
         this.fixedTickets = new ArrayList<>(this.tickets);
         this.fixedTickets.sort(Comparator.comparing(Ticket::getResolutionDate));
@@ -93,28 +129,120 @@ public class JiraController {
                 this.fixedTickets.size(), targetName));
     }
 
-    private JSONObject fetchTicketsBatch(int startAt) throws IOException, URISyntaxException {
-        String jql = String.format("project = \"%s\" AND issuetype = \"Bug\"", targetName);
-        String url = JIRA_BASE_URL + "search?jql=" + java.net.URLEncoder.encode(jql, StandardCharsets.UTF_8)
-                + "&fields=key,versions,created,resolutiondate&startAt=" + startAt + "&maxResults=1000";
-        return JsonReader.readJsonFromUrl(url);
+    /**
+     * Aggiorna l'archivio locale dei ticket con i soli issue del progetto modificati dall'ultima sincronizzazione
+     * e restituisce l'intero contenuto dell'archivio. La query incrementale non filtra sul tipo, così un issue
+     * che non è più un Bug viene restituito e rimosso; gli issue cancellati o spostati in un altro progetto non
+     * compaiono mai e spariscono solo con la sincronizzazione completa, eseguita alla prima esecuzione, ogni
+     * JIRA_FULL_SYNC_DAYS giorni o su richiesta con JIRA_FULL_SYNC. In modalità offline (JIRA_OFFLINE) l'archivio
+     * non viene aggiornato e si restituisce il contenuto salvato.
+     */
+    private List<IssueFields> syncTicketStore() throws IOException {
+        JiraTicketStore store = JiraTicketStore.load(Paths.get(RunConfig.getString(STORE_DIR_KEY, "jira_store")), targetName);
+        // La query incrementale cambia a ogni esecuzione (updated >= ...), quindi non può essere in cache:
+        // offline si usa l'archivio così com'è
+        if (httpClient.isOffline()) {
+            if (store.isEmpty()) {
+                throw new IOException("Modalità offline: nessun archivio dei ticket di " + targetName
+                        + "; eseguire prima una sincronizzazione online con JIRA_INCREMENTAL=true");
+            }
+            Printer.print(String.format("Modalità offline: uso i %d issue in archivio per %s (ultimo aggiornamento %s)%n",
+                    store.getIssues().size(), targetName, store.getHighWaterMark()));
+            return store.getIssues();
+        }
+        boolean full = store.isEmpty() || store.getHighWaterMark() == null || isFullSyncDue(store);
+        List<IssueFields> fetched;
+        int changed;
+        if (full) {
+            fetched = fetchIssues(bugsJql());
+            changed = store.replace(fetched, JiraController::isBug);
+        } else {
+            String since = store.getHighWaterMark().withOffsetSameInstant(ZoneOffset.UTC)
+                    .minusHours(SYNC_OVERLAP_HOURS).format(JQL_DATE);
+            fetched = fetchIssues(projectJql() + String.format(" AND updated >= \"%s\"", since));
+            changed = store.merge(fetched, JiraController::isBug);
+        }
+        store.save();
+        Printer.print(String.format("Sincronizzazione %s di %s: %d issue scaricati, %d nuovi, modificati o rimossi, %d in archivio%n",
+                full ? "completa" : "incrementale", targetName, fetched.size(), changed, store.getIssues().size()));
+        return store.getIssues();
+    }
+
+    private static boolean isFullSyncDue(JiraTicketStore store) {
+        if (RunConfig.getBoolean(FULL_SYNC_KEY, false) || store.getLastFullSync() == null) return true;
+        int days = RunConfig.getInt(FULL_SYNC_DAYS_KEY, DEFAULT_FULL_SYNC_DAYS);
+        return !store.getLastFullSync().plusDays(days).isAfter(OffsetDateTime.now());
+    }
+
+    // Un issue senza tipo (archivio di una versione precedente) è un Bug: la vecchia query filtrava sul tipo
+    private static boolean isBug(IssueFields issue) {
+        return issue.issueType() == null || BUG_TYPE.equals(issue.issueType());
     }
 
-    private Ticket processIssue(JSONObject issue) {
-        JSONObject fields = issue.getJSONObject("fields");
+    private List<IssueFields> fetchIssues(String jql) throws IOException {
+        return fetch(jql, Function.identity());
+    }
+
+    /**
+     * Scarica tutti gli issue che soddisfano la JQL e li converte con mapper mentre ogni pagina viene letta
+     * (null = scartato). La prima pagina fornisce total e dimensione effettiva della pagina: le altre si scaricano
+     * in parallelo, lette in streaming, e i risultati sono restituiti nell'ordine delle pagine.
+     */
+    private <T> List<T> fetch(String jql, Function<IssueFields, T> mapper) throws IOException {
+        SearchPage<T> first = httpClient.get(ticketsPageUrl(jql, 0), in -> JiraJsonStream.readSearchPage(in, mapper));
+        List<T> results = new ArrayList<>(first.issues());
+        int total = first.total();
+        int pageSize = first.maxResults();
+
+        List<String> remaining = new ArrayList<>();
+        for (int startAt = first.count(); pageSize > 0 && startAt < total; startAt += pageSize) {
+            remaining.add(ticketsPageUrl(jql, startAt));
+        }
+        if (!remaining.isEmpty()) {
+            Printer.print(String.format("Scarico %d pagine di ticket per %s in parallelo%n", remaining.size(), targetName));
+            for (SearchPage<T> page : httpClient.getAll(remaining, in -> JiraJsonStream.readSearchPage(in, mapper))) {
+                results.addAll(page.issues());
+            }
+        }
+        return results;
+    }
+
+    private String projectJql() {
+        return String.format("project = \"%s\"", targetName);
+    }
+
+    private String bugsJql() {
+        return String.format("%s AND issuetype = \"%s\"", projectJql(), BUG_TYPE);
+    }
+
+    private String ticketsPageUrl(String jql, int startAt) {
+        return JiraHttpClient.baseUrl() + "search?jql=" + java.net.URLEncoder.encode(jql, StandardCharsets.UTF_8)
+                + "&fields=key,issuetype,versions,created,resolutiondate,updated&startAt=" + startAt + "&maxResults=" + PAGE_SIZE;
+    }
+
+    // Chiamato anche dai thread che leggono le pagine: usa solo il registro delle release, già costruito
+    private Ticket toTicket(IssueFields issue) {
+        try {
+            return processIssue(issue);
+        } catch (Exception e) {
+            Printer.printYellow("Impossibile processare un ticket. Causa: " + e.getMessage());
+            return null;
+        }
+    }
 
-        String resolutionDateString = fields.optString("resolutiondate");
+    private Ticket processIssue(IssueFields issue) {
+        String resolutionDateString = issue.resolutionDate();
         if (resolutionDateString == null || resolutionDateString.isEmpty()) return null;
 
-        String key = issue.getString("key");
-        LocalDate creationDate = LocalDate.parse(fields.getString("created").substring(0, 10));
+        String key = issue.key();
+        LocalDate creationDate = LocalDate.parse(issue.created().substring(0, 10));
         LocalDate resolutionDate = LocalDate.parse(resolutionDateString.substring(0, 10));
 
-        JSONArray affectedVersions = fields.optJSONArray("versions");
+        List<String> affectedVersions = Objects.requireNonNull(issue.versionNames(), "campo versions assente");
 
-        Release openingVersion = Release.getReleaseAfterOrEqualToDate(creationDate, this.releases);
-        Release fixedVersion = Release.getReleaseAfterOrEqualToDate(resolutionDate, this.releases);
-        List<Release> affectedVersionList = Release.getAffectedVersions(affectedVersions, this.releases);
+        Release openingVersion = releaseRegistry.firstOnOrAfter(creationDate);
+        Release fixedVersion = releaseRegistry.firstOnOrAfter(resolutionDate);
+        List<Release> affectedVersionList = releaseRegistry.affectedVersions(affectedVersions);
 
         if (!isValidTicket(openingVersion, fixedVersion, affectedVersionList)) return null;
 
@@ -145,13 +273,13 @@ public class JiraController {
 
 
 
-    public void applyProportion(List<Double> coldStartData) {
+    public void applyProportion(Supplier<List<Double>> coldStartData) {
         Printer.printBlue("Avvio dell'euristica Proportion per stimare le Injected Versions...\n");
 
         ProportionController propController = new ProportionController();
 
         // Ora chiamiamo il metodo principale del controller, passandogli i dati di cold start
-        List<Ticket> repairedTickets = propController.applyProportion(this.fixedTickets, this.releases, coldStartData);
+        List<Ticket> repairedTickets = propController.applyProportion(this.fixedTickets, this.releaseRegistry, coldStartData);
 
         // Ri-filtriamo per sicurezza e aggiorniamo la lista
         this.fixedTickets = repairedTickets.stream()
@@ -0,0 +1,404 @@
+package org.apache.controller.milestone1;
+
+import org.apache.logging.Printer;
+import org.apache.model.AnalyzedClass;
+import org.apache.model.AnalyzedMethod;
+import org.apache.model.Commit;
+import org.apache.model.LOCMetrics;
+import org.apache.model.MethodIdentityTable;
+import org.apache.model.MethodMetrics;
+import org.apache.model.Release;
+import org.apache.utilities.dataset.MethodNameDictionary;
+import org.apache.utilities.metrics.TokenMetricScanner;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metriche di processo a livello di metodo (revisioni, autori, età, modifiche e churn).
+ * I commit vengono visitati una sola volta in ordine cronologico: ogni commit è confrontato
+ * con il primo parent e ogni hunk viene attribuito ai metodi che tocca, usando gli intervalli
+ * di righe dei metodi nelle due versioni del file (scanner lessicale, in cache per path).
+ * Come in GitController.buildFileCommitHistoryMap, i commit senza parent non sono contati.
+ * Ogni metodo ha un id di storia intero (lineage) che passa dalla vecchia alla nuova versione del file
+ * (stessa firma, altrimenti stesso corpo, altrimenti stesso nome semplice) e segue i file rinominati:
+ * i contatori sono indicizzati per lineage, quindi un metodo spostato, rinominato o con parametri cambiati
+ * conserva la sua storia. Per ogni release si avanza fino al commit dello snapshot, si collega ogni metodo
+ * all'id della MethodIdentityTable e si copiano i contatori nei MethodMetrics; se la tabella riconosce un metodo
+ * che la storia aveva perso (es. una classe spostata e modificata), le due storie vengono unite.
+ * Nessun diff viene ripetuto fra una release e l'altra.
+ */
+public class MethodHistoryController {
+
+    private static final String JAVA = ".java";
+    private static final String TEST = "/src/test/";
+
+    private final Repository repository;
+    private final GitController gitController;
+    private final List<Commit> timeline;
+    private int nextCommit = 0;
+
+    // Contatori per lineage del metodo
+    private final Map<Integer, MethodCounters> counters = new HashMap<>();
+    // Intervalli e lineage dei metodi dell'ultima versione vista di ogni file
+    private final Map<String, FileMethods> methodsByPath = new HashMap<>();
+    private final Map<Integer, int[]> commitChanges = new HashMap<>();
+    // Lineage collegato a ogni id della MethodIdentityTable nell'ultima release
+    private final Map<Integer, Integer> lineageByMethodId = new HashMap<>();
+    // Firme e nomi semplici come interi, per confrontare i metodi senza stringhe
+    private final MethodNameDictionary names = new MethodNameDictionary();
+    private final Map<String, Integer> simpleNameIds = new HashMap<>();
+    private int nextLineage = 0;
+    private long processedHunks = 0;
+
+    public MethodHistoryController(GitController gitController) {
+        this.gitController = gitController;
+        this.repository = gitController.getRepository();
+        this.timeline = new ArrayList<>(gitController.getAllCommits().values());
+        this.timeline.sort(Comparator.comparingInt(c -> c.getRevCommit().getCommitTime()));
+    }
+
+    /**
+     * Avanza nella storia fino allo snapshot della release e riempie le metriche di processo dei metodi.
+     */
+    public void fillMethodMetrics(Release release, List<AnalyzedClass> classes) {
+        if (release.getCommitList().isEmpty()) return;
+        advanceTo(release.getCommitList().getLast().getRevCommit().getCommitTime());
+
+        // Lineage trovati nei file dello snapshot, nell'ordine dei metodi
+        List<Integer> found = new ArrayList<>();
+        Set<Integer> live = new HashSet<>();
+        for (AnalyzedClass ac : classes) {
+            Map<Long, ArrayDeque<Integer>> lineages = lineagesBySignature(methodsByPath.get(ac.getClassName()));
+            for (AnalyzedMethod am : ac.getMethods()) {
+                ArrayDeque<Integer> candidates = lineages.get((long) names.signatureId(am.getSignature()));
+                Integer lineage = candidates == null ? null : candidates.poll();
+                found.add(lineage);
+                if (lineage != null) live.add(lineage);
+            }
+        }
+        int next = 0;
+        for (AnalyzedClass ac : classes) {
+            for (AnalyzedMethod am : ac.getMethods()) {
+                Integer lineage = linkMethodId(am.getMethodId(), found.get(next++), live);
+                applyCounters(lineage == null ? null : counters.get(lineage), am.getMetrics(), release.getReleaseDate());
+            }
+        }
+        Printer.print(String.format("Storia dei metodi aggiornata a %s: %d commit, %d hunk, %d metodi tracciati.%n",
+                release.getReleaseName(), nextCommit, processedHunks, counters.size()));
+    }
+
+    private Map<Long, ArrayDeque<Integer>> lineagesBySignature(FileMethods methods) {
+        Map<Long, ArrayDeque<Integer>> lineages = new HashMap<>();
+        if (methods == null) return lineages;
+        for (int i = 0; i < methods.size; i++) {
+            lineages.computeIfAbsent(methods.signature[i], k -> new ArrayDeque<>()).add(methods.lineage[i]);
+        }
+        return lineages;
+    }
+
+    /**
+     * Collega l'id della MethodIdentityTable al lineage trovato nel file dello snapshot. Senza lineage (file mai
+     * modificato dopo l'ultimo collegamento) vale quello della release precedente; se la tabella ha riconosciuto
+     * un metodo che nella storia aveva un altro lineage, non più usato da nessun metodo dello snapshot (live),
+     * i contatori del vecchio lineage confluiscono nel nuovo.
+     */
+    private Integer linkMethodId(int methodId, Integer lineage, Set<Integer> live) {
+        if (methodId < 0) return lineage;
+        Integer previous = lineageByMethodId.get(methodId);
+        if (lineage == null) {
+            return previous != null && !live.contains(previous) ? previous : null;
+        }
+        if (previous != null && !previous.equals(lineage) && !live.contains(previous)) {
+            MethodCounters old = counters.remove(previous);
+            if (old != null) {
+                MethodCounters current = counters.get(lineage);
+                if (current == null) counters.put(lineage, old);
+                else current.absorb(old);
+            }
+        }
+        lineageByMethodId.put(methodId, lineage);
+        return lineage;
+    }
+
+    private void advanceTo(int commitTime) {
+        if (nextCommit >= timeline.size() || timeline.get(nextCommit).getRevCommit().getCommitTime() > commitTime) {
+            return;
+        }
+        try (ObjectReader reader = repository.newObjectReader();
+             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            diffFormatter.setRepository(repository);
+            diffFormatter.setContext(0);
+            diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
+            diffFormatter.setPathFilter(PathSuffixFilter.create(JAVA));
+            diffFormatter.setDetectRenames(true);
+
+            while (nextCommit < timeline.size() && timeline.get(nextCommit).getRevCommit().getCommitTime() <= commitTime) {
+                Commit commit = timeline.get(nextCommit++);
+                try {
+                    processCommit(commit, diffFormatter, reader);
+                } catch (IOException e) {
+                    Printer.printYellow("Impossibile analizzare la storia dei metodi per il commit " + commit.getRevCommit().getName() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void processCommit(Commit commit, DiffFormatter diffFormatter, ObjectReader reader) throws IOException {
+        RevCommit revCommit = commit.getRevCommit();
+        // Come per le classi: il commit iniziale non è una revisione
+        if (revCommit.getParentCount() == 0) return;
+        CanonicalTreeParser oldTree = new CanonicalTreeParser();
+        oldTree.reset(reader, revCommit.getParent(0).getTree());
+        CanonicalTreeParser newTree = new CanonicalTreeParser();
+        newTree.reset(reader, revCommit.getTree());
+        List<DiffEntry> entries = diffFormatter.scan(oldTree, newTree);
+
+        commitChanges.clear();
+        for (DiffEntry entry : entries) {
+            DiffEntry.ChangeType type = entry.getChangeType();
+            if (type == DiffEntry.ChangeType.DELETE) {
+                methodsByPath.remove(entry.getOldPath());
+                continue;
+            }
+            String path = entry.getNewPath();
+            if (path.contains(TEST)) {
+                if (type == DiffEntry.ChangeType.RENAME) methodsByPath.remove(entry.getOldPath());
+                continue;
+            }
+
+            // Un file nuovo o copiato inizia nuovi lineage; uno modificato o rinominato li eredita dalla versione precedente
+            boolean inherits = type == DiffEntry.ChangeType.MODIFY || type == DiffEntry.ChangeType.RENAME;
+            FileMethods oldMethods = inherits ? methodsAt(entry.getOldPath(), entry.getOldId().toObjectId(), reader) : null;
+            if (type == DiffEntry.ChangeType.RENAME) methodsByPath.remove(entry.getOldPath());
+            FileMethods newMethods = scan(entry.getNewId().toObjectId(), reader);
+            assignLineages(oldMethods, newMethods);
+            methodsByPath.put(path, newMethods);
+
+            EditList edits = diffFormatter.toFileHeader(entry).toEditList();
+            for (Edit edit : edits) {
+                processedHunks++;
+                attribute(newMethods, edit.getBeginB(), edit.getEndB(), 0);
+                if (oldMethods != null) {
+                    attribute(oldMethods, edit.getBeginA(), edit.getEndA(), 1);
+                }
+            }
+        }
+        if (commitChanges.isEmpty()) return;
+
+        int authorId = gitController.getAuthorId(commit);
+        for (Map.Entry<Integer, int[]> change : commitChanges.entrySet()) {
+            counters.computeIfAbsent(change.getKey(), k -> new MethodCounters(revCommit.getCommitTime()))
+                    .addRevision(change.getValue(), authorId);
+        }
+    }
+
+    /**
+     * Attribuisce le righe [begin, end) (0-based) ai metodi che le contengono: side 0 sono le righe aggiunte
+     * nella nuova versione, side 1 quelle rimosse dalla vecchia. L'hunk viene contato sul lato nuovo,
+     * anche se è di sola cancellazione (begin == end) all'interno del metodo.
+     */
+    private void attribute(FileMethods methods, int begin, int end, int side) {
+        for (int i = 0; i < methods.size; i++) {
+            int start = methods.startLine[i] - 1;
+            int last = methods.endLine[i] - 1;
+            if (start > end) break;
+            int overlap = Math.min(end, last + 1) - Math.max(begin, start);
+            boolean touched = overlap > 0 || (side == 0 && begin == end && begin > start && begin <= last);
+            if (touched) {
+                int[] change = commitChanges.computeIfAbsent(methods.lineage[i], k -> new int[3]);
+                change[side] += Math.max(0, overlap);
+                if (side == 0) change[2]++;
+            }
+        }
+    }
+
+    private FileMethods methodsAt(String path, ObjectId blobId, ObjectReader reader) throws IOException {
+        FileMethods cached = methodsByPath.get(path);
+        if (cached != null && cached.blobId.equals(blobId)) {
+            return cached;
+        }
+        // Versione mai vista (file invariato dal commit iniziale): i suoi metodi iniziano ora la loro storia
+        FileMethods methods = scan(blobId, reader);
+        assignLineages(null, methods);
+        return methods;
+    }
+
+    /**
+     * Lineage dei metodi della nuova versione: ereditato dal metodo della vecchia versione con la stessa firma,
+     * altrimenti con lo stesso corpo (parametri cambiati), altrimenti con lo stesso nome semplice; ogni metodo
+     * vecchio è ereditato al più una volta. I metodi senza corrispondenza ricevono un nuovo lineage.
+     */
+    private void assignLineages(FileMethods oldMethods, FileMethods newMethods) {
+        Arrays.fill(newMethods.lineage, 0, newMethods.size, -1);
+        if (oldMethods != null && oldMethods.size > 0) {
+            boolean[] claimed = new boolean[oldMethods.size];
+            inherit(oldMethods, newMethods, claimed, oldMethods.signature, newMethods.signature);
+            inherit(oldMethods, newMethods, claimed, oldMethods.bodyHash, newMethods.bodyHash);
+            inherit(oldMethods, newMethods, claimed, oldMethods.simpleName, newMethods.simpleName);
+        }
+        for (int i = 0; i < newMethods.size; i++) {
+            if (newMethods.lineage[i] < 0) newMethods.lineage[i] = nextLineage++;
+        }
+    }
+
+    private static void inherit(FileMethods oldMethods, FileMethods newMethods, boolean[] claimed, long[] oldKeys, long[] newKeys) {
+        Map<Long, ArrayDeque<Integer>> available = new HashMap<>();
+        for (int i = 0; i < oldMethods.size; i++) {
+            if (!claimed[i]) available.computeIfAbsent(oldKeys[i], k -> new ArrayDeque<>()).add(i);
+        }
+        if (available.isEmpty()) return;
+        for (int i = 0; i < newMethods.size; i++) {
+            if (newMethods.lineage[i] >= 0) continue;
+            ArrayDeque<Integer> candidates = available.get(newKeys[i]);
+            Integer match = candidates == null ? null : candidates.poll();
+            if (match != null) {
+                claimed[match] = true;
+                newMethods.lineage[i] = oldMethods.lineage[match];
+            }
+        }
+    }
+
+    private FileMethods scan(ObjectId blobId, ObjectReader reader) throws IOException {
+        String content = new String(reader.open(blobId).getBytes(), StandardCharsets.UTF_8);
+        List<TokenMetricScanner.MethodScan> scans = TokenMetricScanner.forCurrentThread().scan(content);
+        scans.sort(Comparator.comparingInt(TokenMetricScanner.MethodScan::getStartLine));
+        FileMethods methods = new FileMethods(blobId, scans.size());
+        for (TokenMetricScanner.MethodScan scan : scans) {
+            if (!scan.isHasBody()) continue;
+            int i = methods.size++;
+            methods.signature[i] = names.signatureId(scan.getSignature());
+            methods.simpleName[i] = simpleNameIds.computeIfAbsent(scan.getSimpleName(), k -> simpleNameIds.size());
+            methods.bodyHash[i] = MethodIdentityTable.bodyHash(content, scan.getBodyStart(), Math.min(scan.getBodyEnd(), content.length()));
+            methods.startLine[i] = scan.getStartLine();
+            methods.endLine[i] = scan.getEndLine();
+        }
+        return methods;
+    }
+
+    private static void applyCounters(MethodCounters mc, MethodMetrics mm, LocalDate releaseDate) {
+        if (mc == null) {
+            mm.setNumberOfRevisions(0);
+            mm.setNumAuthors(0);
+            mm.setMethodHistory(0);
+            mm.setAge(0);
+            mm.setAddedLOCMetrics(new LOCMetrics());
+            mm.setRemovedLOCMetrics(new LOCMetrics());
+            mm.setChurnMetrics(new LOCMetrics());
+            return;
+        }
+        mm.setNumberOfRevisions(mc.revisions);
+        mm.setNumAuthors(mc.authors.cardinality());
+        mm.setMethodHistory(mc.hunks);
+        LocalDate firstDate = LocalDate.ofInstant(Instant.ofEpochSecond(mc.firstCommitTime), ZoneOffset.UTC);
+        mm.setAge(Math.max(0, ChronoUnit.WEEKS.between(firstDate, releaseDate)));
+        mm.setAddedLOCMetrics(locMetrics(mc.added, mc.maxAdded, mc.revisions));
+        mm.setRemovedLOCMetrics(locMetrics(mc.removed, mc.maxRemoved, mc.revisions));
+        mm.setChurnMetrics(locMetrics(mc.added + mc.removed, mc.maxChurn, mc.revisions));
+    }
+
+    private static LOCMetrics locMetrics(int total, int max, int revisions) {
+        LOCMetrics loc = new LOCMetrics();
+        loc.setVal(total);
+        loc.setMaxVal(max);
+        loc.setAvgVal(revisions == 0 ? 0.0 : (double) total / revisions);
+        return loc;
+    }
+
+    /**
+     * Metodi di una versione di un file, ordinati per inizio: id della firma e del nome semplice, hash del corpo,
+     * intervallo di righe (1-based, estremi inclusi) e lineage.
+     */
+    private static final class FileMethods {
+        private final ObjectId blobId;
+        // Id di firma e nome semplice come long, per confrontarli come l'hash del corpo
+        private final long[] signature;
+        private final long[] simpleName;
+        private final long[] bodyHash;
+        private final int[] startLine;
+        private final int[] endLine;
+        private final int[] lineage;
+        private int size;
+
+        FileMethods(ObjectId blobId, int capacity) {
+            this.blobId = blobId;
+            this.signature = new long[capacity];
+            this.simpleName = new long[capacity];
+            this.bodyHash = new long[capacity];
+            this.startLine = new int[capacity];
+            this.endLine = new int[capacity];
+            this.lineage = new int[capacity];
+        }
+    }
+
+    /**
+     * Contatori cumulativi di un metodo, aggiornati un commit alla volta.
+     */
+    private static final class MethodCounters {
+        private long firstCommitTime;
+        private final BitSet authors = new BitSet();
+        private int revisions;
+        private int hunks;
+        private int added;
+        private int removed;
+        private int maxAdded;
+        private int maxRemoved;
+        private int maxChurn;
+
+        MethodCounters(long firstCommitTime) {
+            this.firstCommitTime = firstCommitTime;
+        }
+
+        void addRevision(int[] change, int authorId) {
+            revisions++;
+            hunks += change[2];
+            added += change[0];
+            removed += change[1];
+            maxAdded = Math.max(maxAdded, change[0]);
+            maxRemoved = Math.max(maxRemoved, change[1]);
+            maxChurn = Math.max(maxChurn, change[0] + change[1]);
+            authors.set(authorId);
+        }
+
+        /**
+         * Unisce la storia di un altro lineage dello stesso metodo.
+         */
+        void absorb(MethodCounters other) {
+            firstCommitTime = Math.min(firstCommitTime, other.firstCommitTime);
+            revisions += other.revisions;
+            hunks += other.hunks;
+            added += other.added;
+            removed += other.removed;
+            maxAdded = Math.max(maxAdded, other.maxAdded);
+            maxRemoved = Math.max(maxRemoved, other.maxRemoved);
+            maxChurn = Math.max(maxChurn, other.maxChurn);
+            authors.or(other.authors);
+        }
+    }
+}
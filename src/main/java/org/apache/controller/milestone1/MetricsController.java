@@ -4,16 +4,23 @@ package org.apache.controller.milestone1;
 
 
 
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.BinaryExpr;
 import com.github.javaparser.ast.stmt.*;
 import org.apache.logging.Printer;
 import org.apache.model.*;
+import org.apache.utilities.RunConfig;
 import org.apache.utilities.metrics.CognitiveComplexityVisitor;
+import org.apache.utilities.metrics.MetricsEngine;
 import org.apache.utilities.metrics.NestingVisitor;
+import org.apache.utilities.metrics.TokenMetricScanner;
 
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -22,6 +29,9 @@ import java.util.*;
  */
 public class MetricsController {
 
+    // Classi di cui si calcolano contemporaneamente i diff Git del churn
+    private static final String GIT_READERS_KEY = "METRICS_GIT_READERS";
+
     private final List<AnalyzedClass> analyzedClasses;
     private final GitController gitController;
 
@@ -44,18 +54,65 @@ public class MetricsController {
 
 
         for (AnalyzedClass analyzedClass : analyzedClasses) {
+            // Modalità delta: le classi invariate ereditano tutte le metriche dalla release precedente
+            analyzedClass.inheritMetrics();
+            if (analyzedClass.isReuseStaticMetrics()) {
+                continue;
+            }
+            processStaticMetrics(analyzedClass);
             processClassLevelMetrics(analyzedClass);
-            processMethodLevelMetrics(analyzedClass);
         }
     }
 
+    /**
+     * Come processMetrics(), con il lavoro diviso per classe: le metriche statiche (AST e visitor) sul pool CPU,
+     * revisioni, autori e diff Git del churn sull'executor di I/O, così il pool CPU non resta fermo sulle letture
+     * dei blob (al più METRICS_GIT_READERS classi alla volta, default 8). Il future si completa quando tutte
+     * le classi sono calcolate.
+     */
+    public CompletableFuture<Void> processMetricsAsync(Executor cpu, Executor io) {
+        Printer.printBlue("Inizio calcolo metriche per lo snapshot...\n");
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        Queue<AnalyzedClass> history = new ConcurrentLinkedQueue<>();
+        for (AnalyzedClass analyzedClass : analyzedClasses) {
+            analyzedClass.inheritMetrics();
+            if (analyzedClass.isReuseStaticMetrics()) {
+                continue;
+            }
+            tasks.add(CompletableFuture.runAsync(() -> processStaticMetrics(analyzedClass), cpu));
+            if (!analyzedClass.isReuseProcessMetrics()) history.add(analyzedClass);
+        }
+        int readers = Math.min(history.size(), Math.max(1, RunConfig.getInt(GIT_READERS_KEY, 8)));
+        for (int i = 0; i < readers; i++) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                AnalyzedClass next;
+                while ((next = history.poll()) != null) processClassLevelMetrics(next);
+            }, io));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
+
+    // Dimensione del file e metriche dei metodi: solo CPU
+    private void processStaticMetrics(AnalyzedClass ac) {
+        ac.getProcessMetrics().setSize(ac.getFileContent()!=null? ac.getFileContent().split("\\r?\\n").length : 0);
+        processMethodLevelMetrics(ac);
+    }
+
     private void processClassLevelMetrics(AnalyzedClass ac) {
         ClassMetrics cm= ac.getProcessMetrics();
         List<Commit> history = ac.getTouchingClassCommitList();
-        //Calcolo size, revisoni autori per le classi
-        cm.setSize(ac.getFileContent()!=null? ac.getFileContent().split("\\r?\\n").length : 0);
-        cm.setNumberOfRevisions(history.size());
-        cm.setNumAuthors((int) history.stream().map(Commit::getAuthor).distinct().count());
+        //Calcolo revisoni, autori e churn per le classi
+        if (ac.isReuseProcessMetrics()) {
+            return;
+        }
+        GitController.FileHistoryCounter counter = gitController != null ? gitController.getHistoryCounter(ac.getClassName()) : null;
+        if (counter != null && counter.getRevisions() == history.size()) {
+            cm.setNumberOfRevisions(counter.getRevisions());
+            cm.setNumAuthors(counter.getNumAuthors());
+        } else {
+            cm.setNumberOfRevisions(history.size());
+            cm.setNumAuthors(countAuthors(history));
+        }
         if(gitController!=null && history.size()>1){
             List<GitController.ClassChangeStats> changes = gitController.calculateClassChangeHistory(history, ac.getClassName());
             int totalChurn=changes.stream().mapToInt(c-> c.linesAdded() + c.linesDeleted()).sum();
@@ -67,10 +124,26 @@ public class MetricsController {
         }
 
     }
+    private static int countAuthors(List<Commit> history) {
+        Set<String> authors = new HashSet<>();
+        for (Commit commit : history) {
+            authors.add(commit.getAuthor());
+        }
+        return authors.size();
+    }
+
     private void processMethodLevelMetrics(AnalyzedClass ac) {
         for (AnalyzedMethod am : ac.getMethods()) {
             MethodDeclaration md = am.getMethodDeclaration();
             MethodMetrics mm = am.getMetrics();
+            if (md == null) {
+                if (am.getMetricsEngine() == MetricsEngine.AST) {
+                    applyParsedBodyMetrics(am, mm);
+                } else {
+                    applyTokenMetrics(am.getTokenMetrics(), mm);
+                }
+                continue;
+            }
             mm.setLoc(am.getBody().lines().count());
             mm.setCycloComplexity(calculateCyclomaticComplexity(md));
             mm.setParameterCount(md.getParameters().size());
@@ -94,11 +167,50 @@ public class MetricsController {
 
 
 
+    /**
+     * Fallback del motore AST: il file non è stato accettato da JavaParser ma il corpo del metodo sì,
+     * quindi le metriche sono calcolate sul corpo come per una MethodDeclaration (parametri dallo scanner).
+     */
+    private void applyParsedBodyMetrics(AnalyzedMethod am, MethodMetrics mm) {
+        BlockStmt body = am.getParsedBody();
+        mm.setParameterCount(am.getTokenMetrics().getParameterCount());
+        if (body == null) {
+            // Metodo senza corpo: come getBody() vuoto nell'AST
+            mm.setLoc(0);
+            mm.setCycloComplexity(1);
+            mm.setCognitiveComplexity(0);
+            mm.setNestingDepth(0);
+            return;
+        }
+        mm.setLoc(body.toString().lines().count());
+        mm.setCycloComplexity(calculateCyclomaticComplexity(body));
+        CognitiveComplexityVisitor cognitive = new CognitiveComplexityVisitor();
+        cognitive.visitBody(am.getSimpleName(), body);
+        mm.setCognitiveComplexity(cognitive.getComplexity());
+        NestingVisitor nesting = new NestingVisitor();
+        body.accept(nesting, null);
+        mm.setNestingDepth(nesting.getMaxDepth());
+    }
+
+    /**
+     * Motore TOKEN: le metriche sono già state calcolate dallo scanner lessicale.
+     * Il LOC conta le righe fisiche del sorgente (non quelle del corpo stampato da JavaParser, come nel motore AST)
+     * e la Cognitive Complexity richiede l'AST e resta a 0: le righe non sono confrontabili con quelle AST.
+     */
+    private void applyTokenMetrics(TokenMetricScanner.MethodScan scan, MethodMetrics mm) {
+        if (scan == null) return;
+        mm.setLoc(scan.getLoc());
+        mm.setCycloComplexity(scan.getCycloComplexity());
+        mm.setParameterCount(scan.getParameterCount());
+        mm.setCognitiveComplexity(0);
+        mm.setNestingDepth(scan.getNestingDepth());
+    }
+
     // ===============================
     // Helper per Complessità
     // ===============================
 
-    private int calculateCyclomaticComplexity(MethodDeclaration md) {
+    private int calculateCyclomaticComplexity(Node md) {
         int cc = 1;
         cc += md.findAll(IfStmt.class).size();
         cc += md.findAll(ForStmt.class).size();
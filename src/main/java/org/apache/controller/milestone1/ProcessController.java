@@ -3,13 +3,23 @@ package org.apache.controller.milestone1;
 import org.apache.logging.Printer;
 import org.apache.model.AnalyzedClass;
 
+import org.apache.model.JiraSnapshot;
+
 import org.apache.model.Release;
 
 import org.apache.model.Ticket;
 
+import org.apache.utilities.BlockGzipFile;
+import org.apache.utilities.ExecutionPools;
+import org.apache.utilities.RunConfig;
+
+import org.apache.utilities.dataset.ColumnarDatasetWriter;
 import org.apache.utilities.metrics.CodeSmellParser;
+import org.apache.utilities.metrics.MetricsEngine;
 import org.apache.utilities.metrics.NumOfCodeSmells;
 import org.apache.utilities.writer.CsvWriter;
+import org.apache.utilities.writer.ShardedDatasetWriter;
+import org.apache.utilities.writer.TokenRowsWriter;
 import org.eclipse.jgit.api.errors.GitAPIException;
 
 
@@ -22,6 +32,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 
 
@@ -32,6 +43,16 @@ public class ProcessController implements Runnable {
     private final String threadIdentity;
 
     private static final String PMD_REPORTS_BASE_DIR = "pmd_analysis";
+    // Modalità delta: ricalcola solo le classi cambiate rispetto alla release precedente
+    private static final String DELTA_PROCESSING_KEY = "DELTA_PROCESSING";
+    // Pipeline a stadi delle release e capacità delle code fra uno stadio e l'altro (backpressure)
+    private static final String PIPELINE_KEY = "PIPELINED_PROCESSING";
+    private static final String PIPELINE_QUEUE_KEY = "PIPELINE_QUEUE_CAPACITY";
+    // Copia colonnare binaria del dataset, letta dalla milestone 2 al posto del CSV
+    private static final String COLUMNAR_KEY = "DATASET_COLUMNAR";
+    // Dataset a partizioni (un file per release con manifest) e ricomposizione facoltativa nel CSV unico
+    private static final String SHARDED_KEY = "DATASET_SHARDED";
+    private static final String SHARD_MERGE_KEY = "DATASET_SHARD_MERGE";
 
 
 
@@ -73,23 +94,26 @@ public class ProcessController implements Runnable {
         }
     }
     private void processing() throws IOException, URISyntaxException, GitAPIException {
-        Printer.printlnBlue(threadIdentity+"-Fase 0: Pre-calcolo dati per il cold start di proportion ...\n");
-        List<Double> coldStartProportions = new ArrayList<>();
-
+        Printer.printBlue(threadIdentity + "- ESECUZIONE FASE 1: ANALISI ...\n");
+        // Release e ticket vengono scaricati una sola volta e condivisi da cold start e analisi
+        JiraSnapshot jiraSnapshot = performJiraAnalysis();
 
         Printer.printBlue(threadIdentity + "- Calcolo proportion per il progetto: " + this.targetName+ "\n");
-        JiraController tempJira= new JiraController(this.targetName);
-        tempJira.injectRelease();
-        tempJira.injectTickets();
-        List<Ticket> ticketsWithIV= tempJira.getFixedTickets().stream().filter(t -> t.getInjectedVersion()!=null).toList();
+        List<Ticket> ticketsWithIV= jiraSnapshot.ticketsWithInjectedVersion();
         ProportionController tempProportionController = new ProportionController();
         double p = tempProportionController.calculateAverageProportion(ticketsWithIV);
-        if(p>=0){
-            coldStartProportions.add(p);
-        }
+        // Dati del cold start: calcolati solo se Proportion ne ha bisogno (progetto con pochi ticket con IV nota)
+        Supplier<List<Double>> coldStartProportions = () -> {
+            if (ColdStartService.isEnabled()) {
+                // P dei progetti di riferimento (dalla cache persistente) più quello del progetto stesso
+                return ColdStartService.shared().coldStartProportions(targetName, p);
+            }
+            List<Double> own = new ArrayList<>();
+            if (p >= 0) own.add(p);
+            return own;
+        };
 
-        Printer.printBlue(threadIdentity + "- ESECUZIONE FASE 1: ANALISI ...\n");
-        JiraController jiraController = performJiraAnalysis();
+        JiraController jiraController = new JiraController(jiraSnapshot);
         Printer.printBlue(threadIdentity + "- Fase 2: Applicazione di Proportion per " + this.targetName+ "\n");
 
         // Chiama il metodo Proportion del JiraController, passandogli i dati di cold start
@@ -102,11 +126,13 @@ public class ProcessController implements Runnable {
         gitController.setTickets(tickets);
 
         Printer.print(threadIdentity + " - Passati " + tickets.size() + " ticket al GitController \n.");
+        Printer.print(threadIdentity + " - Motore metriche selezionato: " + gitController.getMetricsEngine() + "\n");
 
         gitController.buildCommitHistory();
         gitController.findBuggyFiles();
         gitController.buildFileCommitHistoryMap();
         gitController.findAllBugIntroducingCommits();
+        MethodHistoryController methodHistoryController = new MethodHistoryController(gitController);
 
         Printer.print(threadIdentity + " --- Controllo prima della generazione PMD ---\n");
         Printer.print(threadIdentity + " Numero di release trovate e pronte per l'analisi PMD: " + releases.size()+ "\n");
@@ -124,37 +150,86 @@ public class ProcessController implements Runnable {
 
             // --- 2. Scrittura del CSV
             String csvFileName = targetName + "_dataset.csv";
-            try (CsvWriter writer = new CsvWriter(csvFileName, targetName)) {
-                writer.writeHeader();
-                int total = releases.size();
-                int index = 0;
-                for (Release release : releases) {
-                    Printer.print(threadIdentity + " - Processando release: " + release.getReleaseID()+ "\n");
-                    index++;
-                    Printer.printBlue("Analisi release " + index + "/" + total +
-                            " (ID: " + release.getId() + ", Nome: " + release.getReleaseName() + ")\n");
-                    List<AnalyzedClass> classes = gitController.getClassesForRelease(release);
-                    gitController.labelBugginess(classes);
+            boolean compressed = BlockGzipFile.compressionEnabled();
+            boolean deltaProcessing = RunConfig.getBoolean(DELTA_PROCESSING_KEY, false);
+            Printer.print(threadIdentity + " - Modalità delta: " + (deltaProcessing ? "attiva" : "disattiva") + "\n");
+            boolean columnar = RunConfig.getBoolean(COLUMNAR_KEY, true);
+            boolean sharded = RunConfig.getBoolean(SHARDED_KEY, false);
+            Path shardDir = ShardedDatasetWriter.directoryFor(targetName);
+            Path csvPath = compressed ? BlockGzipFile.compressedPath(Paths.get(csvFileName)) : Paths.get(csvFileName);
+            // Il file colonnare è pubblicato dopo la chiusura del CSV, così non risulta più vecchio;
+            // se la pipeline fallisce close() scarta il file parziale
+            try (ColumnarDatasetWriter columnarWriter = columnar
+                         ? new ColumnarDatasetWriter(ColumnarDatasetWriter.pathFor(targetName), targetName,
+                                 gitController.getMethodIdentityTable().getMethodNames()) : null) {
+                // Run AST: righe con le sole metriche dello scanner lessicale (vedi TokenRowsWriter)
+                try (TokenRowsWriter tokenRows = gitController.getMetricsEngine() == MetricsEngine.AST
+                             ? new TokenRowsWriter(TokenRowsWriter.pathFor(targetName)) : null;
+                     CsvWriter writer = sharded ? null : new CsvWriter(csvFileName, targetName, compressed);
+                     ShardedDatasetWriter shards = sharded ? new ShardedDatasetWriter(shardDir, targetName, compressed) : null) {
+                    if (writer != null) writer.writeHeader();
+                    int total = releases.size();
+                    boolean pipelined = RunConfig.getBoolean(PIPELINE_KEY, true);
+                    int queueCapacity = RunConfig.getInt(PIPELINE_QUEUE_KEY, 2);
                     Path baseDir = Paths.get(PMD_REPORTS_BASE_DIR, targetName);
                     Files.createDirectories(baseDir);  // crea la cartella se non esiste
 
-                    String releaseId = release.getReleaseID();
-                    Path reportPath = baseDir.resolve(releaseId + ".xml");  // file unico per release
-
-                    Printer.print(threadIdentity + " - Percorso report PMD per release " + releaseId + ": " + reportPath+ "\n");
-
-
-                    CodeSmellParser.extractCodeSmell(classes, targetName, releaseId);
-
-
-                    MetricsController metricsController = new MetricsController(classes, gitController);
-                    metricsController.processMetrics();
-                    writer.writeResultsForClass(classes);
+                    ReleasePipeline pipeline = new ReleasePipeline(threadIdentity, pipelined, queueCapacity)
+                            .addStage("snapshot", work -> {
+                                Release release = work.getRelease();
+                                Printer.print(threadIdentity + " - Processando release: " + release.getReleaseID()+ "\n");
+                                Printer.printBlue("Analisi release " + (work.getIndex() + 1) + "/" + total +
+                                        " (ID: " + release.getId() + ", Nome: " + release.getReleaseName() + ")\n");
+                                List<AnalyzedClass> classes = deltaProcessing
+                                        ? gitController.getClassesForReleaseDelta(release)
+                                        : gitController.getClassesForRelease(release);
+                                gitController.getMethodIdentityTable().assignIds(classes);
+                                work.setClasses(classes);
+                            })
+                            .addStage("metriche", work -> {
+                                // Metriche statiche per classe sul pool CPU e diff Git del churn sull'executor di I/O;
+                                // intanto la storia dei metodi (diff dei commit in ordine) avanza su questo thread
+                                CompletableFuture<Void> classMetrics = new MetricsController(work.getClasses(), gitController)
+                                        .processMetricsAsync(ExecutionPools.cpuExecutor(), ExecutionPools.ioExecutor());
+                                try {
+                                    methodHistoryController.fillMethodMetrics(work.getRelease(), work.getClasses());
+                                } finally {
+                                    awaitMetrics(classMetrics);
+                                }
+                            })
+                            .addStage("etichette", work -> {
+                                gitController.labelBugginess(work.getClasses());
+                                String releaseId = work.getRelease().getReleaseID();
+                                Path reportPath = baseDir.resolve(releaseId + ".xml");  // file unico per release
+                                Printer.print(threadIdentity + " - Percorso report PMD per release " + releaseId + ": " + reportPath+ "\n");
+                                CodeSmellParser.extractCodeSmell(work.getClasses(), targetName, releaseId);
+                            })
+                            .addStage("scrittura", work -> {
+                                if (shards != null) {
+                                    shards.writeRelease(work.getIndex(), work.getRelease().getReleaseName(), work.getClasses());
+                                } else {
+                                    writer.writeResultsForClass(work.getClasses());
+                                }
+                                if (columnarWriter != null) columnarWriter.writeResultsForClass(work.getClasses());
+                                if (tokenRows != null) tokenRows.writeResultsForClass(work.getClasses());
+                            });
+                    pipeline.run(releases);
+                    if (tokenRows != null && tokenRows.getRows() > 0) {
+                        Printer.printYellow(threadIdentity + " - " + tokenRows.getRows()
+                                + " righe con metriche dello scanner lessicale, elencate in " + TokenRowsWriter.pathFor(targetName) + "\n");
+                    }
+                    if (shards != null) {
+                        Printer.print(threadIdentity + " - Partizioni del dataset scritte: " + shards.commit().size() + "\n");
+                        if (RunConfig.getBoolean(SHARD_MERGE_KEY, false)) {
+                            ShardedDatasetWriter.merge(shardDir, csvPath);
+                        }
+                    }
                 }
-
+                if (columnarWriter != null) columnarWriter.commit();
             }
             gitController.closeRepo();
-            Printer.printlnGreen(threadIdentity + "- MILESTONE 1 COMPLETATA. File CSV creato: " + csvFileName+ "\n");
+            Printer.printlnGreen(threadIdentity + "- MILESTONE 1 COMPLETATA. File CSV creato: "
+                    + (sharded && !RunConfig.getBoolean(SHARD_MERGE_KEY, false) ? shardDir : csvPath) + "\n");
         }catch (Exception e) {
             Printer.errorPrint( threadIdentity + " Errore FATALE nel processo di analisi DOPO la generazione PMD: " + e.getMessage());
 
@@ -165,12 +240,20 @@ public class ProcessController implements Runnable {
 
 
 
-    private JiraController performJiraAnalysis() throws IOException, URISyntaxException {
+    // Attende le metriche per classe e rilancia la causa del primo errore, non la CompletionException
+    private static void awaitMetrics(CompletableFuture<Void> classMetrics) throws Exception {
+        try {
+            classMetrics.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    private JiraSnapshot performJiraAnalysis() throws IOException, URISyntaxException {
         Printer.printGreen(threadIdentity + "-Avvio analisi Jira ...\n");
-        JiraController jiraController = new JiraController(targetName);
-        jiraController.injectRelease();
-        jiraController.injectTickets();
+        JiraSnapshot snapshot = JiraController.fetchSnapshot(targetName);
         Printer.printGreen(threadIdentity + "-Analisi Jira completata.\n");
-        return jiraController;
+        return snapshot;
     }
 }
\ No newline at end of file
@@ -1,14 +1,19 @@
 package org.apache.controller.milestone1;
 
 
+import org.apache.logging.Printer;
 import org.apache.model.Release;
+import org.apache.model.ReleaseRegistry;
 import org.apache.model.Ticket;
+import org.apache.utilities.RunConfig;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 
 
@@ -17,35 +22,94 @@ public class ProportionController {
 
     private static final int COLD_START_THRESHOLD=5;// Soglia per decidere se applicare cold start o proporzione media
 
+    /**
+     * Modalità di stima di P:
+     * GLOBAL usa un'unica media su tutti i ticket con IV nota (comportamento storico);
+     * INCREMENTAL scorre i ticket in ordine di risoluzione e usa la media dei soli ticket già risolti;
+     * WINDOW fa lo stesso sugli ultimi PROPORTION_WINDOW ticket con IV nota.
+     */
+    public enum Mode { GLOBAL, INCREMENTAL, WINDOW }
+
+    private static final String MODE_KEY = "PROPORTION_MODE";
+    private static final String WINDOW_KEY = "PROPORTION_WINDOW";
+
     /**
      * Metodo principale. Prende una lista di ticket, la ordina e applica
-     * l'algoritmo di proporzione incrementale per stimare le IV mancanti.
+     * l'algoritmo di proporzione per stimare le IV mancanti, nella modalità scelta con PROPORTION_MODE.
      *
      * @param allTickets La lista completa di ticket validati da Jira.
-     * @param allReleases La lista di tutte le release del progetto.
+     * @param registry Il registro delle release del progetto.
+     * @param coldStartData Valori di P per il cold start, richiesti solo se servono (progetto sotto soglia).
      * @return La stessa lista di ticket, ma con le IV mancanti "riparate".
      */
-    public List<Ticket> applyProportion(List<Ticket> allTickets, List<Release> allReleases,List<Double> coldStartData) {
+    public List<Ticket> applyProportion(List<Ticket> allTickets, ReleaseRegistry registry, Supplier<List<Double>> coldStartData) {
 
         // 1. Ordina tutti i ticket per data di risoluzione. Questo è fondamentale per l'approccio incrementale.
         allTickets.sort(Comparator.comparing(Ticket::getResolutionDate));
+        Mode mode = readMode();
+        Printer.print("Proportion in modalità " + mode + "\n");
+        if (mode == Mode.GLOBAL) {
+            applyGlobalProportion(allTickets, registry, coldStartData);
+        } else {
+            int windowSize = mode == Mode.WINDOW ? Math.max(1, RunConfig.getInt(WINDOW_KEY, 50)) : 0;
+            applyIncrementalProportion(allTickets, registry, coldStartData, windowSize);
+        }
+        return allTickets;
+    }
+
+    private void applyGlobalProportion(List<Ticket> allTickets, ReleaseRegistry registry, Supplier<List<Double>> coldStartData) {
         List<Ticket> ticketsWithKnownIv = allTickets.stream().filter(t -> t.getInjectedVersion()!=null).toList();
         double p;
 
         if(ticketsWithKnownIv.size()>= COLD_START_THRESHOLD){
             p=calculateAverageProportion(ticketsWithKnownIv);
         }else{
-            p=calculateColdStartMedian(coldStartData);
+            p=calculateColdStartMedian(coldStartData.get());
         }
         for (Ticket ticket : allTickets) {
             // Se il ticket NON ha una IV, usiamo il valore di P calcolato per stimarla
             if (ticket.getInjectedVersion() == null) {
-                estimateIvForTicket(ticket, p, allReleases);
+                estimateIvForTicket(ticket, p, registry);
             }
         }
+    }
 
-        return allTickets;
+    /**
+     * Un solo passaggio in ordine di risoluzione: i ticket con IV nota aggiornano la media corrente,
+     * quelli senza IV vengono stimati con la media dei ticket risolti prima di loro
+     * (o con il cold start finché i valori disponibili sono sotto soglia).
+     */
+    private void applyIncrementalProportion(List<Ticket> allTickets, ReleaseRegistry registry,
+                                            Supplier<List<Double>> coldStartData, int windowSize) {
+        ProportionEstimator estimator = new ProportionEstimator(windowSize);
+        double coldStart = Double.NaN;
+        for (Ticket ticket : allTickets) {
+            if (ticket.getInjectedVersion() != null) {
+                double p = calculatePForTicket(ticket);
+                if (p >= 0.0) estimator.add(p);
+                continue;
+            }
+            double p;
+            if (estimator.size() >= COLD_START_THRESHOLD) {
+                p = estimator.average();
+            } else {
+                if (Double.isNaN(coldStart)) coldStart = calculateColdStartMedian(coldStartData.get());
+                p = coldStart;
+            }
+            estimateIvForTicket(ticket, p, registry);
+        }
+    }
+
+    private static Mode readMode() {
+        String value = RunConfig.getString(MODE_KEY, Mode.GLOBAL.name());
+        try {
+            return Mode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Printer.printYellow("Valore non valido per " + MODE_KEY + ": '" + value + "'. Uso " + Mode.GLOBAL);
+            return Mode.GLOBAL;
+        }
     }
+
     public double calculateAverageProportion(List<Ticket> ticketsWithKnownIv) {
         if(ticketsWithKnownIv==null||ticketsWithKnownIv.isEmpty()){
             return -1.0; // Valore sentinella per indicare che non è calcolabile
@@ -65,7 +129,7 @@ public class ProportionController {
         Collections.sort(coldStartData);
         int size = coldStartData.size();
         if(size%2==0){
-            return coldStartData.get((size/2)-1)+ coldStartData.get(size/2)/2.0; // Media dei due mediani
+            return (coldStartData.get((size/2)-1)+ coldStartData.get(size/2))/2.0; // Media dei due mediani
         }else{
             return coldStartData.get(size/2); // Mediano singolo
         }
@@ -94,7 +158,7 @@ public class ProportionController {
      * Stima e imposta la Injected Version per un ticket, usando il valore di P calcolato.
      * Formula: IV = FV - (FV - OV) * P
      */
-    private void estimateIvForTicket(Ticket ticket, double p, List<Release> allReleases) {
+    private void estimateIvForTicket(Ticket ticket, double p, ReleaseRegistry registry) {
         long fvDays = ticket.getFixedVersion().getReleaseDate().toEpochDay();
         long ovDays = ticket.getOpeningVersion().getReleaseDate().toEpochDay();
 
@@ -106,45 +170,36 @@ public class ProportionController {
         LocalDate estimatedIvDate = ticket.getFixedVersion().getReleaseDate().minusDays(daysToSubtract);
 
         // Trova la release più appropriata per questa data stimata
-        Release estimatedIvRelease = findReleaseForDate(estimatedIvDate, allReleases);
+        Release estimatedIvRelease = findReleaseForDate(estimatedIvDate, registry);
 
         if (estimatedIvRelease != null) {
             ticket.setInjectedVersion(estimatedIvRelease);
             // Opzionale: potresti voler ricalcolare anche la lista delle Affected Versions
-            adjustAffectedVersions(ticket, allReleases);
+            adjustAffectedVersions(ticket, registry);
         }
     }
 
     /**
-     * Trova la release che contiene una data specifica o quella immediatamente successiva.
+     * Trova la release che contiene una data specifica o quella immediatamente successiva (ricerca binaria).
      */
-    private Release findReleaseForDate(LocalDate date, List<Release> allReleases) {
-        // Assicura che le release siano ordinate per data
-        allReleases.sort(Comparator.comparing(Release::getReleaseDate));
-        for (Release release : allReleases) {
-            if (!date.isAfter(release.getReleaseDate())) {
-                return release;
-            }
-        }
+    private Release findReleaseForDate(LocalDate date, ReleaseRegistry registry) {
+        if (registry.size() == 0) return null;
+        int ordinal = registry.firstOrdinalOnOrAfter(date);
         // Se la data è successiva a tutte le release, ritorna l'ultima
-        return allReleases.isEmpty() ? null : allReleases.getLast();
+        return registry.get(Math.min(ordinal, registry.size() - 1));
     }
 
     /**
      *
-     * Ricostruisce la lista delle Affected Versions dopo aver stimato una nuova IV.
+     * Ricostruisce la lista delle Affected Versions dopo aver stimato una nuova IV:
+     * sono le release fra la IV (inclusa) e la FV (esclusa), un intervallo contiguo di ordinali.
      */
-    private void adjustAffectedVersions(Ticket ticket, List<Release> allReleases) {
+    private void adjustAffectedVersions(Ticket ticket, ReleaseRegistry registry) {
         if (ticket.getInjectedVersion() == null) return;
 
-        List<Release> newAffectedVersions = new ArrayList<>();
-        for (Release release : allReleases) {
-            // Una release è "affected" se si trova tra la IV (inclusa) e la FV (esclusa)
-            if (!release.getReleaseDate().isBefore(ticket.getInjectedVersion().getReleaseDate()) &&
-                    release.getReleaseDate().isBefore(ticket.getFixedVersion().getReleaseDate())) {
-                newAffectedVersions.add(release);
-            }
-        }
+        int from = registry.firstOrdinalOnOrAfter(ticket.getInjectedVersion().getReleaseDate());
+        int to = registry.firstOrdinalOnOrAfter(ticket.getFixedVersion().getReleaseDate());
+        List<Release> newAffectedVersions = new ArrayList<>(registry.releases().subList(from, Math.max(from, to)));
         ticket.setAffectedVersions(newAffectedVersions);
     }
 }
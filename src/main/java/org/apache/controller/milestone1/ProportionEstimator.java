@@ -0,0 +1,48 @@
+package org.apache.controller.milestone1;
+
+/**
+ * Media corrente dei valori di P, aggiornata in O(1) a ogni nuovo ticket.
+ * Con una finestra positiva la media riguarda solo gli ultimi N valori (buffer circolare
+ * con somma mobile), altrimenti tutti i valori visti.
+ */
+public class ProportionEstimator {
+
+    private final double[] window;
+    private int next;
+    private int size;
+    private double sum;
+
+    /**
+     * @param windowSize numero di valori su cui mediare; 0 o negativo per nessun limite
+     */
+    public ProportionEstimator(int windowSize) {
+        this.window = windowSize > 0 ? new double[windowSize] : null;
+    }
+
+    public void add(double p) {
+        if (window == null) {
+            sum += p;
+            size++;
+            return;
+        }
+        if (size == window.length) {
+            sum -= window[next];
+        } else {
+            size++;
+        }
+        window[next] = p;
+        sum += p;
+        next = (next + 1) % window.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Media corrente, -1 se non è ancora stato aggiunto alcun valore.
+     */
+    public double average() {
+        return size == 0 ? -1.0 : sum / size;
+    }
+}
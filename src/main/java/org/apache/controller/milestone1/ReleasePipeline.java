@@ -0,0 +1,212 @@
+package org.apache.controller.milestone1;
+
+import org.apache.logging.Printer;
+import org.apache.model.AnalyzedClass;
+import org.apache.model.Release;
+import org.apache.utilities.ExecutionPools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Pipeline a stadi per l'elaborazione delle release (es. snapshot, metriche, etichette, scrittura).
+ * Ogni stadio gira su un proprio thread e passa le release al successivo tramite una coda limitata:
+ * mentre la release N viene scritta, la N+1 è in calcolo e la N+2 viene letta da Git.
+ * La capacità delle code regola la backpressure (quante release possono restare in attesa fra due stadi).
+ * L'ordine delle release è preservato perché ogni stadio è sequenziale.
+ * Con pipeline disattivata gli stessi stadi vengono eseguiti in sequenza, una release alla volta.
+ */
+public class ReleasePipeline {
+
+    /**
+     * Lavoro di uno stadio su una release; il primo stadio valorizza le classi.
+     */
+    @FunctionalInterface
+    public interface StageTask {
+        void process(ReleaseWork work) throws Exception;
+    }
+
+    /**
+     * Release in transito nella pipeline con le classi analizzate.
+     */
+    public static final class ReleaseWork {
+        private final Release release;
+        private final int index;
+        private List<AnalyzedClass> classes = List.of();
+
+        ReleaseWork(Release release, int index) {
+            this.release = release;
+            this.index = index;
+        }
+
+        public Release getRelease() {
+            return release;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public List<AnalyzedClass> getClasses() {
+            return classes;
+        }
+
+        public void setClasses(List<AnalyzedClass> classes) {
+            this.classes = classes;
+        }
+    }
+
+    private static final ReleaseWork END = new ReleaseWork(null, -1);
+
+    private final String identity;
+    private final boolean concurrent;
+    private final int queueCapacity;
+    private final List<String> stageNames = new ArrayList<>();
+    private final List<StageTask> stageTasks = new ArrayList<>();
+
+    public ReleasePipeline(String identity, boolean concurrent, int queueCapacity) {
+        this.identity = identity;
+        this.concurrent = concurrent;
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    public ReleasePipeline addStage(String name, StageTask task) {
+        stageNames.add(name);
+        stageTasks.add(task);
+        return this;
+    }
+
+    public void run(List<Release> releases) throws Exception {
+        StageStats[] stats = new StageStats[stageTasks.size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new StageStats(stageNames.get(i));
+        }
+        long start = System.nanoTime();
+        if (concurrent && stageTasks.size() > 1) {
+            runConcurrent(releases, stats);
+        } else {
+            runSequential(releases, stats);
+        }
+        report(stats, System.nanoTime() - start);
+    }
+
+    private void runSequential(List<Release> releases, StageStats[] stats) throws Exception {
+        int index = 0;
+        for (Release release : releases) {
+            ReleaseWork work = new ReleaseWork(release, index++);
+            for (int s = 0; s < stageTasks.size(); s++) {
+                stats[s].run(stageTasks.get(s), work);
+            }
+        }
+    }
+
+    private void runConcurrent(List<Release> releases, StageStats[] stats) throws Exception {
+        int stages = stageTasks.size();
+        List<BlockingQueue<ReleaseWork>> queues = new ArrayList<>();
+        for (int s = 0; s < stages - 1; s++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+
+        // Gli stadi passano il tempo su code e I/O: virtual thread se attivi, il lavoro CPU va sul pool limitato
+        ExecutorService executor = ExecutionPools.newIoExecutor(stages);
+        CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            futures.add(completion.submit(() -> {
+                int index = 0;
+                for (Release release : releases) {
+                    ReleaseWork work = new ReleaseWork(release, index++);
+                    stats[0].run(stageTasks.getFirst(), work);
+                    stats[0].put(queues.getFirst(), work);
+                }
+                queues.getFirst().put(END);
+                return null;
+            }));
+            for (int s = 1; s < stages; s++) {
+                final int stage = s;
+                futures.add(completion.submit(() -> {
+                    BlockingQueue<ReleaseWork> input = queues.get(stage - 1);
+                    BlockingQueue<ReleaseWork> output = stage < stages - 1 ? queues.get(stage) : null;
+                    while (true) {
+                        ReleaseWork work = stats[stage].take(input);
+                        if (work == END) break;
+                        stats[stage].run(stageTasks.get(stage), work);
+                        if (output != null) stats[stage].put(output, work);
+                    }
+                    if (output != null) output.put(END);
+                    return null;
+                }));
+            }
+
+            // Il primo stadio che fallisce interrompe gli altri, che altrimenti resterebbero bloccati sulle code
+            for (int i = 0; i < stages; i++) {
+                try {
+                    completion.take().get();
+                } catch (ExecutionException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception exception) throw exception;
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void report(StageStats[] stats, long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        Printer.printBlue(String.format("%s - Pipeline release (%s, coda %d) completata in %.2f s%n",
+                identity, concurrent ? "concorrente" : "sequenziale", queueCapacity, elapsedSeconds));
+        for (StageStats s : stats) {
+            double busy = s.busyNanos / 1e9;
+            Printer.print(String.format("%s -   Stadio %-9s %3d release, %7d classi, attivo %.2f s (%.1f classi/s), attesa input %.2f s, attesa output %.2f s%n",
+                    identity, s.name, s.releases, s.classes, busy, busy > 0 ? s.classes / busy : 0.0,
+                    s.waitInputNanos / 1e9, s.waitOutputNanos / 1e9));
+        }
+    }
+
+    /**
+     * Statistiche di uno stadio; ogni istanza è usata da un solo thread.
+     */
+    private static final class StageStats {
+        private final String name;
+        private int releases;
+        private long classes;
+        private long busyNanos;
+        private long waitInputNanos;
+        private long waitOutputNanos;
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        void run(StageTask task, ReleaseWork work) throws Exception {
+            long start = System.nanoTime();
+            task.process(work);
+            busyNanos += System.nanoTime() - start;
+            releases++;
+            classes += work.getClasses().size();
+        }
+
+        ReleaseWork take(BlockingQueue<ReleaseWork> queue) throws InterruptedException {
+            long start = System.nanoTime();
+            ReleaseWork work = queue.take();
+            waitInputNanos += System.nanoTime() - start;
+            return work;
+        }
+
+        void put(BlockingQueue<ReleaseWork> queue, ReleaseWork work) throws InterruptedException {
+            long start = System.nanoTime();
+            queue.put(work);
+            waitOutputNanos += System.nanoTime() - start;
+        }
+    }
+}
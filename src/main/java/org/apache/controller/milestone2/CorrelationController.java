@@ -1,6 +1,7 @@
 package org.apache.controller.milestone2;
 
 import org.apache.logging.Printer;
+import org.apache.utilities.dataset.DatasetSchema;
 import tech.tablesaw.api.*;
 import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
 
@@ -47,7 +48,8 @@ public class CorrelationController {
 
         // Calcola Spearman per tutte le feature numeriche
         for (String colName : dataset.columnNames()) {
-            if (colName.equalsIgnoreCase(BUG_COLUMN) || colName.equalsIgnoreCase(RELEASE_COLUMN)) continue;
+            if (colName.equalsIgnoreCase(BUG_COLUMN) || colName.equalsIgnoreCase(RELEASE_COLUMN)
+                    || DatasetSchema.isExcludedFromMilestone2(colName)) continue;
 
             if (dataset.column(colName) instanceof NumericColumn<?> numCol) {
                 double[] featureValues = numCol.asDoubleArray();
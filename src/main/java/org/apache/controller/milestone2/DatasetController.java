@@ -1,13 +1,30 @@
 package org.apache.controller.milestone2;
 
 import org.apache.logging.Printer;
+import org.apache.utilities.BlockGzipFile;
+import org.apache.utilities.dataset.ColumnarDataset;
+import org.apache.utilities.dataset.ColumnarDatasetWriter;
+import org.apache.utilities.dataset.DatasetCsvReader;
+import org.apache.utilities.dataset.DatasetSchema;
+import org.apache.utilities.dataset.InstancesCache;
+import org.apache.utilities.dataset.ReleaseRowIndex;
+import org.apache.utilities.writer.ShardedDatasetWriter;
 import tech.tablesaw.api.IntColumn;
 import tech.tablesaw.api.Table;
 import tech.tablesaw.api.DoubleColumn;
 import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.io.csv.CsvReadOptions;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Set;
@@ -18,27 +35,53 @@ import tech.tablesaw.selection.Selection;
 import weka.core.Attribute;
 import weka.core.Instances;
 import weka.core.DenseInstance;
+import weka.core.Utils;
 
 public class DatasetController {
 
+    private final String projectName;
     private final String csvFilePath;
     public  static final  String RELEASE = "Release";
+    // Ultima tabella indicizzata per release e relativo indice
+    private Table indexedTable;
+    private ReleaseRowIndex releaseIndex;
+    // Release selezionate dall'ultima prepareDatasetA
+    private List<String> datasetAReleases = List.of();
+    // Dataset colonnare usato dall'ultima prepareDatasetA, null se si è letto il CSV
+    private ColumnarDataset datasetAColumnar;
 
 
     public DatasetController(String projectName) {
+        this.projectName = projectName;
         this.csvFilePath = projectName + "_dataset.csv";
     }
 
     public Table prepareDatasetA(double cutPercentage) {
-        File inputFile = new File(csvFilePath);
+        File inputFile = csvFile();
         if (!inputFile.exists()) {
             Printer.errorPrint("ERRORE: File dataset non trovato: " + csvFilePath);
             return null;
         }
 
+        // Se c'è la copia colonnare aggiornata si leggono direttamente le sole release necessarie
+        ColumnarDataset columnar = openColumnarDataset(inputFile);
+        datasetAColumnar = columnar;
+        if (columnar != null) {
+            List<String> uniqueReleases = new ArrayList<>(columnar.releases());
+            Collections.sort(uniqueReleases);
+            List<String> releasesForDatasetA = selectReleasesForDatasetA(uniqueReleases, cutPercentage);
+            datasetAReleases = releasesForDatasetA;
+            if (releasesForDatasetA.isEmpty()) {
+                return columnar.rowCount() == 0 ? columnar.toTable(csvTableName()) : Table.create("EmptyDatasetA");
+            }
+            Table datasetA = columnar.toTable(csvTableName(), releasesForDatasetA);
+            rememberReleaseIndex(datasetA, columnar.rowIndex(releasesForDatasetA));
+            return datasetA;
+        }
+
         Table fullDataset;
         try {
-            fullDataset = Table.read().csv(csvFilePath);
+            fullDataset = readCsv(inputFile);
         } catch (Exception e) {
             Printer.errorPrint("ERRORE: Impossibile leggere il file CSV: " + csvFilePath + " - " + e.getMessage());
             return null;
@@ -59,10 +102,85 @@ public class DatasetController {
         List<String> uniqueReleases = new ArrayList<>(new HashSet<>(releaseColumn.asList()));
         Collections.sort(uniqueReleases);
 
+        List<String> releasesForDatasetA = selectReleasesForDatasetA(uniqueReleases, cutPercentage);
+        datasetAReleases = releasesForDatasetA;
+        if (releasesForDatasetA.isEmpty()) {
+            return Table.create("EmptyDatasetA");
+        }
+
+        // 3. Filtra il fullDataset usando la lista delle releaseForDatasetA
+        // Qui chiami il metodo helper che filtra per una lista di release
+        return filterTableByReleases(fullDataset, releasesForDatasetA);
+    }
+
+    /**
+     * CSV del dataset letto in parallelo dal file mappato in memoria; se il file non ha lo schema atteso si usa Tablesaw.
+     */
+    private Table readCsv(File inputFile) throws IOException {
+        try {
+            return DatasetCsvReader.readTable(inputFile.toPath(), csvTableName());
+        } catch (IOException e) {
+            Printer.printYellow("Lettura diretta del CSV non riuscita, uso Tablesaw: " + e.getMessage());
+            if (inputFile.isDirectory()) {
+                return readMergedParts(inputFile.toPath());
+            }
+            if (!BlockGzipFile.isCompressed(inputFile.toPath())) {
+                return Table.read().csv(inputFile);
+            }
+            try (InputStream in = BlockGzipFile.openStream(inputFile.toPath())) {
+                return Table.read().usingOptions(CsvReadOptions.builder(in).tableName(csvTableName()));
+            }
+        }
+    }
+
+    /**
+     * Partizioni ricomposte in un CSV temporaneo, per la lettura con Tablesaw.
+     */
+    private Table readMergedParts(Path directory) throws IOException {
+        Path merged = Files.createTempFile(projectName + "_dataset", ".csv");
+        try {
+            ShardedDatasetWriter.merge(directory, merged);
+            return Table.read().usingOptions(CsvReadOptions.builder(merged.toFile()).tableName(csvTableName()));
+        } finally {
+            Files.deleteIfExists(merged);
+        }
+    }
+
+    /**
+     * Dataset da leggere: la cartella di partizioni (DATASET_SHARDED) se il suo manifest è il più recente,
+     * altrimenti il CSV, nella versione compressa (.csv.gz) se è la più recente o in quella in chiaro.
+     */
+    private File csvFile() {
+        File csv = BlockGzipFile.resolve(Paths.get(csvFilePath)).toFile();
+        Path parts = ShardedDatasetWriter.directoryFor(projectName);
+        if (ShardedDatasetWriter.isSharded(parts)
+                && (!csv.exists() || lastModified(parts.toFile()) >= csv.lastModified())) {
+            return parts.toFile();
+        }
+        return csv;
+    }
+
+    /**
+     * Data di modifica del dataset: per una cartella di partizioni è quella del manifest, scritto per ultimo.
+     */
+    private static long lastModified(File dataset) {
+        return dataset.isDirectory()
+                ? ShardedDatasetWriter.manifestPath(dataset.toPath()).toFile().lastModified()
+                : dataset.lastModified();
+    }
+
+    private String csvTableName() {
+        return new File(csvFilePath).getName();
+    }
+
+    /**
+     * Prime release (in ordine) che compongono il Dataset A secondo la percentuale di taglio.
+     */
+    private List<String> selectReleasesForDatasetA(List<String> uniqueReleases, double cutPercentage) {
         int totalReleases = uniqueReleases.size();
         if (totalReleases == 0) {
             Printer.printYellow("ATTENZIONE: Nessuna release valida trovata nel dataset.");
-            return Table.create("EmptyDatasetA");
+            return List.of();
         }
 
         // Calcolo del taglio percentuale
@@ -80,10 +198,49 @@ public class DatasetController {
         // 2. Logga le release che verranno mantenute
         Printer.println(String.format("Filtraggio del dataset: mantenute le prime %d release (corrispondenti a %.2f%% del totale) su %d. Release mantenute per Dataset A: %s",
                 releasesToKeepCount, cutPercentage * 100, totalReleases, releasesForDatasetA));
+        return releasesForDatasetA;
+    }
 
-        // 3. Filtra il fullDataset usando la lista delle releaseForDatasetA
-        // Qui chiami il metodo helper che filtra per una lista di release
-        return filterTableByReleases(fullDataset, releasesForDatasetA);
+    /**
+     * Dataset colonnare scritto insieme al CSV, se esiste e non è più vecchio del CSV; altrimenti null.
+     */
+    private ColumnarDataset openColumnarDataset(File csvFile) {
+        File columnarFile = ColumnarDatasetWriter.pathFor(projectName).toFile();
+        if (!columnarFile.exists() || columnarFile.lastModified() < lastModified(csvFile)) {
+            return null;
+        }
+        try {
+            return ColumnarDataset.open(columnarFile.toPath());
+        } catch (IOException e) {
+            Printer.printYellow("Dataset colonnare non leggibile, uso il CSV: " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Istanze Weka del Dataset A per le release indicate, lette dal dataset colonnare se prepareDatasetA l'ha usato,
+     * altrimenti in streaming dal CSV senza passare da Tablesaw.
+     * Equivale a convertTablesawToWekaInstances(prepareDatasetA(...), targetReleases, datasetName):
+     * va chiamata dopo prepareDatasetA. Se il CSV non ha lo schema atteso si usa la conversione da Tablesaw.
+     */
+    public Instances loadDatasetAInstances(Table datasetA, List<String> targetReleases, String datasetName) {
+        List<String> releases = targetReleases.stream().filter(datasetAReleases::contains).toList();
+        if (datasetAColumnar != null) {
+            return datasetAColumnar.toInstances(datasetName, releases);
+        }
+        try {
+            // Stesso CSV e stesse release danno le stesse istanze: la seconda richiesta (es. "_final") non rilegge il file
+            Path csv = csvFile().toPath();
+            Instances instances = InstancesCache.shared().get(csv, DatasetCsvReader.cacheVariant("dataset-a:" + String.join(",", releases)
+                            + "|methodHistory=" + DatasetSchema.milestone2UsesMethodHistory()),
+                    () -> DatasetCsvReader.readInstances(csv, releases, datasetName));
+            instances.setRelationName(datasetName);
+            return instances;
+        } catch (Exception e) {
+            Printer.printYellow("Lettura diretta del CSV non riuscita, uso la conversione da Tablesaw: " + e.getMessage());
+            return convertTablesawToWekaInstances(datasetA, targetReleases, datasetName);
+        }
     }
 
 
@@ -97,86 +254,108 @@ public class DatasetController {
         }
 
         ArrayList<Attribute> attributes = createWekaAttributes(filteredTable);
-        Instances wekaInstances = new Instances(datasetName, attributes, 0);
-
-        for (int i = 0; i < filteredTable.rowCount(); i++) {
-            DenseInstance instance = new DenseInstance(attributes.size());
-
-            for (Attribute attr : attributes) {
-                String attrName = attr.name();
+        int rows = filteredTable.rowCount();
+        int numAttributes = attributes.size();
 
-                // Assicurati che la colonna esista nella tabella filtrata
-                if (!filteredTable.columnNames().contains(attrName)) {
-                    Printer.printYellow("Colonna Tablesaw '" + attrName + "' non trovata nella tabella filtrata. Skippato l'impostazione del valore per questa istanza.");
-                    continue; // Passa al prossimo attributo
-                }
+        // Valori delle istanze, riempiti colonna per colonna; quelli non impostati restano missing
+        double[][] values = new double[rows][numAttributes];
+        for (double[] row : values) {
+            Arrays.fill(row, Utils.missingValue());
+        }
 
-                // Delegazione alla nuova routine che imposta il valore (gestisce anche gli errori)
-                setAttributeValue(instance, attr, filteredTable, i);
+        for (int j = 0; j < numAttributes; j++) {
+            Attribute attr = attributes.get(j);
+            // Ogni attributo è risolto una sola volta alla sua colonna tipizzata
+            if (!filteredTable.containsColumn(attr.name())) {
+                Printer.printYellow("Colonna Tablesaw '" + attr.name() + "' non trovata nella tabella filtrata. Skippato l'impostazione del valore per questo attributo.");
+                continue;
             }
-            wekaInstances.add(instance);
+            fillAttributeValues(values, j, attr, filteredTable.column(attr.name()));
         }
 
+        Instances wekaInstances = new Instances(datasetName, attributes, rows);
+        for (double[] row : values) {
+            wekaInstances.add(new DenseInstance(1.0, row));
+        }
         return wekaInstances;
     }
 
 
-    private void setAttributeValue(DenseInstance instance, Attribute attr, Table filteredTable, int rowIndex) {
-        String attrName = attr.name();
-        try {
-            if (attr.isNumeric()) {
-                double value = getNumericValue(filteredTable, attrName, rowIndex);
-                instance.setValue(attr, value);
-            } else if (attr.isNominal()) {
-                String value = getStringValue(filteredTable, attrName, rowIndex);
-                if (value != null && !value.trim().isEmpty()) {
-                    if (attr.indexOfValue(value) != -1) { // Verifica che il valore sia tra i nominali definiti
-                        instance.setValue(attr, value);
-                    } else {
-                        Printer.printYellow(String.format("Valore nominale '%s' non riconosciuto per attributo '%s'. Alla riga %d. Assegnato Missing Value.", value, attrName, rowIndex));
-                        instance.setMissing(attr); // Imposta come valore mancante di Weka
-                    }
-                } else {
-                    Printer.printYellow(String.format("Valore nullo/vuoto per attributo nominale '%s' alla riga %d. Assegnato Missing Value.", attrName, rowIndex));
-                    instance.setMissing(attr); // Imposta come valore mancante di Weka
+    /**
+     * Copia i valori di una colonna Tablesaw nella posizione j delle istanze.
+     * I valori nominali sono convertiti in indici una sola volta per valore distinto; i valori non validi
+     * diventano missing e vengono segnalati con un solo messaggio per colonna.
+     */
+    private void fillAttributeValues(double[][] values, int j, Attribute attr, Column<?> column) {
+        int rows = values.length;
+        if (attr.isNumeric()) {
+            switch (column) {
+                case DoubleColumn doubleColumn -> {
+                    for (int i = 0; i < rows; i++) values[i][j] = doubleColumn.getDouble(i);
+                }
+                case IntColumn intColumn -> {
+                    for (int i = 0; i < rows; i++) values[i][j] = intColumn.getInt(i);
+                }
+                default -> {
+                    for (int i = 0; i < rows; i++) values[i][j] = parseNumericValue(column, i);
                 }
-            } else if (attr.isString()) { // Gestione esplicita di attributi di tipo String (testo libero)
-                String value = getStringValue(filteredTable, attrName, rowIndex);
-                instance.setValue(attr, value);
             }
-        } catch (Exception e) {
-            String sourceVal;
-            try {
-                sourceVal = filteredTable.column(attrName).getString(rowIndex);
-            } catch (Exception ex) {
-                sourceVal = "N/A";
+        } else if (attr.isNominal()) {
+            Map<String, Double> indexByValue = new HashMap<>();
+            int missing = 0;
+            for (int i = 0; i < rows; i++) {
+                double index = indexByValue.computeIfAbsent(column.getString(i), value -> nominalIndex(attr, value));
+                if (Utils.isMissingValue(index)) missing++;
+                values[i][j] = index;
+            }
+            if (missing > 0) {
+                Printer.printYellow(String.format("%d valori nulli/vuoti o non riconosciuti per attributo nominale '%s'. Assegnato Missing Value.", missing, attr.name()));
             }
-            Printer.printYellow(String.format("Errore imprevisto nell'impostare il valore per l'attributo '%s' (tipo Weka: %d) alla riga %d: %s. Valore sorgente: '%s'. Assegnando Missing Value/Default.",
-                    attrName, attr.type(), rowIndex, e.getMessage(), sourceVal));
-            instance.setMissing(attr); // In caso di errore inaspettato, imposta missing
+        } else if (attr.isString()) { // Gestione esplicita di attributi di tipo String (testo libero)
+            for (int i = 0; i < rows; i++) {
+                String value = column.getString(i);
+                values[i][j] = value == null ? Utils.missingValue() : attr.addStringValue(value);
+            }
+        }
+    }
+
+    private double nominalIndex(Attribute attr, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Utils.missingValue();
+        }
+        int index = attr.indexOfValue(value); // Verifica che il valore sia tra i nominali definiti
+        if (index == -1) {
+            Printer.printYellow(String.format("Valore nominale '%s' non riconosciuto per attributo '%s'. Assegnato Missing Value.", value, attr.name()));
+            return Utils.missingValue();
         }
+        return index;
     }
 
 
 
     private Table filterTableByReleases(Table sourceTable, List<String> targetReleases) {
-        StringColumn releaseCol = sourceTable.stringColumn(RELEASE);
+        // Se targetReleases è vuota, restituisci una tabella vuota
+        if (targetReleases.isEmpty()) {
+            return Table.create("EmptyFilteredTable");
+        }
+        // Le righe di ogni release sono contigue: si uniscono gli intervalli dell'indice, senza confronti riga per riga
+        Selection selection = releaseIndexFor(sourceTable).select(targetReleases);
+        return sourceTable.where(selection);
+    }
 
-        if (targetReleases.size() == 1) {
-            return sourceTable.where(releaseCol.isEqualTo(targetReleases.getFirst()));
-        } else {
-            Selection selection = null;
-            for (String release : targetReleases) {
-                Selection currentSelection = releaseCol.isEqualTo(release);
-                if (selection == null) {
-                    selection = currentSelection;
-                } else {
-                    selection = selection.or(currentSelection);
-                }
-            }
-            // Se selection è null (lista targetReleases vuota), restituisci una tabella vuota
-            return selection != null ? sourceTable.where(selection) : Table.create("EmptyFilteredTable");
+    /**
+     * Indice delle release della tabella, costruito una sola volta e riusato per tutte le conversioni sulla stessa tabella.
+     */
+    private synchronized ReleaseRowIndex releaseIndexFor(Table table) {
+        if (table != indexedTable) {
+            rememberReleaseIndex(table, ReleaseRowIndex.of(table.stringColumn(RELEASE)));
         }
+        return releaseIndex;
+    }
+
+    private synchronized void rememberReleaseIndex(Table table, ReleaseRowIndex index) {
+        this.indexedTable = table;
+        this.releaseIndex = index;
     }
 
 
@@ -187,7 +366,8 @@ public class DatasetController {
             String colName = col.name();
 
             // Ignora colonne non necessarie per la classificazione
-            if (colName.equalsIgnoreCase(RELEASE) || colName.equalsIgnoreCase("MethodName") || colName.equalsIgnoreCase("ProjectName")) {
+            if (colName.equalsIgnoreCase(RELEASE) || colName.equalsIgnoreCase("MethodName") || colName.equalsIgnoreCase("ProjectName")
+                    || DatasetSchema.isExcludedFromMilestone2(colName)) {
                 continue;
             }
 
@@ -251,33 +431,18 @@ public class DatasetController {
         }
     }
 
-    private double getNumericValue(Table table, String columnName, int rowIndex) {
-        Column<?> column = table.column(columnName);
-
-        return switch (column) {
-            case DoubleColumn doubleColumn -> doubleColumn.getDouble(rowIndex);
-            case IntColumn intColumn -> intColumn.getInt(rowIndex);
-            default -> {
-                String stringValue = column.getString(rowIndex);
-                double value;
-                try {
-                    value = Double.parseDouble(stringValue);
-                } catch (NumberFormatException e) {
-                    Printer.printYellow("Impossibile convertire '" + stringValue + "' in numero per la colonna "
-                            + columnName + " alla riga " + rowIndex + ". Restituisco 0.0.");
-                    value = 0.0;
-                }
-                yield value;
-            }
-        };
+    private double parseNumericValue(Column<?> column, int rowIndex) {
+        String stringValue = column.getString(rowIndex);
+        try {
+            return Double.parseDouble(stringValue);
+        } catch (NumberFormatException e) {
+            Printer.printYellow("Impossibile convertire '" + stringValue + "' in numero per la colonna "
+                    + column.name() + " alla riga " + rowIndex + ". Restituisco 0.0.");
+            return 0.0;
+        }
     }
 
 
-    private String getStringValue(Table table, String columnName, int rowIndex) {
-        Column<?> column = table.column(columnName);
-        return column.getString(rowIndex);
-    }
-
     private Instances createEmptyWekaInstances(String datasetName, Table referenceTable)  {
         ArrayList<Attribute> attributes = createWekaAttributes(referenceTable);
         return new Instances(datasetName, attributes, 0);
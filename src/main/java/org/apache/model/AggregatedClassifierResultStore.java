@@ -5,9 +5,12 @@ import com.fasterxml.jackson.databind.type.CollectionType;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import org.apache.logging.Printer;
+import org.apache.utilities.BlockGzipFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
@@ -28,9 +31,19 @@ public class AggregatedClassifierResultStore {
         }
 
         File file = new File(dir, project + ".json");
+        boolean compressed = BlockGzipFile.compressionEnabled();
+        if (compressed) {
+            file = BlockGzipFile.compressedPath(file.toPath()).toFile();
+        }
 
         try {
-            mapper.writerWithDefaultPrettyPrinter().writeValue(file, results);
+            if (compressed) {
+                try (OutputStream out = new BlockGzipFile.Writer(file.toPath())) {
+                    mapper.writerWithDefaultPrettyPrinter().writeValue(out, results);
+                }
+            } else {
+                mapper.writerWithDefaultPrettyPrinter().writeValue(file, results);
+            }
             Printer.printlnGreen("Results saved to: " + file.getAbsolutePath() + " (" + results.size() + " classifiers)");
         } catch (IOException e) {
             Printer.errorPrint("Failed to save results for " + project + ": " + e.getMessage());
@@ -42,7 +55,8 @@ public class AggregatedClassifierResultStore {
      * Carica una collezione di AggregatedClassifierResult per un progetto
      */
     public static Collection<AggregatedClassifierResult> load(String project) {
-        File file = new File(STORAGE_DIR, project + ".json");
+        // Si legge la versione più recente fra project.json e project.json.gz
+        File file = BlockGzipFile.resolve(new File(STORAGE_DIR, project + ".json").toPath()).toFile();
 
         if (!file.exists()) {
             Printer.printYellow("No results file found for project: " + project + ", creating new collection");
@@ -53,7 +67,10 @@ public class AggregatedClassifierResultStore {
             CollectionType listType = mapper.getTypeFactory()
                     .constructCollectionType(ArrayList.class, AggregatedClassifierResult.class);
 
-            Collection<AggregatedClassifierResult> results = mapper.readValue(file, listType);
+            Collection<AggregatedClassifierResult> results;
+            try (InputStream in = BlockGzipFile.openStream(file.toPath())) {
+                results = mapper.readValue(in, listType);
+            }
 
             if (results == null) {
                 Printer.printYellow("Results file is empty for project: " + project);
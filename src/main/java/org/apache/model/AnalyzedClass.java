@@ -7,6 +7,8 @@ import com.github.javaparser.ast.body.MethodDeclaration;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.Printer;
+import org.apache.utilities.metrics.MetricsEngine;
+import org.apache.utilities.metrics.TokenMetricScanner;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +41,15 @@ public class AnalyzedClass {
     @Setter
     private int totalLOC;
 
+    // Modalità delta: metriche già calcolate nella release precedente e riportate in avanti
+    @Setter
+    private boolean reuseStaticMetrics;
+    @Setter
+    private boolean reuseProcessMetrics;
+    // Versione della stessa classe nella release precedente, da cui ereditare le metriche
+    @Setter
+    private AnalyzedClass previousVersion;
+
 
     @Setter
     private ClassMetrics processMetrics;
@@ -46,6 +57,10 @@ public class AnalyzedClass {
     private final List<Integer> removedLOCList;
 
     public AnalyzedClass(String className, String fileContent, Release release, String packageName, String fileName) {
+        this(className, fileContent, release, packageName, fileName, MetricsEngine.AST);
+    }
+
+    public AnalyzedClass(String className, String fileContent, Release release, String packageName, String fileName, MetricsEngine engine) {
         // --- INIZIO BLOCCO DI CONTROLLO E INIZIALIZZAZIONE ---
         this.className = Objects.requireNonNull(className, "Il nome della classe non può essere nullo");
         this.packageName = packageName;
@@ -64,9 +79,14 @@ public class AnalyzedClass {
         this.removedLOCList = new ArrayList<>();
 
 
+        if (engine == MetricsEngine.TOKEN) {
+            scanMethods(null);
+            return;
+        }
+
         // --- INIZIO BLOCCO DI PARSING SICURO (già presente, ma assicurati sia così) ---
+        JavaParser parser = new JavaParser();
         try {
-            JavaParser parser = new JavaParser();
             CompilationUnit cu = parser.parse(fileContent).getResult().orElse(null);
 
             if (cu != null) {
@@ -74,19 +94,87 @@ public class AnalyzedClass {
 
 
             } else {
-                String errorMsg = String.format("ATTENZIONE: Parsing fallito ma senza eccezioni per la classe %s nella release %s. La lista dei metodi sarà vuota.", this.className, release.getReleaseID());
+                String errorMsg = String.format("ATTENZIONE: Parsing fallito ma senza eccezioni per la classe %s nella release %s. Uso lo scanner lessicale.", this.className, release.getReleaseID());
                 Printer.printYellow(errorMsg);
+                scanMethods(parser);
             }
         } catch (ParseProblemException e) {
-            String errorMsg = String.format("ATTENZIONE: Errore di sintassi durante il parsing di %s nella release %s. La lista dei metodi sarà vuota. Errore: %s", this.className, release.getReleaseID(), e.getMessage());
+            String errorMsg = String.format("ATTENZIONE: Errore di sintassi durante il parsing di %s nella release %s. Uso lo scanner lessicale. Errore: %s", this.className, release.getReleaseID(), e.getMessage());
             Printer.errorPrint(errorMsg);
+            scanMethods(parser);
         } catch (Exception e) {
-            String errorMsg = String.format("ATTENZIONE: Errore generico durante il parsing di %s nella release %s. La lista dei metodi sarà vuota.", this.className, release.getReleaseID());
+            String errorMsg = String.format("ATTENZIONE: Errore generico durante il parsing di %s nella release %s. Uso lo scanner lessicale.", this.className, release.getReleaseID());
             Printer.errorPrint(errorMsg);
+            scanMethods(parser);
         }
 
     }
 
+    /**
+     * Copia della classe per un'altra release (modalità delta), senza riparsare il file.
+     * Le metriche non vengono copiate subito, perché la release precedente potrebbe essere ancora
+     * in calcolo: vengono ereditate con inheritMetrics. La release precedente non viene modificata.
+     */
+    public AnalyzedClass(AnalyzedClass previous, Release release) {
+        this.className = previous.className;
+        this.packageName = previous.packageName;
+        this.fileName = previous.fileName;
+        this.fileContent = previous.fileContent;
+        this.release = release;
+        this.touchingClassCommitList = previous.touchingClassCommitList;
+        this.methods = new ArrayList<>(previous.methods.size());
+        for (AnalyzedMethod method : previous.methods) {
+            this.methods.add(new AnalyzedMethod(method));
+        }
+        this.processMetrics = new ClassMetrics();
+        this.previousVersion = previous;
+        this.isBuggy = false;
+        this.totalLOC = previous.totalLOC;
+        this.addedLOCList = new ArrayList<>();
+        this.removedLOCList = new ArrayList<>();
+    }
+
+    /**
+     * Modalità delta: eredita dalla versione precedente le metriche storiche della classe
+     * e, se il file è invariato, le metriche statiche dei metodi. Va chiamato dopo il calcolo
+     * delle metriche della release precedente.
+     */
+    public void inheritMetrics() {
+        if (previousVersion == null) return;
+        if (reuseProcessMetrics) {
+            processMetrics.copyHistoryFrom(previousVersion.processMetrics);
+        }
+        if (reuseStaticMetrics) {
+            processMetrics.setSize(previousVersion.processMetrics.getSize());
+            for (int i = 0; i < methods.size(); i++) {
+                methods.get(i).getMetrics().copyStaticMetricsFrom(previousVersion.methods.get(i).getMetrics());
+            }
+        }
+        previousVersion = null;
+    }
+
+    /**
+     * Estrae i metodi con lo scanner lessicale (nessun AST). Usato dal motore TOKEN
+     * e come fallback quando JavaParser non riesce a costruire la CompilationUnit: in quel caso (parser non null)
+     * il corpo di ogni metodo viene analizzato da solo, così le metriche restano quelle del motore AST.
+     */
+    private void scanMethods(JavaParser parser) {
+        this.methods.clear();
+        int tokenOnly = 0;
+        for (TokenMetricScanner.MethodScan scan : TokenMetricScanner.forCurrentThread().scan(fileContent)) {
+            AnalyzedMethod method = new AnalyzedMethod(scan, fileContent);
+            if (parser != null) {
+                method.parseBody(parser);
+                if (method.getMetricsEngine() == MetricsEngine.TOKEN) tokenOnly++;
+            }
+            this.methods.add(method);
+        }
+        if (tokenOnly > 0) {
+            Printer.printYellow(String.format("ATTENZIONE: %d metodi di %s hanno solo le metriche dello scanner lessicale (LOC su righe fisiche, CognitiveComplexity 0).",
+                    tokenOnly, this.className));
+        }
+    }
+
 
 
 
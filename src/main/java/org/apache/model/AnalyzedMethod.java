@@ -1,9 +1,13 @@
 package org.apache.model;
 
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.TokenRange;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.stmt.BlockStmt;
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.utilities.metrics.MetricsEngine;
+import org.apache.utilities.metrics.TokenMetricScanner;
 
 
 import java.util.ArrayList;
@@ -33,6 +37,16 @@ public class AnalyzedMethod {
     @Setter
     private List<Commit> touchingMethodCommit;
     private  MethodDeclaration methodDeclaration;
+    // Valorizzato solo quando il metodo è stato estratto dallo scanner lessicale (nessun AST)
+    private TokenMetricScanner.MethodScan tokenMetrics;
+    // Fallback del motore AST: corpo del metodo analizzato da solo, quando il file intero è stato rifiutato
+    private BlockStmt parsedBody;
+    // Definizioni seguite dalle metriche statiche: AST (corpo stampato da JavaParser) o TOKEN (righe fisiche)
+    private MetricsEngine metricsEngine;
+    // Hash del corpo normalizzato e id stabile assegnato dalla MethodIdentityTable del progetto
+    private long bodyHash;
+    @Setter
+    private int methodId = -1;
 
 
     public AnalyzedMethod( MethodDeclaration methodDeclaration) {
@@ -42,7 +56,9 @@ public class AnalyzedMethod {
         this.body= methodDeclaration.getBody()
                 .map(BlockStmt::toString)
                 .orElse(""); // Se il metodo non ha corpo (es. in un'interfaccia), restituisce stringa vuota.
+        this.bodyHash = sourceBodyHash(methodDeclaration, body);
         this.methodDeclaration= methodDeclaration;
+        this.metricsEngine = MetricsEngine.AST;
         this.metrics = new MethodMetrics();
         this.isBuggy = false;
         this.touchingMethodCommit = new ArrayList<>();
@@ -50,6 +66,73 @@ public class AnalyzedMethod {
 
     }
 
+    public AnalyzedMethod(TokenMetricScanner.MethodScan scan, String source) {
+        this.signature = scan.getSignature();
+        this.simpleName = scan.getSimpleName();
+        this.startLine = scan.getStartLine();
+        this.endLine = scan.getEndLine();
+        this.body = scan.isHasBody() ? source.substring(scan.getBodyStart(), Math.min(scan.getBodyEnd(), source.length())) : "";
+        this.methodDeclaration = null;
+        this.tokenMetrics = scan;
+        this.metricsEngine = MetricsEngine.TOKEN;
+        this.bodyHash = scan.isHasBody()
+                ? MethodIdentityTable.bodyHash(source, scan.getBodyStart(), Math.min(scan.getBodyEnd(), source.length()))
+                : MethodIdentityTable.bodyHash("", 0, 0);
+        this.metrics = new MethodMetrics();
+        this.isBuggy = false;
+        this.touchingMethodCommit = new ArrayList<>();
+    }
+
+    /**
+     * Copia del metodo per un'altra release: le metriche ripartono vuote, quelle statiche
+     * vengono poi ereditate da AnalyzedClass.inheritMetrics.
+     */
+    public AnalyzedMethod(AnalyzedMethod previous) {
+        this.signature = previous.signature;
+        this.simpleName = previous.simpleName;
+        this.startLine = previous.startLine;
+        this.endLine = previous.endLine;
+        this.body = previous.body;
+        this.methodDeclaration = previous.methodDeclaration;
+        this.tokenMetrics = previous.tokenMetrics;
+        this.parsedBody = previous.parsedBody;
+        this.metricsEngine = previous.metricsEngine;
+        this.bodyHash = previous.bodyHash;
+        this.methodId = previous.methodId;
+        this.metrics = new MethodMetrics();
+        this.isBuggy = false;
+        this.touchingMethodCommit = new ArrayList<>();
+    }
+
+    /**
+     * Hash del corpo sul testo originale dei token (non sulla stampa di JavaParser), lo stesso che lo scanner
+     * lessicale calcola sul sorgente: un metodo ha lo stesso fingerprint qualunque motore abbia letto il file.
+     */
+    private static long sourceBodyHash(MethodDeclaration methodDeclaration, String printedBody) {
+        String source = methodDeclaration.getBody()
+                .flatMap(BlockStmt::getTokenRange)
+                .map(TokenRange::toString)
+                .orElse(printedBody);
+        return MethodIdentityTable.bodyHash(source, 0, source.length());
+    }
+
+    /**
+     * Fallback del motore AST per un metodo estratto dallo scanner: analizza con JavaParser il solo corpo, così le
+     * metriche statiche seguono le definizioni dell'AST (LOC sul corpo stampato, Cognitive Complexity calcolata).
+     * Un metodo senza corpo non ha bisogno del parsing. Se JavaParser rifiuta anche il corpo il metodo resta TOKEN.
+     */
+    public void parseBody(JavaParser parser) {
+        if (tokenMetrics == null) return;
+        if (!tokenMetrics.isHasBody()) {
+            metricsEngine = MetricsEngine.AST;
+            return;
+        }
+        parser.parseBlock(body).getResult().ifPresent(block -> {
+            parsedBody = block;
+            metricsEngine = MetricsEngine.AST;
+        });
+    }
+
     public AnalyzedMethod(String signature, int start, int end) {
         this.startLine = start;
         this.endLine = end;
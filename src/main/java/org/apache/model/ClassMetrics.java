@@ -59,5 +59,15 @@ public class ClassMetrics {
         this.churnMetrics.setAvgVal(avgChurningFactor);
     }
 
+    /**
+     * Copia le metriche storiche (revisioni, autori, churn) calcolate per lo stesso file in un'altra release.
+     */
+    public void copyHistoryFrom(ClassMetrics other) {
+        this.numberOfRevisions = other.numberOfRevisions;
+        this.numAuthors = other.numAuthors;
+        this.methodHistory = other.methodHistory;
+        setChurnMetrics(other.churnMetrics.getVal(), other.churnMetrics.getMaxVal(), other.churnMetrics.getAvgVal());
+    }
+
 
 }
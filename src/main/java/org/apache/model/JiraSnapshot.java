@@ -0,0 +1,35 @@
+package org.apache.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Dati Jira di un progetto (release e ticket 'Fixed') scaricati una sola volta per run.
+ * Lo stesso snapshot alimenta sia il calcolo della proportion di cold start
+ * sia l'analisi vera e propria, senza un secondo giro di richieste HTTP.
+ */
+@Getter
+public class JiraSnapshot {
+
+    private final String project;
+    private final List<Release> releases;
+    // Ticket validi ordinati per data di risoluzione
+    private final List<Ticket> fixedTickets;
+    private final Instant fetchedAt;
+
+    public JiraSnapshot(String project, List<Release> releases, List<Ticket> fixedTickets, Instant fetchedAt) {
+        this.project = project;
+        this.releases = releases;
+        this.fixedTickets = fixedTickets;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Ticket con Injected Version nota (prima dell'applicazione di Proportion).
+     */
+    public List<Ticket> ticketsWithInjectedVersion() {
+        return fixedTickets.stream().filter(t -> t.getInjectedVersion() != null).toList();
+    }
+}
@@ -0,0 +1,207 @@
+package org.apache.model;
+
+import lombok.Getter;
+import org.apache.logging.Printer;
+import org.apache.utilities.dataset.MethodNameDictionary;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabella delle identità dei metodi di un progetto.
+ * Ogni metodo ha un fingerprint (firma + hash del corpo normalizzato: testo originale dei token, senza spazi e commenti,
+ * identico per il motore AST e per lo scanner lessicale)
+ * e riceve un id intero stabile fra le release. La tabella si aggiorna una release alla volta
+ * e ogni ricerca è una lookup O(1) su hash map. Path delle classi e firme sono tradotti in id dal
+ * MethodNameDictionary del progetto, quindi le chiavi sono interi e non stringhe concatenate.
+ * Ordine di riconoscimento di un metodo già visto:
+ * 1. stesso path della classe e stessa firma;
+ * 2. stesso fingerprint (classe spostata o rinominata, metodo invariato);
+ * 3. stessa classe e stesso corpo (parametri cambiati);
+ * 4. stessa classe e stesso nome semplice (parametri e corpo cambiati).
+ */
+public class MethodIdentityTable {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Path delle classi e firme del progetto, condivisi con il writer colonnare
+    @Getter
+    private final MethodNameDictionary methodNames = new MethodNameDictionary();
+    private final Map<String, Integer> simpleNameIds = new HashMap<>();
+    private final Map<Key, Integer> byQualifiedName = new HashMap<>();
+    private final Map<Key, Integer> byFingerprint = new HashMap<>();
+    private final Map<Key, Integer> byClassBody = new HashMap<>();
+    private final Map<Key, Integer> byClassSimpleName = new HashMap<>();
+    private final BitSet claimed = new BitSet();
+    private int nextId = 0;
+
+    /**
+     * Assegna gli id ai metodi delle classi di una release e aggiorna la tabella.
+     * Le chiavi ripetute nella stessa release (es. metodi omonimi di classi interne diverse)
+     * vengono distinte dal numero di occorrenza, così ogni copia conserva il proprio id.
+     */
+    public void assignIds(List<AnalyzedClass> classes) {
+        claimed.clear();
+        List<MethodKeys> keys = new ArrayList<>();
+        Occurrences occurrences = new Occurrences();
+        for (AnalyzedClass ac : classes) {
+            int pathId = methodNames.pathId(ac.getClassName());
+            for (AnalyzedMethod am : ac.getMethods()) {
+                keys.add(new MethodKeys(am, pathId, occurrences));
+            }
+        }
+        int byName = 0;
+        int moved = 0;
+        int created = 0;
+
+        // Primo passaggio: stessa classe e stessa firma
+        for (MethodKeys k : keys) {
+            Integer id = unclaimed(byQualifiedName.get(k.qualifiedName));
+            k.method.setMethodId(-1);
+            if (id != null) {
+                claim(k.method, id);
+                byName++;
+            }
+        }
+
+        // Secondo passaggio: fingerprint, corpo o nome semplice; altrimenti nuovo id
+        for (MethodKeys k : keys) {
+            if (k.method.getMethodId() >= 0) continue;
+            Integer id = unclaimed(byFingerprint.get(k.fingerprint));
+            if (id == null) id = unclaimed(byClassBody.get(k.classBody));
+            if (id == null) id = unclaimed(byClassSimpleName.get(k.classSimpleName));
+            if (id != null) {
+                moved++;
+            } else {
+                id = nextId++;
+                created++;
+            }
+            claim(k.method, id);
+        }
+
+        // Le chiavi puntano sempre alla versione più recente del metodo
+        for (MethodKeys k : keys) {
+            int id = k.method.getMethodId();
+            byQualifiedName.put(k.qualifiedName, id);
+            byFingerprint.put(k.fingerprint, id);
+            byClassBody.put(k.classBody, id);
+            byClassSimpleName.put(k.classSimpleName, id);
+        }
+
+        Printer.print(String.format("Identità metodi: %d per nome, %d ritrovati per fingerprint/corpo, %d nuovi (totale %d).%n",
+                byName, moved, created, nextId));
+    }
+
+    public int size() {
+        return nextId;
+    }
+
+    private void claim(AnalyzedMethod am, int id) {
+        am.setMethodId(id);
+        claimed.set(id);
+    }
+
+    private Integer unclaimed(Integer id) {
+        return (id == null || claimed.get(id)) ? null : id;
+    }
+
+    /**
+     * Chiave di ricerca: gruppo (id del path della classe, oppure -1 per il fingerprint), valore
+     * (id della firma, hash del corpo, id del nome semplice o fingerprint) e numero di occorrenza nella release.
+     */
+    private record Key(int group, long value, int occurrence) {}
+
+    /**
+     * Chiavi di ricerca di un metodo in una release, con il numero di occorrenza per le chiavi ripetute.
+     */
+    private final class MethodKeys {
+        private final AnalyzedMethod method;
+        private final Key qualifiedName;
+        private final Key fingerprint;
+        private final Key classBody;
+        private final Key classSimpleName;
+
+        MethodKeys(AnalyzedMethod am, int pathId, Occurrences occurrences) {
+            this.method = am;
+            this.qualifiedName = occurrence(new Key(pathId, methodNames.signatureId(am.getSignature()), 1),
+                    occurrences.qualifiedName);
+            this.classBody = occurrence(new Key(pathId, am.getBodyHash(), 1), occurrences.classBody);
+            this.classSimpleName = occurrence(new Key(pathId, simpleNameId(am.getSimpleName()), 1),
+                    occurrences.classSimpleName);
+            this.fingerprint = occurrence(new Key(-1, fingerprint(am), 1), occurrences.fingerprint);
+        }
+    }
+
+    /**
+     * Occorrenze delle chiavi nella release corrente, separate per tipo di chiave.
+     */
+    private static final class Occurrences {
+        private final Map<Key, Integer> qualifiedName = new HashMap<>();
+        private final Map<Key, Integer> fingerprint = new HashMap<>();
+        private final Map<Key, Integer> classBody = new HashMap<>();
+        private final Map<Key, Integer> classSimpleName = new HashMap<>();
+    }
+
+    private static Key occurrence(Key key, Map<Key, Integer> occurrences) {
+        int n = occurrences.merge(key, 1, Integer::sum);
+        return n == 1 ? key : new Key(key.group(), key.value(), n);
+    }
+
+    private int simpleNameId(String simpleName) {
+        return simpleNameIds.computeIfAbsent(simpleName, name -> simpleNameIds.size());
+    }
+
+    /**
+     * Fingerprint del metodo: hash della firma combinato con l'hash del corpo normalizzato.
+     */
+    public static long fingerprint(AnalyzedMethod am) {
+        long hash = am.getBodyHash();
+        String signature = am.getSignature();
+        for (int i = 0; i < signature.length(); i++) {
+            hash = (hash ^ signature.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Hash FNV-1a a 64 bit del testo compreso fra start ed end, ignorando spazi e commenti
+     * (i letterali stringa e carattere sono mantenuti così come sono).
+     */
+    public static long bodyHash(CharSequence text, int start, int end) {
+        long hash = FNV_OFFSET;
+        char quote = 0;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                hash = (hash ^ c) * FNV_PRIME;
+                if (c == '\\' && i + 1 < end) {
+                    i++;
+                    hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                i++;
+            } else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '/') {
+                while (i < end && text.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+                i += 2;
+                while (i + 1 < end && !(text.charAt(i) == '*' && text.charAt(i + 1) == '/')) i++;
+                i += 2;
+            } else {
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                }
+                if (!Character.isWhitespace(c)) {
+                    hash = (hash ^ c) * FNV_PRIME;
+                }
+                i++;
+            }
+        }
+        return hash;
+    }
+}
@@ -60,6 +60,17 @@ public class MethodMetrics {
         this.parameterCount=0;
         this.numberOfCodeSmells=0;
     }
+    /**
+     * Copia i soli valori statici (complessità e dimensione) da altre metriche.
+     */
+    public void copyStaticMetricsFrom(MethodMetrics other) {
+        this.loc = other.loc;
+        this.cycloComplexity = other.cycloComplexity;
+        this.parameterCount = other.parameterCount;
+        this.cognitiveComplexity = other.cognitiveComplexity;
+        this.nestingDepth = other.nestingDepth;
+    }
+
     public void incrementCodeSmellCount() {
         this.numberOfCodeSmells++;
     }
@@ -0,0 +1,128 @@
+package org.apache.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro immutabile delle release di un progetto, ordinate per data.
+ * L'ordinale di ogni release è tenuto dal registro (le Release, condivise con altri controller, non vengono
+ * modificate), così le release si confrontano per indice senza passare dalle date; nome e ID Jira sono
+ * indicizzati in tabelle hash e la ricerca per data è una ricerca binaria.
+ */
+public final class ReleaseRegistry {
+
+    private final List<Release> releases;
+    private final long[] epochDays;
+    private final Map<Release, Integer> ordinals;
+    private final Map<String, Integer> byName;
+    private final Map<String, Integer> byReleaseId;
+
+    private ReleaseRegistry(List<Release> sorted) {
+        this.releases = Collections.unmodifiableList(sorted);
+        this.epochDays = new long[sorted.size()];
+        this.ordinals = new IdentityHashMap<>(sorted.size());
+        this.byName = HashMap.newHashMap(sorted.size());
+        this.byReleaseId = HashMap.newHashMap(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            Release release = sorted.get(i);
+            ordinals.putIfAbsent(release, i);
+            epochDays[i] = release.getReleaseDate().toEpochDay();
+            // A parità di nome o ID vale la prima release, come nella vecchia ricerca lineare
+            byName.putIfAbsent(release.getReleaseName(), i);
+            byReleaseId.putIfAbsent(release.getReleaseID(), i);
+        }
+    }
+
+    /**
+     * Crea il registro ordinando (in modo stabile) una copia delle release per data.
+     */
+    public static ReleaseRegistry of(List<Release> releases) {
+        List<Release> sorted = new ArrayList<>(releases);
+        sorted.sort(Comparator.comparing(Release::getReleaseDate));
+        return new ReleaseRegistry(sorted);
+    }
+
+    public List<Release> releases() {
+        return releases;
+    }
+
+    public int size() {
+        return releases.size();
+    }
+
+    public Release get(int ordinal) {
+        return releases.get(ordinal);
+    }
+
+    /**
+     * Ordinale della release nel registro, -1 se la release non ne fa parte.
+     */
+    public int ordinalOf(Release release) {
+        Integer ordinal = release == null ? null : ordinals.get(release);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public Release byName(String releaseName) {
+        Integer ordinal = releaseName == null ? null : byName.get(releaseName);
+        return ordinal == null ? null : releases.get(ordinal);
+    }
+
+    public Release byReleaseId(String releaseID) {
+        Integer ordinal = releaseID == null ? null : byReleaseId.get(releaseID);
+        return ordinal == null ? null : releases.get(ordinal);
+    }
+
+    /**
+     * Prima release con data uguale o successiva a quella indicata, null se non esiste.
+     */
+    public Release firstOnOrAfter(LocalDate date) {
+        int ordinal = firstOrdinalOnOrAfter(date);
+        return ordinal < releases.size() ? releases.get(ordinal) : null;
+    }
+
+    /**
+     * Ordinale della prima release con data uguale o successiva, size() se non esiste.
+     */
+    public int firstOrdinalOnOrAfter(LocalDate date) {
+        long day = date.toEpochDay();
+        int low = 0;
+        int high = epochDays.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Risolve i nomi delle Affected Versions (ignorando quelli sconosciuti) e li ordina per ordinale,
+     * cioè per data e, a parità di data, nell'ordine del registro.
+     */
+    public List<Release> affectedVersions(List<String> affectedVersionNames) {
+        int[] found = new int[affectedVersionNames.size()];
+        int count = 0;
+        for (String affectedVersionName : affectedVersionNames) {
+            Integer ordinal = affectedVersionName == null ? null : byName.get(affectedVersionName);
+            if (ordinal != null) {
+                found[count++] = ordinal;
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<Release> affectedVersionList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            affectedVersionList.add(releases.get(found[i]));
+        }
+        return affectedVersionList;
+    }
+}
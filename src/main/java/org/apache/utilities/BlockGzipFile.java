@@ -0,0 +1,291 @@
+package org.apache.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File gzip a blocchi per gli output della pipeline (CSV del dataset, report PMD, risultati aggregati).
+ * Il file .gz è una sequenza di membri gzip indipendenti, quindi resta leggibile per intero con gzip/zcat
+ * o con un GZIPInputStream; ogni membro è un blocco con le chiavi dei contenuti che inizia (es. la release o il
+ * file analizzato). Un blocco si chiude solo dopo almeno BLOCK_BYTES byte, così le chiavi piccole e consecutive
+ * condividono il dizionario di compressione invece di pagare ognuna un membro gzip.
+ * Accanto c'è l'indice &lt;file&gt;.gz.idx, una riga per blocco (offset, byte compressi, byte originali, chiavi):
+ * chi cerca una sola release o un solo file decomprime solo i blocchi che la contengono.
+ * La compressione è opzionale (OUTPUT_COMPRESSION); i lettori usano resolve() e openStream(), che trattano
+ * allo stesso modo il file in chiaro e quello compresso.
+ */
+public final class BlockGzipFile {
+
+    public static final String EXTENSION = ".gz";
+    public static final String INDEX_EXTENSION = ".idx";
+    private static final String ENABLED_KEY = "OUTPUT_COMPRESSION";
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Dimensione minima (non compressa) di un blocco prima che una nuova chiave ne apra un altro
+    public static final long BLOCK_BYTES = 1L << 18;
+
+    /**
+     * Blocco del file: chiavi dei contenuti che iniziano nel blocco, posizione e lunghezza del membro gzip
+     * e lunghezza del contenuto decompresso.
+     */
+    public record Block(List<String> keys, long offset, long compressedLength, long rawLength) {
+
+        public boolean contains(String key) {
+            return keys.contains(key);
+        }
+    }
+
+    private BlockGzipFile() {}
+
+    public static boolean compressionEnabled() {
+        return RunConfig.getBoolean(ENABLED_KEY, false);
+    }
+
+    public static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    public static Path compressedPath(Path plain) {
+        return plain.resolveSibling(plain.getFileName() + EXTENSION);
+    }
+
+    public static Path indexPath(Path compressed) {
+        return compressed.resolveSibling(compressed.getFileName() + INDEX_EXTENSION);
+    }
+
+    /**
+     * File da leggere per un output: la versione compressa se esiste ed è la più recente, altrimenti quella in chiaro
+     * (che può anche non esistere).
+     */
+    public static Path resolve(Path plain) {
+        Path compressed = compressedPath(plain);
+        if (!Files.exists(compressed)) return plain;
+        if (!Files.exists(plain)) return compressed;
+        return compressed.toFile().lastModified() >= plain.toFile().lastModified() ? compressed : plain;
+    }
+
+    /**
+     * Contenuto del file come stream, decompresso se il file è .gz.
+     */
+    public static InputStream openStream(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        return isCompressed(file) ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    public static List<Block> readIndex(Path compressed) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        for (String line : Files.readAllLines(indexPath(compressed), StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split("\t", -1);
+            if (fields.length < 4) throw new IOException("Indice non valido per " + compressed.getFileName() + ": " + line);
+            List<String> keys = List.of(Arrays.copyOfRange(fields, 3, fields.length));
+            blocks.add(new Block(keys, Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+        }
+        return blocks;
+    }
+
+    /**
+     * Contenuto decompresso di un blocco, letto dalla sua posizione senza toccare il resto del file.
+     */
+    public static byte[] readBlock(Path compressed, Block block) throws IOException {
+        if (block.rawLength() > Integer.MAX_VALUE - 8) throw new IOException("Blocco troppo grande: " + block.keys());
+        ByteBuffer packed = ByteBuffer.allocate(Math.toIntExact(block.compressedLength()));
+        try (FileChannel channel = FileChannel.open(compressed, StandardOpenOption.READ)) {
+            while (packed.hasRemaining()) {
+                if (channel.read(packed, block.offset() + packed.position()) < 0) {
+                    throw new IOException("Blocco troncato: " + block.keys());
+                }
+            }
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(packed.array()), BUFFER_SIZE)) {
+            byte[] raw = in.readNBytes((int) block.rawLength());
+            if (raw.length != block.rawLength() || in.read() != -1) {
+                throw new IOException("Lunghezza del blocco diversa dall'indice: " + block.keys());
+            }
+            return raw;
+        }
+    }
+
+    /**
+     * Comprime un file di testo esistente; keyOfLine restituisce la chiave di un nuovo blocco quando una riga
+     * deve aprirne uno (null per continuare nel blocco corrente). Le righe sono copiate byte per byte.
+     */
+    public static void compress(Path source, Path target, Function<String, String> keyOfLine) throws IOException {
+        try (InputStream in = Files.newInputStream(source);
+             Writer out = new Writer(target)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        line.write(buffer, start, i + 1 - start);
+                        writeLine(out, line, keyOfLine);
+                        start = i + 1;
+                    }
+                }
+                line.write(buffer, start, read - start);
+            }
+            if (line.size() > 0) writeLine(out, line, keyOfLine);
+        }
+    }
+
+    private static void writeLine(Writer out, ByteArrayOutputStream line, Function<String, String> keyOfLine) throws IOException {
+        String key = keyOfLine.apply(line.toString(StandardCharsets.UTF_8));
+        if (key != null) out.startBlock(key);
+        line.writeTo(out);
+        line.reset();
+    }
+
+    /**
+     * Writer del formato: startBlock segna l'inizio del contenuto con la chiave indicata e, se il blocco corrente
+     * ha già raggiunto la dimensione minima, chiude il membro gzip e ne apre uno nuovo.
+     * I byte scritti prima del primo startBlock finiscono in un blocco con chiave vuota.
+     * Alla chiusura l'indice viene scritto su un temporaneo e poi rinominato.
+     */
+    public static final class Writer extends OutputStream {
+
+        private final Path target;
+        private final CountingOutputStream file;
+        private final List<Block> blocks = new ArrayList<>();
+        private final long blockBytes;
+        private GZIPOutputStream member;
+        private final List<String> keys = new ArrayList<>();
+        private long memberStart;
+        private long rawLength;
+        private boolean closed;
+
+        public Writer(Path target) throws IOException {
+            this(target, BLOCK_BYTES);
+        }
+
+        public Writer(Path target, long blockBytes) throws IOException {
+            this.target = target;
+            this.blockBytes = blockBytes;
+            this.file = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(target), BUFFER_SIZE));
+        }
+
+        public void startBlock(String key) throws IOException {
+            if (key.indexOf('\t') >= 0 || key.indexOf('\n') >= 0 || key.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Chiave di blocco non valida: " + key);
+            }
+            if (member == null || rawLength >= blockBytes) {
+                endBlock();
+                memberStart = file.count;
+                rawLength = 0;
+                member = new GZIPOutputStream(file, BUFFER_SIZE);
+            }
+            keys.add(key);
+        }
+
+        private void endBlock() throws IOException {
+            if (member == null) return;
+            // Il close del membro termina il deflater; CountingOutputStream non propaga la chiusura al file
+            member.close();
+            member = null;
+            blocks.add(new Block(List.copyOf(keys), memberStart, file.count - memberStart, rawLength));
+            keys.clear();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureBlock();
+            member.write(b);
+            rawLength++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ensureBlock();
+            member.write(bytes, offset, length);
+            rawLength += length;
+        }
+
+        private void ensureBlock() throws IOException {
+            if (closed) throw new IOException("File compresso già chiuso: " + target.getFileName());
+            if (member == null) startBlock("");
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                endBlock();
+            } finally {
+                file.closeTarget();
+            }
+            writeIndex();
+        }
+
+        private void writeIndex() throws IOException {
+            StringBuilder index = new StringBuilder();
+            for (Block block : blocks) {
+                index.append(block.offset()).append('\t').append(block.compressedLength()).append('\t')
+                        .append(block.rawLength());
+                for (String key : block.keys()) index.append('\t').append(key);
+                index.append('\n');
+            }
+            Path indexFile = indexPath(target);
+            Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            Files.writeString(tmp, index, StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Conta i byte compressi scritti sul file, così ogni blocco conosce offset e lunghezza del proprio membro.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void close() {
+            // La chiusura di un membro gzip non deve chiudere il file
+        }
+
+        void closeTarget() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.apache.utilities;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor condivisi dell'analisi.
+ * In modalità virtual thread (VIRTUAL_THREADS=true, default) i progetti e gli stadi della pipeline
+ * girano su virtual thread, che restano bloccati su HTTP Jira, letture Git e processo PMD senza occupare
+ * thread di piattaforma; parsing e metriche vengono invece eseguiti su un pool CPU limitato
+ * (CPU_THREADS, default numero di core), così molti progetti in parallelo non sovraccaricano i core.
+ * Con VIRTUAL_THREADS=false si torna ai thread di piattaforma e il lavoro CPU gira sul thread chiamante.
+ */
+public class ExecutionPools {
+
+    public static final String VIRTUAL_THREADS_KEY = "VIRTUAL_THREADS";
+    public static final String CPU_THREADS_KEY = "CPU_THREADS";
+
+    private static final boolean VIRTUAL = RunConfig.getBoolean(VIRTUAL_THREADS_KEY, true);
+    private static final ThreadLocal<Boolean> IN_CPU_POOL = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private ExecutionPools() {}
+
+    private static final class IoPoolHolder {
+        private static final ExecutorService POOL = VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool(new DaemonThreadFactory("io-pool-"));
+    }
+
+    private static final class CpuPoolHolder {
+        private static final int THREADS = Math.max(1, RunConfig.getInt(CPU_THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+        private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, new CpuThreadFactory());
+    }
+
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    public static int cpuThreads() {
+        return VIRTUAL ? CpuPoolHolder.THREADS : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Executor per attività dominate dall'attesa di I/O: un virtual thread per task,
+     * oppure un pool fisso di thread di piattaforma se i virtual thread sono disattivati.
+     */
+    public static ExecutorService newIoExecutor(int platformThreads) {
+        return VIRTUAL ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(Math.max(1, platformThreads));
+    }
+
+    /**
+     * Executor condiviso per letture bloccanti avviate da callback asincrone (ad esempio il corpo delle risposte HTTP),
+     * così non occupano i thread del chiamante; non va chiuso.
+     */
+    public static Executor ioExecutor() {
+        return IoPoolHolder.POOL;
+    }
+
+    /**
+     * Executor del pool CPU per attività da avviare senza attenderle subito; con i virtual thread disattivati
+     * le esegue sul thread chiamante, come onCpu.
+     */
+    public static Executor cpuExecutor() {
+        return VIRTUAL ? CpuPoolHolder.POOL : Runnable::run;
+    }
+
+    /**
+     * Esegue un'attività CPU-bound sul pool limitato e ne attende il risultato.
+     * Se siamo già su un thread del pool (o i virtual thread sono disattivati) la esegue direttamente.
+     */
+    public static <T> T onCpu(Callable<T> task) throws IOException {
+        if (!VIRTUAL || IN_CPU_POOL.get()) {
+            return callDirect(task);
+        }
+        try {
+            return CpuPoolHolder.POOL.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrotto in attesa del pool CPU");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static <T> T callDirect(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static IOException unwrap(Throwable cause) {
+        if (cause instanceof IOException io) return io;
+        if (cause instanceof RuntimeException re) throw re;
+        if (cause instanceof Error error) throw error;
+        return new IOException(cause);
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class CpuThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(() -> {
+                IN_CPU_POOL.set(Boolean.TRUE);
+                r.run();
+            }, "cpu-pool-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.apache.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Properties;
+
+/**
+ * Cache su disco delle risposte HTTP, indicizzata per URL.
+ * Per ogni URL salva il corpo (già decompresso) in &lt;sha256&gt;.body e i metadati (URL, ETag,
+ * Last-Modified, data di download) in &lt;sha256&gt;.meta; i file sono scritti su un temporaneo e poi
+ * rinominati, così una lettura concorrente non vede mai una voce a metà.
+ * Una directory di cache può anche essere registrata una volta e usata come insieme di fixture.
+ */
+public class HttpResponseCache {
+
+    private static final String BODY = ".body";
+    private static final String META = ".meta";
+
+    private final Path directory;
+
+    /**
+     * Voce presente in cache; etag e lastModified sono null se il server non li ha inviati.
+     */
+    public record Entry(Path body, String etag, String lastModified, Instant fetchedAt) {}
+
+    public HttpResponseCache(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Entry lookup(String url) throws IOException {
+        String key = key(url);
+        Path meta = directory.resolve(key + META);
+        Path body = directory.resolve(key + BODY);
+        if (!Files.exists(meta) || !Files.exists(body)) return null;
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        // Collisione di hash o voce di un altro URL: la ignoriamo
+        if (!url.equals(properties.getProperty("url"))) return null;
+        String fetchedAt = properties.getProperty("fetchedAt");
+        return new Entry(body, properties.getProperty("etag"), properties.getProperty("lastModified"),
+                fetchedAt == null ? Instant.EPOCH : Instant.parse(fetchedAt));
+    }
+
+    /**
+     * Copia il corpo nella cache e restituisce la voce appena scritta.
+     */
+    public Entry store(String url, InputStream body, String etag, String lastModified) throws IOException {
+        String key = key(url);
+        Path bodyPath = directory.resolve(key + BODY);
+        Path bodyTmp = Files.createTempFile(directory, key, BODY + ".tmp");
+        Path metaTmp = Files.createTempFile(directory, key, META + ".tmp");
+        Instant fetchedAt = Instant.now();
+        try {
+            try (OutputStream out = Files.newOutputStream(bodyTmp)) {
+                body.transferTo(out);
+            }
+            Properties properties = new Properties();
+            properties.setProperty("url", url);
+            properties.setProperty("fetchedAt", fetchedAt.toString());
+            if (etag != null) properties.setProperty("etag", etag);
+            if (lastModified != null) properties.setProperty("lastModified", lastModified);
+            try (Writer writer = Files.newBufferedWriter(metaTmp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            move(bodyTmp, bodyPath);
+            move(metaTmp, directory.resolve(key + META));
+        } finally {
+            Files.deleteIfExists(bodyTmp);
+            Files.deleteIfExists(metaTmp);
+        }
+        return new Entry(bodyPath, etag, lastModified, fetchedAt);
+    }
+
+    public static InputStream open(Entry entry) throws IOException {
+        return new BufferedInputStream(Files.newInputStream(entry.body()));
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
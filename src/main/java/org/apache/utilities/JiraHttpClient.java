@@ -0,0 +1,284 @@
+package org.apache.utilities;
+
+import org.apache.logging.Printer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Client HTTP per le API REST di Jira basato su java.net.http.HttpClient.
+ * Un'unica istanza condivisa riusa le connessioni fra richieste e progetti; le richieste partono
+ * in modo asincrono ma al massimo JIRA_CONCURRENCY (default 4) sono in volo contemporaneamente,
+ * le altre attendono in coda senza bloccare thread. Le risposte vengono chieste compresse (gzip).
+ * Il corpo viene consegnato come stream (già decompresso) a un BodyReader, così le pagine possono essere
+ * lette in streaming senza copiarle in memoria; la lettura gira sull'executor di I/O condiviso
+ * (ExecutionPools.ioExecutor), non sui thread di HttpClient, e il permesso viene rilasciato a lettura conclusa.
+ * Annullare il future di una richiesta la toglie dalla coda, interrompe lo scambio HTTP in corso
+ * o chiude il corpo che si sta leggendo.
+ * L'indirizzo di Jira è configurabile con JIRA_BASE_URL, ad esempio per puntare a un server locale di prova.
+ * Con JIRA_CACHE=true le risposte vengono salvate in una cache su disco (JIRA_CACHE_DIR, default
+ * &lt;CACHE_DIR&gt;/jira) e rivalidate con richieste condizionali (If-None-Match / If-Modified-Since): con un 304
+ * il corpo viene riletto dal disco. Senza cache (default) il corpo va direttamente al BodyReader.
+ * Con JIRA_OFFLINE=true non si usa la rete e ogni risposta viene dalla cache, che deve essere stata riempita
+ * da un'esecuzione precedente con JIRA_CACHE=true.
+ */
+public class JiraHttpClient {
+
+    public static final String BASE_URL_KEY = "JIRA_BASE_URL";
+    public static final String CONCURRENCY_KEY = "JIRA_CONCURRENCY";
+    public static final String CACHE_KEY = "JIRA_CACHE";
+    public static final String CACHE_DIR_KEY = "JIRA_CACHE_DIR";
+    public static final String OFFLINE_KEY = "JIRA_OFFLINE";
+    private static final String DEFAULT_BASE_URL = "https://issues.apache.org/jira/rest/api/2/";
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private static final class SharedHolder {
+        private static final JiraHttpClient INSTANCE = createShared();
+    }
+
+    private final HttpClient client;
+    private final Semaphore permits;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final HttpResponseCache cache;
+    private final boolean offline;
+
+    public JiraHttpClient(int concurrency) {
+        this(concurrency, null, false);
+    }
+
+    public JiraHttpClient(int concurrency, HttpResponseCache cache, boolean offline) {
+        if (offline && cache == null) {
+            throw new IllegalArgumentException("La modalità offline richiede una cache delle risposte");
+        }
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.cache = cache;
+        this.offline = offline;
+    }
+
+    private static JiraHttpClient createShared() {
+        int concurrency = RunConfig.getInt(CONCURRENCY_KEY, 4);
+        boolean offline = RunConfig.getBoolean(OFFLINE_KEY, false);
+        if (!offline && !RunConfig.getBoolean(CACHE_KEY, false)) {
+            return new JiraHttpClient(concurrency);
+        }
+        String dir = RunConfig.getString(CACHE_DIR_KEY, "");
+        Path directory = dir.isBlank() ? RunConfig.cacheDirectory().resolve("jira") : Paths.get(dir);
+        try {
+            HttpResponseCache cache = new HttpResponseCache(directory);
+            Printer.print("Cache risposte Jira in " + directory.toAbsolutePath() + (offline ? " (modalità offline)" : "") + "\n");
+            return new JiraHttpClient(concurrency, cache, offline);
+        } catch (IOException e) {
+            if (offline) {
+                throw new UncheckedIOException("Cache Jira non disponibile in modalità offline", e);
+            }
+            Printer.printYellow("Cache Jira non disponibile (" + e.getMessage() + "), proseguo senza cache");
+            return new JiraHttpClient(concurrency);
+        }
+    }
+
+    public static JiraHttpClient shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Vero se le risposte arrivano solo dalla cache: URL mai scaricati prima falliscono.
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public static String baseUrl() {
+        String base = RunConfig.getString(BASE_URL_KEY, DEFAULT_BASE_URL);
+        return base.endsWith("/") ? base : base + "/";
+    }
+
+    /**
+     * Lettura del corpo di una risposta; lo stream viene chiuso dal client.
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    /**
+     * Scarica un URL e ne legge il corpo già decompresso.
+     */
+    public <T> T get(String url, BodyReader<T> reader) throws IOException {
+        return await(getAsync(url, reader));
+    }
+
+    /**
+     * Scarica tutti gli URL in parallelo (entro il limite di concorrenza) e restituisce i risultati nello stesso ordine.
+     */
+    public <T> List<T> getAll(List<String> urls, BodyReader<T> reader) throws IOException {
+        List<CompletableFuture<T>> futures = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            futures.add(getAsync(url, reader));
+        }
+        List<T> results = new ArrayList<>(urls.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(await(future));
+            }
+        } catch (IOException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e;
+        }
+        return results;
+    }
+
+    public <T> CompletableFuture<T> getAsync(String url, BodyReader<T> reader) {
+        HttpResponseCache.Entry cached;
+        try {
+            cached = cache == null ? null : cache.lookup(url);
+        } catch (IOException e) {
+            Printer.printYellow("Voce di cache illeggibile per " + url + ": " + e.getMessage());
+            cached = null;
+        }
+        if (offline) {
+            if (cached == null) {
+                return CompletableFuture.failedFuture(new IOException("Modalità offline: nessuna risposta in cache per " + url));
+            }
+            try {
+                return CompletableFuture.completedFuture(readCached(cached, reader));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (cached != null && cached.etag() != null) builder.header("If-None-Match", cached.etag());
+        if (cached != null && cached.lastModified() != null) builder.header("If-Modified-Since", cached.lastModified());
+        HttpRequest request = builder.build();
+        HttpResponseCache.Entry revalidated = cached;
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> {
+            // Annullata mentre era in coda: il permesso torna subito a drain()
+            if (result.isDone()) {
+                permits.release();
+                return;
+            }
+            CompletableFuture<HttpResponse<InputStream>> call;
+            try {
+                call = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<HttpResponse<InputStream>> exchange = call;
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) exchange.cancel(true);
+            });
+            exchange.whenCompleteAsync((response, error) -> {
+                try {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        // Chiudere il corpo sblocca il reader se la richiesta viene annullata durante la lettura
+                        result.whenComplete((value, failure) -> {
+                            if (result.isCancelled()) closeQuietly(response.body());
+                        });
+                        result.complete(read(url, response, revalidated, reader));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                    drain();
+                }
+            }, ExecutionPools.ioExecutor());
+        });
+        drain();
+        return result;
+    }
+
+    // Avvia le richieste in coda finché ci sono permessi liberi
+    private void drain() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            next.run();
+        }
+    }
+
+    private <T> T read(String url, HttpResponse<InputStream> response, HttpResponseCache.Entry cached,
+                       BodyReader<T> reader) throws IOException {
+        try (InputStream raw = response.body()) {
+            // Risposta invariata rispetto alla cache
+            if (response.statusCode() == 304 && cached != null) {
+                return readCached(cached, reader);
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Risposta HTTP " + response.statusCode() + " da " + url);
+            }
+            boolean gzip = response.headers().firstValue("Content-Encoding")
+                    .map(v -> v.equalsIgnoreCase("gzip"))
+                    .orElse(false);
+            try (InputStream body = gzip ? new GZIPInputStream(raw) : raw) {
+                if (cache == null) {
+                    return reader.read(body);
+                }
+                HttpResponseCache.Entry entry = cache.store(url, body,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null));
+                return readCached(entry, reader);
+            }
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // la lettura fallirà comunque e il risultato è già annullato
+        }
+    }
+
+    private static <T> T readCached(HttpResponseCache.Entry entry, BodyReader<T> reader) throws IOException {
+        try (InputStream body = HttpResponseCache.open(entry)) {
+            return reader.read(body);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrotto in attesa della risposta di Jira");
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause);
+        }
+    }
+}
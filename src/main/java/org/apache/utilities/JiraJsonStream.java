@@ -0,0 +1,186 @@
+package org.apache.utilities;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Lettura in streaming (Jackson JsonParser) delle risposte REST di Jira.
+ * Dai flussi vengono estratti solo i campi usati dall'analisi, senza costruire la stringa
+ * del corpo né l'albero JSONObject: la memoria per pagina è quella dei campi estratti.
+ */
+public class JiraJsonStream {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JiraJsonStream() {}
+
+    /**
+     * Campi di una versione del progetto (endpoint project/KEY).
+     */
+    public record VersionFields(String id, String name, String releaseDate) {}
+
+    /**
+     * Campi di un issue della ricerca; resolutionDate, updated, versionNames e issueType (nome del tipo,
+     * es. Bug) possono essere null se assenti.
+     */
+    public record IssueFields(String key, String created, String resolutionDate, String updated, List<String> versionNames,
+                              String issueType) {}
+
+    /**
+     * Pagina di risultati dell'endpoint search, con gli issue già convertiti dal chiamante (vedi readSearchPage);
+     * count è il numero di issue ricevuti, compresi quelli scartati.
+     */
+    public record SearchPage<T>(int startAt, int maxResults, int total, int count, List<T> issues) {}
+
+    public static List<VersionFields> readVersions(InputStream in) throws IOException {
+        List<VersionFields> versions = new ArrayList<>();
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("versions".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        versions.add(readVersion(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return versions;
+    }
+
+    public static SearchPage<IssueFields> readSearchPage(InputStream in) throws IOException {
+        return readSearchPage(in, Function.identity());
+    }
+
+    /**
+     * Pagina di risultati in cui ogni issue è passato a mapper appena letto (un risultato null viene scartato):
+     * della pagina restano solo i risultati, non gli IssueFields.
+     */
+    public static <T> SearchPage<T> readSearchPage(InputStream in, Function<IssueFields, T> mapper) throws IOException {
+        int startAt = 0;
+        int maxResults = -1;
+        int total = 0;
+        int read = 0;
+        List<T> issues = new ArrayList<>();
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "startAt" -> startAt = parser.getIntValue();
+                    case "maxResults" -> maxResults = parser.getIntValue();
+                    case "total" -> total = parser.getIntValue();
+                    case "issues" -> {
+                        if (value != JsonToken.START_ARRAY) {
+                            parser.skipChildren();
+                            break;
+                        }
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            T result = mapper.apply(readIssue(parser));
+                            read++;
+                            if (result != null) issues.add(result);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new SearchPage<>(startAt, maxResults < 0 ? read : maxResults, total, read, issues);
+    }
+
+    private static VersionFields readVersion(JsonParser parser) throws IOException {
+        String id = null;
+        String name = null;
+        String releaseDate = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = textOrNull(parser);
+                case "name" -> name = textOrNull(parser);
+                case "releaseDate" -> releaseDate = textOrNull(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return new VersionFields(id, name, releaseDate);
+    }
+
+    private static IssueFields readIssue(JsonParser parser) throws IOException {
+        String key = null;
+        String created = null;
+        String resolutionDate = null;
+        String updated = null;
+        List<String> versionNames = null;
+        String issueType = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("key".equals(field)) {
+                key = textOrNull(parser);
+            } else if ("fields".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken fieldValue = parser.nextToken();
+                    switch (name) {
+                        case "created" -> created = textOrNull(parser);
+                        case "resolutiondate" -> resolutionDate = textOrNull(parser);
+                        case "updated" -> updated = textOrNull(parser);
+                        case "versions" -> versionNames = fieldValue == JsonToken.START_ARRAY ? readNames(parser) : null;
+                        case "issuetype" -> issueType = fieldValue == JsonToken.START_OBJECT ? readName(parser) : null;
+                        default -> parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new IssueFields(key, created, resolutionDate, updated, versionNames, issueType);
+    }
+
+    private static List<String> readNames(JsonParser parser) throws IOException {
+        List<String> names = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = readName(parser);
+            if (name != null) names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * Campo name dell'oggetto corrente (parser sul suo START_OBJECT), null se assente.
+     */
+    private static String readName(JsonParser parser) throws IOException {
+        String name = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("name".equals(field)) {
+                name = textOrNull(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return name;
+    }
+
+    private static String textOrNull(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        if (parser.nextToken() != token) {
+            throw new IOException("JSON inatteso: atteso " + token + ", trovato " + parser.currentToken());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.apache.utilities;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.utilities.JiraJsonStream.IssueFields;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Archivio locale dei ticket Jira di un progetto, usato dalla sincronizzazione incrementale.
+ * Conserva i campi grezzi degli issue (non i Ticket, che dipendono dalle release correnti)
+ * e la data di ultimo aggiornamento più recente vista (high-water mark), da cui riparte la query successiva.
+ * Gli issue sono indicizzati per chiave: un issue modificato sostituisce la versione precedente, uno restituito
+ * che non soddisfa più il filtro (es. tipo cambiato) viene rimosso.
+ * Una query incrementale non può vedere gli issue cancellati o spostati in un altro progetto: spariscono solo con
+ * una sincronizzazione completa (replace), che il chiamante esegue periodicamente in base a getLastFullSync.
+ */
+public class JiraTicketStore {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    // Formato delle date restituite dall'API REST di Jira, es. 2020-01-15T10:00:00.000+0000
+    private static final DateTimeFormatter JIRA_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+    /**
+     * Contenuto del file dell'archivio.
+     */
+    public record StoreData(String project, String highWaterMark, String lastFullSync, List<IssueFields> issues) {}
+
+    private final Path file;
+    private final String project;
+    private final Map<String, IssueFields> issues = new LinkedHashMap<>();
+    private OffsetDateTime highWaterMark;
+    private OffsetDateTime lastFullSync;
+
+    private JiraTicketStore(Path file, String project) {
+        this.file = file;
+        this.project = project;
+    }
+
+    public static JiraTicketStore load(Path directory, String project) throws IOException {
+        JiraTicketStore store = new JiraTicketStore(directory.resolve(project + "_tickets.json"), project);
+        if (Files.exists(store.file)) {
+            StoreData data = MAPPER.readValue(store.file.toFile(), StoreData.class);
+            store.merge(data.issues(), issue -> true);
+            // Il mark salvato può venire da issue poi rimossi dall'archivio
+            OffsetDateTime saved = parse(data.highWaterMark());
+            if (saved != null && (store.highWaterMark == null || saved.isAfter(store.highWaterMark))) {
+                store.highWaterMark = saved;
+            }
+            store.lastFullSync = parse(data.lastFullSync());
+        }
+        return store;
+    }
+
+    public boolean isEmpty() {
+        return issues.isEmpty();
+    }
+
+    public OffsetDateTime getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Data dell'ultima sincronizzazione completa, null se non è mai stata eseguita (o l'archivio è di una versione
+     * precedente che non la registrava).
+     */
+    public OffsetDateTime getLastFullSync() {
+        return lastFullSync;
+    }
+
+    public List<IssueFields> getIssues() {
+        return new ArrayList<>(issues.values());
+    }
+
+    /**
+     * Unisce gli issue scaricati all'archivio e aggiorna l'high-water mark: gli issue che soddisfano il filtro
+     * sostituiscono la versione precedente, gli altri vengono rimossi.
+     *
+     * @return il numero di issue nuovi, modificati o rimossi
+     */
+    public int merge(List<IssueFields> fetched, Predicate<IssueFields> matches) {
+        int changed = 0;
+        for (IssueFields issue : fetched) {
+            if (issue.key() == null) continue;
+            if (matches.test(issue)) {
+                IssueFields previous = issues.put(issue.key(), issue);
+                if (!issue.equals(previous)) changed++;
+            } else if (issues.remove(issue.key()) != null) {
+                changed++;
+            }
+            OffsetDateTime updated = parse(issue.updated());
+            if (updated != null && (highWaterMark == null || updated.isAfter(highWaterMark))) {
+                highWaterMark = updated;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Sostituisce l'intero archivio con il risultato di una sincronizzazione completa: gli issue non restituiti
+     * (cancellati, spostati o non più conformi al filtro) vengono rimossi.
+     *
+     * @return il numero di issue nuovi, modificati o rimossi
+     */
+    public int replace(List<IssueFields> fetched, Predicate<IssueFields> matches) {
+        Map<String, IssueFields> previous = new LinkedHashMap<>(issues);
+        issues.clear();
+        highWaterMark = null;
+        merge(fetched, matches);
+        int changed = 0;
+        for (IssueFields issue : issues.values()) {
+            if (!issue.equals(previous.remove(issue.key()))) changed++;
+        }
+        lastFullSync = OffsetDateTime.now();
+        return changed + previous.size();
+    }
+
+    public void save() throws IOException {
+        Files.createDirectories(file.getParent());
+        StoreData data = new StoreData(project, highWaterMark == null ? null : highWaterMark.format(JIRA_DATE),
+                lastFullSync == null ? null : lastFullSync.format(JIRA_DATE), getIssues());
+        Path tmp = Files.createTempFile(file.getParent(), project, ".tmp");
+        try {
+            MAPPER.writeValue(tmp.toFile(), data);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static OffsetDateTime parse(String date) {
+        if (date == null || date.isEmpty()) return null;
+        try {
+            return OffsetDateTime.parse(date, JIRA_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.apache.utilities;
 import org.apache.logging.Printer;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -11,19 +12,11 @@ import java.nio.file.Paths;
 public class JsonReader {
     private JsonReader() {}
 
-    private static String readAll(Reader rd) throws IOException {
-        StringBuilder sb= new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
-        }
-        return sb.toString();
-    }
     public static JSONObject readJsonFromUrl(String url) throws IOException, URISyntaxException {
-        InputStream input = new URI(url).toURL().openStream();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
-        String jsonText = readAll(reader);
-        return new JSONObject(jsonText);
+        try (InputStream input = new URI(url).toURL().openStream();
+             Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            return new JSONObject(new JSONTokener(reader));
+        }
     }
     public static JSONObject load(String path) {
         try{
@@ -0,0 +1,62 @@
+package org.apache.utilities;
+
+import org.apache.logging.Printer;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Lettura centralizzata delle opzioni di esecuzione.
+ * Ogni opzione viene cercata prima tra le System property (-DNOME=valore)
+ * e poi tra le variabili d'ambiente, con un valore di default se assente.
+ */
+public class RunConfig {
+
+    private static final String CACHE_DIR_KEY = "CACHE_DIR";
+
+    private RunConfig() {}
+
+    /**
+     * Cartella dei dati riusati tra un'esecuzione e l'altra (P del cold start, cache delle istanze e delle
+     * risposte Jira): CACHE_DIR, per default "cache" nella cartella di lavoro. Si può cancellare in ogni momento.
+     */
+    public static Path cacheDirectory() {
+        return Paths.get(getString(CACHE_DIR_KEY, "cache"));
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            value = System.getenv(key);
+        }
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            Printer.printYellow("Valore non valido per " + key + ": '" + value + "'. Uso il default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            Printer.printYellow("Valore non valido per " + key + ": '" + value + "'. Uso il default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        return value.equalsIgnoreCase("true") || value.equals("1") || value.equalsIgnoreCase("yes");
+    }
+}
@@ -0,0 +1,309 @@
+package org.apache.utilities.dataset;
+
+import org.apache.utilities.dataset.DatasetSchema.ColumnType;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lettura del dataset colonnare scritto da ColumnarDatasetWriter.
+ * Il file è mappato in memoria e viene letto solo il footer; i blocchi delle colonne sono decodificati
+ * su richiesta e solo per i row group (release) richiesti, senza alcun parsing di testo per i valori numerici.
+ * I MethodName sono coppie (id path, id firma): ogni nome distinto è composto una sola volta, anche se il metodo
+ * compare in molte release.
+ */
+public class ColumnarDataset {
+
+    private static final int TRAILER_SIZE = Long.BYTES + 8;
+    // Un MappedByteBuffer e le sue slice sono indicizzati con int
+    private static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+
+    private final MappedByteBuffer data;
+    private final List<DatasetSchema.ColumnDef> columns = new ArrayList<>();
+    private final List<String[]> dictionaries = new ArrayList<>();
+    private final String[] paths;
+    private final String[] signatures;
+    private final List<ColumnarDatasetWriter.RowGroup> groups = new ArrayList<>();
+    private final int rowCount;
+
+    private ColumnarDataset(MappedByteBuffer data) throws IOException {
+        this.data = data;
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        int size = data.capacity();
+        if (size < ColumnarDatasetWriter.MAGIC.length + TRAILER_SIZE
+                || !hasMagic(0) || !hasMagic(size - ColumnarDatasetWriter.MAGIC.length)) {
+            throw new IOException("Formato del dataset colonnare non riconosciuto.");
+        }
+        ByteBuffer footer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        footer.position((int) data.getLong(size - TRAILER_SIZE));
+
+        int version = footer.getInt();
+        if (version != ColumnarDatasetWriter.VERSION) {
+            throw new IOException("Versione del dataset colonnare non supportata: " + version);
+        }
+        int columnCount = footer.getInt();
+        for (int c = 0; c < columnCount; c++) {
+            String name = readString(footer);
+            columns.add(new DatasetSchema.ColumnDef(name, ColumnType.values()[footer.get()]));
+        }
+        for (DatasetSchema.ColumnDef column : columns) {
+            if (column.type() != ColumnType.DICTIONARY) {
+                dictionaries.add(null);
+                continue;
+            }
+            dictionaries.add(readStrings(footer));
+        }
+        this.paths = readStrings(footer);
+        this.signatures = readStrings(footer);
+        int groupCount = footer.getInt();
+        int total = 0;
+        for (int g = 0; g < groupCount; g++) {
+            int release = footer.getInt();
+            int firstRow = footer.getInt();
+            int rows = footer.getInt();
+            long[] offsets = new long[columnCount];
+            for (int c = 0; c < columnCount; c++) offsets[c] = footer.getLong();
+            ColumnarDatasetWriter.RowGroup group = new ColumnarDatasetWriter.RowGroup(release, firstRow, rows, offsets);
+            groups.add(group);
+            total += rows;
+        }
+        this.rowCount = total;
+    }
+
+    /**
+     * Mappa il file in memoria; i file oltre i 2 GiB non sono mappabili in un solo buffer e danno IOException,
+     * come i file non validi, così il chiamante può ripiegare sul CSV.
+     */
+    public static ColumnarDataset open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_MAPPED_BYTES) {
+                throw new IOException("Dataset colonnare troppo grande per la mappatura in memoria: " + channel.size() + " byte");
+            }
+            return new ColumnarDataset(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Release presenti nel file, nell'ordine in cui sono state scritte.
+     */
+    public List<String> releases() {
+        return rowIndex().releases();
+    }
+
+    /**
+     * Indice release -> righe dell'intero file, costruito dagli offset registrati nel footer.
+     */
+    public ReleaseRowIndex rowIndex() {
+        String[] releaseNames = dictionaries.get(DatasetSchema.RELEASE);
+        ReleaseRowIndex index = new ReleaseRowIndex(rowCount);
+        for (ColumnarDatasetWriter.RowGroup group : groups) {
+            index.addRange(releaseNames[group.release()], group.firstRow(), group.firstRow() + group.rows());
+        }
+        return index;
+    }
+
+    /**
+     * Indice release -> righe della tabella restituita da toTable(name, releases).
+     */
+    public ReleaseRowIndex rowIndex(Collection<String> releases) {
+        String[] releaseNames = dictionaries.get(DatasetSchema.RELEASE);
+        List<ColumnarDatasetWriter.RowGroup> selected = selectGroups(releases);
+        ReleaseRowIndex index = new ReleaseRowIndex(selected.stream().mapToInt(ColumnarDatasetWriter.RowGroup::rows).sum());
+        int at = 0;
+        for (ColumnarDatasetWriter.RowGroup group : selected) {
+            index.addRange(releaseNames[group.release()], at, at + group.rows());
+            at += group.rows();
+        }
+        return index;
+    }
+
+    public Table toTable(String name) {
+        return toTable(name, groups);
+    }
+
+    /**
+     * Tabella con le sole righe delle release indicate (nell'ordine del file); le release assenti sono ignorate.
+     */
+    public Table toTable(String name, Collection<String> releases) {
+        return toTable(name, selectGroups(releases));
+    }
+
+    private Table toTable(String name, List<ColumnarDatasetWriter.RowGroup> selected) {
+        int rows = selected.stream().mapToInt(ColumnarDatasetWriter.RowGroup::rows).sum();
+        List<Column<?>> result = new ArrayList<>();
+        for (int c = 0; c < columns.size(); c++) {
+            DatasetSchema.ColumnDef column = columns.get(c);
+            switch (column.type()) {
+                case INT -> result.add(IntColumn.create(column.name(), readInts(c, selected, rows)));
+                case DOUBLE -> result.add(DoubleColumn.create(column.name(), readDoubles(c, selected, rows)));
+                case DICTIONARY -> {
+                    String[] dictionary = dictionaries.get(c);
+                    int[] codes = readInts(c, selected, rows);
+                    String[] values = new String[rows];
+                    for (int r = 0; r < rows; r++) values[r] = dictionary[codes[r]];
+                    result.add(StringColumn.create(column.name(), values));
+                }
+                case METHOD_NAME -> result.add(StringColumn.create(column.name(), readMethodNames(c, selected, rows)));
+            }
+        }
+        return Table.create(name, result);
+    }
+
+    /**
+     * Istanze Weka delle release indicate, con gli stessi attributi della conversione da Tablesaw:
+     * metriche numeriche, Bugginess nominale {yes, no} come ultimo attributo, senza ProjectName, Release e MethodName
+     * e senza le colonne escluse dalla milestone 2 (DatasetSchema.isExcludedFromMilestone2).
+     */
+    public Instances toInstances(String name, Collection<String> releases) {
+        List<ColumnarDatasetWriter.RowGroup> selected = selectGroups(releases);
+        int rows = selected.stream().mapToInt(ColumnarDatasetWriter.RowGroup::rows).sum();
+
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        int classColumn = -1;
+        for (int c = 0; c < columns.size(); c++) {
+            DatasetSchema.ColumnDef column = columns.get(c);
+            if (DatasetSchema.isExcludedFromMilestone2(column.name())) continue;
+            if (column.type() == ColumnType.INT) {
+                attributes.add(new Attribute(column.name()));
+                int[] ints = readInts(c, selected, rows);
+                double[] asDouble = new double[rows];
+                for (int r = 0; r < rows; r++) asDouble[r] = ints[r];
+                values.add(asDouble);
+            } else if (column.type() == ColumnType.DOUBLE) {
+                attributes.add(new Attribute(column.name()));
+                values.add(readDoubles(c, selected, rows));
+            } else if (column.name().equalsIgnoreCase("bugginess")) {
+                classColumn = c;
+            }
+        }
+        if (classColumn == -1) {
+            throw new IllegalArgumentException("Attributo classe 'bugginess' non trovato.");
+        }
+        Attribute classAttribute = new Attribute(columns.get(classColumn).name(), new ArrayList<>(List.of("yes", "no")));
+        attributes.add(classAttribute);
+        String[] classDictionary = dictionaries.get(classColumn);
+        int[] classCodes = readInts(classColumn, selected, rows);
+
+        Instances instances = new Instances(name, attributes, rows);
+        int numeric = values.size();
+        for (int r = 0; r < rows; r++) {
+            double[] row = new double[numeric + 1];
+            for (int a = 0; a < numeric; a++) row[a] = values.get(a)[r];
+            int label = classAttribute.indexOfValue(classDictionary[classCodes[r]]);
+            row[numeric] = label == -1 ? Utils.missingValue() : label;
+            instances.add(new DenseInstance(1.0, row));
+        }
+        return instances;
+    }
+
+    private List<ColumnarDatasetWriter.RowGroup> selectGroups(Collection<String> releases) {
+        List<ColumnarDatasetWriter.RowGroup> selected = new ArrayList<>();
+        String[] releaseNames = dictionaries.get(DatasetSchema.RELEASE);
+        Set<String> wanted = new HashSet<>(releases);
+        for (ColumnarDatasetWriter.RowGroup group : groups) {
+            if (wanted.contains(releaseNames[group.release()])) selected.add(group);
+        }
+        return selected;
+    }
+
+    private int[] readInts(int column, List<ColumnarDatasetWriter.RowGroup> selected, int rows) {
+        int[] result = new int[rows];
+        int at = 0;
+        for (ColumnarDatasetWriter.RowGroup group : selected) {
+            slice(group.chunkOffsets()[column], group.rows() * 4L).asIntBuffer().get(result, at, group.rows());
+            at += group.rows();
+        }
+        return result;
+    }
+
+    private double[] readDoubles(int column, List<ColumnarDatasetWriter.RowGroup> selected, int rows) {
+        double[] result = new double[rows];
+        int at = 0;
+        for (ColumnarDatasetWriter.RowGroup group : selected) {
+            slice(group.chunkOffsets()[column], group.rows() * 8L).asDoubleBuffer().get(result, at, group.rows());
+            at += group.rows();
+        }
+        return result;
+    }
+
+    /**
+     * Chiavi dei metodi (vedi MethodNameDictionary.methodKey) delle righe selezionate.
+     */
+    private long[] readMethodKeys(int column, List<ColumnarDatasetWriter.RowGroup> selected, int rows) {
+        long[] result = new long[rows];
+        int at = 0;
+        for (ColumnarDatasetWriter.RowGroup group : selected) {
+            long offset = group.chunkOffsets()[column];
+            int count = group.rows();
+            IntBuffer pathIds = slice(offset, count * 4L).asIntBuffer();
+            IntBuffer signatureIds = slice(offset + count * 4L, count * 4L).asIntBuffer();
+            for (int r = 0; r < count; r++) {
+                result[at++] = MethodNameDictionary.methodKey(pathIds.get(r), signatureIds.get(r));
+            }
+        }
+        return result;
+    }
+
+    private String[] readMethodNames(int column, List<ColumnarDatasetWriter.RowGroup> selected, int rows) {
+        long[] keys = readMethodKeys(column, selected, rows);
+        Map<Long, String> names = new HashMap<>();
+        String[] result = new String[rows];
+        for (int r = 0; r < rows; r++) {
+            long key = keys[r];
+            result[r] = names.computeIfAbsent(key,
+                    k -> MethodNameDictionary.methodName(paths[(int) (k >>> 32)], signatures[(int) (long) k]));
+        }
+        return result;
+    }
+
+    private ByteBuffer slice(long offset, long length) {
+        return data.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private boolean hasMagic(int offset) {
+        byte[] magic = new byte[ColumnarDatasetWriter.MAGIC.length];
+        data.get(offset, magic);
+        return Arrays.equals(magic, ColumnarDatasetWriter.MAGIC);
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) values[i] = readString(buffer);
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
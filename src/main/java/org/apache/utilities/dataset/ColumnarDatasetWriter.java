@@ -0,0 +1,395 @@
+package org.apache.utilities.dataset;
+
+import org.apache.model.AnalyzedClass;
+import org.apache.model.AnalyzedMethod;
+import org.apache.model.ClassMetrics;
+import org.apache.model.MethodMetrics;
+import org.apache.utilities.dataset.DatasetSchema.ColumnType;
+import org.apache.utilities.writer.CsvRowEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Scrive il dataset per metodo nel formato colonnare binario, accanto al CSV.
+ * Le righe sono raggruppate per release (row group): per ogni gruppo ogni colonna è scritta
+ * come blocco contiguo di primitivi little-endian (int32 per INT e codici di dizionario, float64 per DOUBLE,
+ * due blocchi int32 di id path e id firma per METHOD_NAME). In coda al file c'è il footer con schema, dizionari
+ * (ProjectName, Release, Bugginess), tabelle dei path e delle firme e indice dei row group
+ * (release, prima riga, numero di righe, offset dei blocchi).
+ * Le release arrivano dalla pipeline in ordine cronologico, quindi i row group sono già ordinati per release.
+ * I valori DOUBLE sono arrotondati a due decimali come nel CSV, così le due letture coincidono.
+ * Il file è scritto accanto alla destinazione con estensione .tmp e pubblicato con un rename atomico solo da
+ * commit(): se la pipeline fallisce, close() lo cancella e resta il file colonnare precedente (o nessuno).
+ */
+public class ColumnarDatasetWriter implements AutoCloseable {
+
+    public static final String EXTENSION = ".cols";
+    static final byte[] MAGIC = "SMDSCOL1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 3;
+
+    private static final int COLUMNS = DatasetSchema.COLUMNS.size();
+
+    // Valore delle colonne INT e DOUBLE per nome: gli indici sono ricavati da DatasetSchema
+    private static final Map<String, ToLongBiFunction<ClassMetrics, MethodMetrics>> INT_METRICS = Map.ofEntries(
+            Map.entry("LOC", (cm, mm) -> mm.getLoc()),
+            Map.entry("ParameterCount", (cm, mm) -> mm.getParameterCount()),
+            Map.entry("CycloComplexity", (cm, mm) -> mm.getCycloComplexity()),
+            Map.entry("CognitiveComplexity", (cm, mm) -> mm.getCognitiveComplexity()),
+            Map.entry("NestingDepth", (cm, mm) -> mm.getNestingDepth()),
+            Map.entry("Revisions", (cm, mm) -> cm.getNumberOfRevisions()),
+            Map.entry("Authors", (cm, mm) -> cm.getNumAuthors()),
+            Map.entry("TotalChurn", (cm, mm) -> cm.getChurnMetrics().getVal()),
+            Map.entry("MaxChurn", (cm, mm) -> cm.getChurnMetrics().getMaxVal()),
+            Map.entry("NumberOfCodeSmells", (cm, mm) -> mm.getNumberOfCodeSmells()),
+            Map.entry("MethodRevisions", (cm, mm) -> mm.getNumberOfRevisions()),
+            Map.entry("MethodAuthors", (cm, mm) -> mm.getNumAuthors()),
+            Map.entry("MethodAge", (cm, mm) -> mm.getAge()),
+            Map.entry("MethodHistory", (cm, mm) -> mm.getMethodHistory()),
+            Map.entry("MethodAddedLOC", (cm, mm) -> mm.getAddedLOCMetrics().getVal()),
+            Map.entry("MethodRemovedLOC", (cm, mm) -> mm.getRemovedLOCMetrics().getVal()),
+            Map.entry("MethodTotalChurn", (cm, mm) -> mm.getChurnMetrics().getVal()),
+            Map.entry("MethodMaxChurn", (cm, mm) -> mm.getChurnMetrics().getMaxVal()));
+    private static final Map<String, ToDoubleBiFunction<ClassMetrics, MethodMetrics>> DOUBLE_METRICS = Map.of(
+            "AvgChurn", (cm, mm) -> cm.getChurnMetrics().getAvgVal(),
+            "MethodAvgChurn", (cm, mm) -> mm.getChurnMetrics().getAvgVal());
+    private static final int[] INT_COLUMNS = metricColumns(ColumnType.INT, INT_METRICS);
+    private static final int[] DOUBLE_COLUMNS = metricColumns(ColumnType.DOUBLE, DOUBLE_METRICS);
+
+    private final Path target;
+    private final Path tmp;
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+    private final String targetName;
+    // Un lock esplicito e non synchronized: le scritture su disco non bloccano il carrier dei virtual thread
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final MethodNameDictionary methodNames;
+    private boolean closed = false;
+
+    // Dizionari delle colonne DICTIONARY, nell'ordine di prima apparizione
+    private final List<Map<String, Integer>> dictionaryIndex = new ArrayList<>();
+    private final List<List<String>> dictionaryValues = new ArrayList<>();
+
+    // Row group in costruzione
+    private int rows;
+    private int currentRelease = -1;
+    private final int[][] intValues = new int[COLUMNS][];
+    private final double[][] doubleValues = new double[COLUMNS][];
+    private int[] pathIds = new int[1024];
+    private int[] signatureIds = new int[1024];
+    private int writtenRows;
+    private final List<RowGroup> groups = new ArrayList<>();
+
+    /**
+     * Row group di una release: prima riga (nell'ordine del file), numero di righe e offset dei blocchi delle colonne.
+     */
+    record RowGroup(int release, int firstRow, int rows, long[] chunkOffsets) {}
+
+    /**
+     * File colonnare del progetto, accanto a {@code <progetto>_dataset.csv}.
+     */
+    public static Path pathFor(String projectName) {
+        return Paths.get(projectName + "_dataset" + EXTENSION);
+    }
+
+    public ColumnarDatasetWriter(Path file, String targetName) throws IOException {
+        this(file, targetName, new MethodNameDictionary());
+    }
+
+    /**
+     * Writer che usa la tabella dei path e delle firme già popolata dalla pipeline (es. dalla MethodIdentityTable).
+     */
+    public ColumnarDatasetWriter(Path file, String targetName, MethodNameDictionary methodNames) throws IOException {
+        this.methodNames = methodNames;
+        this.target = file;
+        this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.targetName = targetName;
+        for (int c = 0; c < COLUMNS; c++) {
+            ColumnType type = DatasetSchema.COLUMNS.get(c).type();
+            boolean dictionary = type == ColumnType.DICTIONARY;
+            dictionaryIndex.add(dictionary ? new HashMap<>() : null);
+            dictionaryValues.add(dictionary ? new ArrayList<>() : null);
+            if (type == ColumnType.INT || dictionary) intValues[c] = new int[1024];
+            if (type == ColumnType.DOUBLE) doubleValues[c] = new double[1024];
+        }
+        putBytes(MAGIC);
+    }
+
+    /**
+     * Aggiunge le righe dei metodi delle classi; un cambio di release chiude il row group corrente.
+     */
+    public void writeResultsForClass(List<AnalyzedClass> classes) throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) throw new IOException("Writer colonnare già chiuso.");
+            for (AnalyzedClass ac : classes) {
+                int release = code(DatasetSchema.RELEASE, ac.getRelease().getReleaseName());
+                if (release != currentRelease && rows > 0) {
+                    flushGroup();
+                }
+                currentRelease = release;
+                for (AnalyzedMethod am : ac.getMethods()) {
+                    addRow(ac, am, release);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void addRow(AnalyzedClass ac, AnalyzedMethod am, int release) {
+        ensureRowCapacity();
+        MethodMetrics mm = am.getMetrics();
+        ClassMetrics cm = ac.getProcessMetrics();
+        int r = rows;
+        intValues[DatasetSchema.PROJECT_NAME][r] = code(DatasetSchema.PROJECT_NAME, targetName);
+        intValues[DatasetSchema.RELEASE][r] = release;
+        pathIds[r] = methodNames.pathId(ac.getClassName());
+        signatureIds[r] = methodNames.signatureId(am.getSignature());
+        for (int c : INT_COLUMNS) {
+            intValues[c][r] = toInt(INT_METRICS.get(DatasetSchema.COLUMNS.get(c).name()).applyAsLong(cm, mm));
+        }
+        for (int c : DOUBLE_COLUMNS) {
+            doubleValues[c][r] = CsvRowEncoder.fixed2Value(DOUBLE_METRICS.get(DatasetSchema.COLUMNS.get(c).name()).applyAsDouble(cm, mm));
+        }
+        intValues[DatasetSchema.BUGGINESS][r] = code(DatasetSchema.BUGGINESS, am.isBuggy() ? "yes" : "no");
+        rows++;
+    }
+
+    private void ensureRowCapacity() {
+        if (rows < pathIds.length) return;
+        int capacity = pathIds.length * 2;
+        pathIds = Arrays.copyOf(pathIds, capacity);
+        signatureIds = Arrays.copyOf(signatureIds, capacity);
+        for (int c = 0; c < COLUMNS; c++) {
+            if (intValues[c] != null) intValues[c] = Arrays.copyOf(intValues[c], capacity);
+            if (doubleValues[c] != null) doubleValues[c] = Arrays.copyOf(doubleValues[c], capacity);
+        }
+    }
+
+    private int code(int column, String value) {
+        Map<String, Integer> index = dictionaryIndex.get(column);
+        Integer code = index.get(value);
+        if (code == null) {
+            code = index.size();
+            index.put(value, code);
+            dictionaryValues.get(column).add(value);
+        }
+        return code;
+    }
+
+    /**
+     * Indici delle colonne del tipo indicato; ognuna deve avere il suo valore nella tabella, altrimenti lo schema
+     * e il writer non sono allineati.
+     */
+    private static int[] metricColumns(ColumnType type, Map<String, ?> metrics) {
+        List<Integer> indices = new ArrayList<>();
+        for (int c = 0; c < COLUMNS; c++) {
+            DatasetSchema.ColumnDef column = DatasetSchema.COLUMNS.get(c);
+            if (column.type() != type) continue;
+            if (!metrics.containsKey(column.name())) {
+                throw new IllegalStateException("Colonna " + column.name() + " senza valore nel writer colonnare.");
+            }
+            indices.add(c);
+        }
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int toInt(long value) {
+        return Math.clamp(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    private void flushGroup() throws IOException {
+        long[] offsets = new long[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            offsets[c] = position;
+            switch (DatasetSchema.COLUMNS.get(c).type()) {
+                case INT, DICTIONARY -> putInts(intValues[c], rows);
+                case DOUBLE -> putDoubles(doubleValues[c], rows);
+                case METHOD_NAME -> {
+                    putInts(pathIds, rows);
+                    putInts(signatureIds, rows);
+                }
+            }
+        }
+        groups.add(new RowGroup(currentRelease, writtenRows, rows, offsets));
+        writtenRows += rows;
+        rows = 0;
+    }
+
+    private void writeFooter() throws IOException {
+        long footerStart = position;
+        putInt(VERSION);
+        putInt(COLUMNS);
+        for (DatasetSchema.ColumnDef column : DatasetSchema.COLUMNS) {
+            putString(column.name());
+            putByte((byte) column.type().ordinal());
+        }
+        for (int c = 0; c < COLUMNS; c++) {
+            List<String> values = dictionaryValues.get(c);
+            if (values != null) putStrings(values);
+        }
+        putStrings(methodNames.paths());
+        putStrings(methodNames.signatures());
+        putInt(groups.size());
+        for (RowGroup group : groups) {
+            putInt(group.release());
+            putInt(group.firstRow());
+            putInt(group.rows());
+            for (long offset : group.chunkOffsets()) putLong(offset);
+        }
+        putLong(footerStart);
+        putBytes(MAGIC);
+    }
+
+    /**
+     * Completa il file (ultimo row group e footer) e lo pubblica al posto della destinazione.
+     */
+    public void commit() throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) throw new IOException("Writer colonnare già chiuso.");
+            closed = true;
+            boolean published = false;
+            try {
+                try {
+                    if (rows > 0) flushGroup();
+                    writeFooter();
+                    drain();
+                    channel.force(false);
+                } finally {
+                    channel.close();
+                }
+                try {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                published = true;
+            } finally {
+                if (!published) Files.deleteIfExists(tmp);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Senza commit() il file parziale viene cancellato.
+     */
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // --- scrittura bufferizzata sul canale ---
+
+    private void reserve(int bytes) throws IOException {
+        if (out.remaining() < bytes) drain();
+    }
+
+    private void drain() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    private void putByte(byte value) throws IOException {
+        reserve(1);
+        out.put(value);
+        position++;
+    }
+
+    private void putInt(int value) throws IOException {
+        reserve(4);
+        out.putInt(value);
+        position += 4;
+    }
+
+    private void putLong(long value) throws IOException {
+        reserve(8);
+        out.putLong(value);
+        position += 8;
+    }
+
+    private void putInts(int[] values, int count) throws IOException {
+        int i = 0;
+        while (i < count) {
+            reserve(4);
+            int batch = Math.min(count - i, out.remaining() / 4);
+            out.asIntBuffer().put(values, i, batch);
+            out.position(out.position() + batch * 4);
+            i += batch;
+        }
+        position += 4L * count;
+    }
+
+    private void putDoubles(double[] values, int count) throws IOException {
+        int i = 0;
+        while (i < count) {
+            reserve(8);
+            int batch = Math.min(count - i, out.remaining() / 8);
+            out.asDoubleBuffer().put(values, i, batch);
+            out.position(out.position() + batch * 8);
+            i += batch;
+        }
+        position += 8L * count;
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        putBytes(bytes, bytes.length);
+    }
+
+    private void putBytes(byte[] bytes, int count) throws IOException {
+        int i = 0;
+        while (i < count) {
+            reserve(1);
+            int batch = Math.min(count - i, out.remaining());
+            out.put(bytes, i, batch);
+            i += batch;
+        }
+        position += count;
+    }
+
+    private void putStrings(List<String> values) throws IOException {
+        putInt(values.size());
+        for (String value : values) putString(value);
+    }
+
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        putBytes(bytes);
+    }
+}
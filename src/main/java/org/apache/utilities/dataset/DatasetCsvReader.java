@@ -0,0 +1,784 @@
+package org.apache.utilities.dataset;
+
+import org.apache.logging.Printer;
+import org.apache.utilities.BlockGzipFile;
+import org.apache.utilities.ExecutionPools;
+import org.apache.utilities.RunConfig;
+import org.apache.utilities.dataset.DatasetSchema.ColumnType;
+import org.apache.utilities.writer.ShardedDatasetWriter;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.columns.numbers.IntColumnType;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lettura del CSV del dataset (schema fisso di DatasetSchema) senza il parser generico di Tablesaw o di Weka.
+ * Il file è mappato in memoria a intervalli allineati all'inizio di una riga, analizzati in parallelo:
+ * ogni intervallo riempie i propri buffer di colonna primitivi (double per le metriche, codici di dizionario per
+ * i testi), che vengono poi concatenati nell'ordine del file. I numeri sono convertiti direttamente dai byte e le
+ * righe delle release non richieste sono scartate durante la lettura. Ogni lettura riporta il throughput in MB/s.
+ * Si assume che i campi non contengano a capo, come nei CSV prodotti da CsvWriter e da Tablesaw.
+ * I file .csv.gz scritti da CsvWriter in modalità compressa sono letti allo stesso modo, un blocco per intervallo:
+ * grazie all'indice dei blocchi si decomprimono solo i blocchi con le release richieste.
+ * Al posto del file si può passare la cartella di partizioni di ShardedDatasetWriter, letta tramite il suo manifest.
+ */
+public class DatasetCsvReader {
+
+    /**
+     * Versione della conversione in Instances: va incrementata quando readInstances o loadDataSource producono
+     * istanze diverse dallo stesso file, così le voci di InstancesCache calcolate prima non vengono riusate.
+     */
+    public static final int FORMAT_VERSION = 2;
+    private static final String THREADS_KEY = "DATASET_READER_THREADS";
+    // Sotto questa dimensione un intervallo non viene ulteriormente diviso
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    // Limite di una singola mappatura
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+    private static final double[] POW10 = new double[23];
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final String YES = "yes";
+    private static final String NO = "no";
+
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10.0;
+    }
+
+    private static final int FIELDS = DatasetSchema.COLUMNS.size();
+    private static final boolean[] NUMERIC = new boolean[FIELDS];
+
+    static {
+        for (int f = 0; f < FIELDS; f++) {
+            ColumnType type = DatasetSchema.COLUMNS.get(f).type();
+            NUMERIC[f] = type == ColumnType.INT || type == ColumnType.DOUBLE;
+        }
+    }
+
+    private DatasetCsvReader() {}
+
+    public static int defaultThreads() {
+        return Math.max(1, RunConfig.getInt(THREADS_KEY, ExecutionPools.cpuThreads()));
+    }
+
+    /**
+     * Variante di InstancesCache per istanze ricavate con questo lettore: il nome con versione del lettore e schema.
+     */
+    public static String cacheVariant(String name) {
+        return name + "|reader=" + FORMAT_VERSION + "|schema=" + DatasetSchema.fingerprint();
+    }
+
+    /**
+     * Attributi Weka del dataset: le colonne numeriche nell'ordine del CSV (senza quelle escluse dalla milestone 2,
+     * vedi DatasetSchema.isExcludedFromMilestone2) e Bugginess nominale {yes, no} come ultima.
+     */
+    public static ArrayList<Attribute> wekaAttributes() {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int f = 0; f < FIELDS; f++) {
+            if (isFeature(f)) attributes.add(new Attribute(DatasetSchema.COLUMNS.get(f).name()));
+        }
+        attributes.add(new Attribute(DatasetSchema.COLUMNS.get(DatasetSchema.BUGGINESS).name(),
+                new ArrayList<>(List.of(YES, NO))));
+        return attributes;
+    }
+
+    private static boolean isFeature(int field) {
+        return NUMERIC[field] && !DatasetSchema.isExcludedFromMilestone2(DatasetSchema.COLUMNS.get(field).name());
+    }
+
+    public static Instances readInstances(Path csv, Collection<String> releases, String datasetName) throws IOException {
+        return readInstances(csv, releases, datasetName, defaultThreads());
+    }
+
+    /**
+     * Istanze delle righe delle release indicate (tutte se releases è null), nell'ordine del file,
+     * con gli attributi di wekaAttributes(). Solleva IOException se l'intestazione non corrisponde allo schema.
+     */
+    public static Instances readInstances(Path csv, Collection<String> releases, String datasetName, int threads) throws IOException {
+        Columns columns = read(csv, releases == null ? null : new HashSet<>(releases), false, threads);
+        ArrayList<Attribute> attributes = wekaAttributes();
+        int numeric = attributes.size() - 1;
+        Attribute classAttribute = attributes.get(numeric);
+
+        List<String> labels = columns.dictionaries[DatasetSchema.BUGGINESS];
+        double[] labelIndex = new double[labels.size()];
+        for (int i = 0; i < labelIndex.length; i++) {
+            int index = classAttribute.indexOfValue(labels.get(i));
+            labelIndex[i] = index == -1 ? Utils.missingValue() : index;
+        }
+
+        double[][] numericColumns = new double[numeric][];
+        int a = 0;
+        for (int f = 0; f < FIELDS; f++) {
+            if (isFeature(f)) numericColumns[a++] = columns.numbers[f];
+        }
+        int[] classCodes = columns.codes[DatasetSchema.BUGGINESS];
+
+        Instances instances = new Instances(datasetName, attributes, columns.rows);
+        for (int r = 0; r < columns.rows; r++) {
+            double[] row = new double[numeric + 1];
+            for (int j = 0; j < numeric; j++) row[j] = numericColumns[j][r];
+            row[numeric] = labelIndex[classCodes[r]];
+            instances.add(new DenseInstance(1.0, row));
+        }
+        return instances;
+    }
+
+    /**
+     * Tabella con tutte le colonne del CSV, con gli stessi tipi che assegnerebbe Tablesaw:
+     * testo come StringColumn, metriche come IntColumn se tutti i valori sono interi, altrimenti DoubleColumn.
+     * Solleva IOException se il file non ha lo schema atteso o contiene metriche non numeriche.
+     */
+    public static Table readTable(Path csv, String tableName) throws IOException {
+        Columns columns = read(csv, null, true, defaultThreads());
+        columns.requireNumeric();
+        List<Column<?>> result = new ArrayList<>();
+        for (int f = 0; f < FIELDS; f++) {
+            String name = DatasetSchema.COLUMNS.get(f).name();
+            if (NUMERIC[f]) {
+                double[] values = columns.numbers[f];
+                int[] ints = asInts(values, columns.rows);
+                result.add(ints != null ? IntColumn.create(name, ints) : DoubleColumn.create(name, Arrays.copyOf(values, columns.rows)));
+            } else {
+                result.add(StringColumn.create(name, columns.strings(f)));
+            }
+        }
+        return Table.create(tableName, result);
+    }
+
+    /**
+     * Istanze con la stessa struttura prodotta dal CSVLoader di Weka per questo schema: i campi di testo diventano
+     * attributi nominali con i valori nell'ordine di prima apparizione, le metriche attributi numerici.
+     * Se il file contiene casi in cui il CSVLoader si comporterebbe diversamente (valori mancanti o numerici nei campi
+     * di testo, apici, metriche non numeriche) solleva IOException, così il chiamante può usare il CSVLoader.
+     */
+    public static Instances readWekaCsv(Path csv) throws IOException {
+        Columns columns = read(csv, null, true, defaultThreads());
+        columns.requireNumeric();
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int f = 0; f < FIELDS; f++) {
+            String name = DatasetSchema.COLUMNS.get(f).name();
+            if (NUMERIC[f]) {
+                attributes.add(new Attribute(name));
+            } else {
+                List<String> values = columns.dictionaries[f];
+                if (values.isEmpty() || values.stream().allMatch(DatasetCsvReader::isNumber)
+                        || values.stream().anyMatch(v -> v.isEmpty() || "?".equals(v) || v.indexOf('\'') >= 0)) {
+                    throw new IOException("La colonna " + name + " non è compatibile con la lettura diretta.");
+                }
+                attributes.add(new Attribute(name, new ArrayList<>(values)));
+            }
+        }
+        String fileName = csv.getFileName().toString();
+        if (BlockGzipFile.isCompressed(csv)) fileName = fileName.substring(0, fileName.length() - BlockGzipFile.EXTENSION.length());
+        if (Files.isDirectory(csv) && fileName.endsWith(ShardedDatasetWriter.DIRECTORY_SUFFIX)) {
+            fileName = fileName.substring(0, fileName.length() - ShardedDatasetWriter.DIRECTORY_SUFFIX.length()) + "_dataset";
+        }
+        String relationName = fileName.endsWith(".csv") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        Instances instances = new Instances(relationName, attributes, columns.rows);
+        for (int r = 0; r < columns.rows; r++) {
+            double[] row = new double[FIELDS];
+            for (int f = 0; f < FIELDS; f++) {
+                row[f] = NUMERIC[f] ? columns.numbers[f][r] : columns.codes[f][r];
+            }
+            instances.add(new DenseInstance(1.0, row));
+        }
+        return instances;
+    }
+
+    /**
+     * Equivalente di new ConverterUtils.DataSource(path).getDataSet(): i CSV con lo schema del dataset sono letti
+     * direttamente con readWekaCsv, gli altri file (e i casi non compatibili) passano dal caricatore di Weka.
+     * Una cartella di partizioni con manifest è letta come il CSV unico, senza cache (non ha un contenuto unico da confrontare).
+     */
+    public static Instances loadDataSource(String path) throws Exception {
+        Path file = Paths.get(path);
+        if (ShardedDatasetWriter.isSharded(file)) {
+            return readWekaCsv(file);
+        }
+        if (!Files.isRegularFile(file)) {
+            return new ConverterUtils.DataSource(path).getDataSet();
+        }
+        return InstancesCache.shared().get(file, cacheVariant("data-source"), () -> loadDataSourceUncached(path, file));
+    }
+
+    private static Instances loadDataSourceUncached(String path, Path file) throws Exception {
+        String lowerCase = path.toLowerCase(Locale.ROOT);
+        if (lowerCase.endsWith(".csv") || lowerCase.endsWith(".csv" + BlockGzipFile.EXTENSION)) {
+            try {
+                return readWekaCsv(file);
+            } catch (IOException e) {
+                Printer.printYellow("Lettura diretta di " + path + " non possibile, uso il caricatore di Weka: " + e.getMessage());
+            }
+        }
+        return new ConverterUtils.DataSource(path).getDataSet();
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static int[] asInts(double[] values, int rows) {
+        int[] ints = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            double v = values[r];
+            if (Double.isNaN(v)) {
+                ints[r] = IntColumnType.missingValueIndicator();
+            } else if (v == Math.rint(v) && v >= Integer.MIN_VALUE + 1 && v <= Integer.MAX_VALUE) {
+                ints[r] = (int) v;
+            } else {
+                return null;
+            }
+        }
+        return ints;
+    }
+
+    // --- lettura parallela degli intervalli ---
+
+    private static Columns read(Path csv, Set<String> wanted, boolean allColumns, int threads) throws IOException {
+        if (Files.isDirectory(csv)) {
+            return readSharded(csv, wanted, allColumns, threads);
+        }
+        if (BlockGzipFile.isCompressed(csv)) {
+            return readCompressed(csv, wanted, allColumns, threads);
+        }
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = checkHeader(channel);
+            long[] bounds = chunkBounds(channel, dataStart, size, threads);
+
+            List<Callable<ChunkParser>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                tasks.add(() -> parseChunk(channel, start, end, wanted, allColumns));
+            }
+            return finish(csv, parseAll(tasks, threads), size, started);
+        }
+    }
+
+    /**
+     * Lettura di un .csv.gz a blocchi: il primo blocco inizia con l'intestazione e ogni blocco ha come chiavi
+     * le release che contiene (CsvWriter apre un blocco solo a un cambio di release). I blocchi senza release
+     * richieste non vengono nemmeno decompressi; gli altri sono decompressi e analizzati in parallelo come gli
+     * intervalli del file in chiaro, scartando le righe delle altre release.
+     */
+    private static Columns readCompressed(Path csv, Set<String> wanted, boolean allColumns, int threads) throws IOException {
+        long started = System.nanoTime();
+        List<Callable<ChunkParser>> tasks = new ArrayList<>();
+        long size = compressedTasks(csv, wanted, allColumns, tasks);
+        return finish(csv, parseAll(tasks, threads), size, started);
+    }
+
+    private static long compressedTasks(Path csv, Set<String> wanted, boolean allColumns,
+                                        List<Callable<ChunkParser>> tasks) throws IOException {
+        List<BlockGzipFile.Block> blocks = BlockGzipFile.readIndex(csv);
+        if (blocks.isEmpty()) throw new IOException("Indice dei blocchi vuoto per " + csv.getFileName());
+        long size = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            BlockGzipFile.Block block = blocks.get(i);
+            boolean first = i == 0;
+            if (first || wanted == null || block.keys().stream().anyMatch(wanted::contains)) {
+                tasks.add(() -> parseBlock(csv, block, first, wanted, allColumns));
+                size += block.rawLength();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Lettura di una cartella scritta da ShardedDatasetWriter: le partizioni sono prese nell'ordine del manifest e
+     * quelle di release non richieste sono saltate senza aprirle. Le partizioni in chiaro sono divise in intervalli
+     * se sono meno dei thread, quelle compresse procedono per blocchi; tutti gli intervalli sono analizzati in
+     * parallelo e concatenati nell'ordine del manifest, quindi il risultato è lo stesso del CSV unico.
+     */
+    private static Columns readSharded(Path directory, Set<String> wanted, boolean allColumns, int threads) throws IOException {
+        long started = System.nanoTime();
+        List<ShardedDatasetWriter.Part> selected = new ArrayList<>();
+        for (ShardedDatasetWriter.Part part : ShardedDatasetWriter.readManifest(directory)) {
+            if (wanted == null || wanted.contains(part.release())) selected.add(part);
+        }
+        int threadsPerPart = Math.max(1, threads / Math.max(1, selected.size()));
+        List<Callable<ChunkParser>> tasks = new ArrayList<>();
+        List<FileChannel> channels = new ArrayList<>();
+        long size = 0;
+        try {
+            for (ShardedDatasetWriter.Part part : selected) {
+                Path file = directory.resolve(part.file());
+                if (BlockGzipFile.isCompressed(file)) {
+                    size += compressedTasks(file, wanted, allColumns, tasks);
+                    continue;
+                }
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                channels.add(channel);
+                long partSize = channel.size();
+                long[] bounds = chunkBounds(channel, checkHeader(channel), partSize, threadsPerPart);
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    long start = bounds[i];
+                    long end = bounds[i + 1];
+                    tasks.add(() -> parseChunk(channel, start, end, wanted, allColumns));
+                }
+                size += partSize;
+            }
+            // Nessuna partizione da leggere: colonne vuote con la stessa struttura di una lettura normale
+            if (tasks.isEmpty()) tasks.add(() -> new ChunkParser(wanted, allColumns, 0));
+            return finish(directory, parseAll(tasks, threads), size, started);
+        } finally {
+            for (FileChannel channel : channels) channel.close();
+        }
+    }
+
+    /**
+     * Esegue gli intervalli in parallelo (sul pool CPU) e restituisce i parser nell'ordine dei task.
+     */
+    private static List<ChunkParser> parseAll(List<Callable<ChunkParser>> tasks, int threads) throws IOException {
+        List<ChunkParser> chunks = new ArrayList<>();
+        if (tasks.size() <= 1) {
+            for (Callable<ChunkParser> task : tasks) chunks.add(ExecutionPools.onCpu(task));
+            return chunks;
+        }
+        List<Future<ChunkParser>> futures = new ArrayList<>();
+        try (ExecutorService executor = ExecutionPools.newIoExecutor(Math.max(1, Math.min(threads, tasks.size())))) {
+            for (Callable<ChunkParser> task : tasks) {
+                futures.add(executor.submit(() -> ExecutionPools.onCpu(task)));
+            }
+            for (Future<ChunkParser> future : futures) {
+                chunks.add(await(future));
+            }
+        }
+        return chunks;
+    }
+
+    private static ChunkParser parseBlock(Path csv, BlockGzipFile.Block block, boolean first, Set<String> wanted,
+                                          boolean allColumns) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(BlockGzipFile.readBlock(csv, block));
+        int start = 0;
+        if (first) {
+            int newline = 0;
+            while (newline < data.limit() && data.get(newline) != '\n') newline++;
+            requireHeader(new String(data.array(), 0, newline, StandardCharsets.UTF_8));
+            start = Math.min(newline + 1, data.limit());
+        }
+        ChunkParser parser = new ChunkParser(wanted, allColumns, Math.min(1 << 16, Math.max(16, (data.limit() - start) / 128)));
+        parseLines(data, start, parser);
+        return parser;
+    }
+
+    private static Columns finish(Path csv, List<ChunkParser> chunks, long size, long started) {
+        Columns columns = Columns.concat(chunks);
+        int malformed = chunks.stream().mapToInt(c -> c.malformedRows).sum();
+        if (malformed > 0) {
+            Printer.printYellow(malformed + " righe di " + csv.getFileName() + " non conformi allo schema sono state ignorate.");
+        }
+        double millis = Math.max(1e-3, (System.nanoTime() - started) / 1e6);
+        double megabytes = size / (1024.0 * 1024.0);
+        Printer.println(String.format("Lettura di %s: %.1f MB in %.0f ms (%.1f MB/s, %d intervalli, %d righe)",
+                csv.getFileName(), megabytes, millis, megabytes / (millis / 1000.0), chunks.size(), columns.rows));
+        return columns;
+    }
+
+    private static ChunkParser await(Future<ChunkParser> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrotto durante la lettura del dataset");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static ChunkParser parseChunk(FileChannel channel, long start, long end, Set<String> wanted, boolean allColumns) throws IOException {
+        ChunkParser parser = new ChunkParser(wanted, allColumns, (int) Math.min(1 << 16, Math.max(16, (end - start) / 128)));
+        if (end <= start) return parser;
+        parseLines(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), 0, parser);
+        return parser;
+    }
+
+    private static void parseLines(ByteBuffer data, int from, ChunkParser parser) {
+        int limit = data.limit();
+        int lineStart = from;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && data.get(lineEnd) != '\n') lineEnd++;
+            parser.parseLine(data, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    // --- intestazione e suddivisione in intervalli ---
+
+    private static long checkHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        StringBuilder header = new StringBuilder();
+        long position = 0;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            int newline = indexOf(buffer.array(), read, (byte) '\n');
+            int take = newline >= 0 ? newline : read;
+            header.append(new String(buffer.array(), 0, take, StandardCharsets.UTF_8));
+            position += take;
+            if (newline >= 0) {
+                position++;
+                break;
+            }
+        }
+        requireHeader(header.toString());
+        return position;
+    }
+
+    private static void requireHeader(String header) throws IOException {
+        String line = header.strip();
+        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') line = line.substring(1);
+        if (!line.equals(String.join(",", DatasetSchema.names()))) {
+            throw new IOException("Intestazione del dataset diversa dallo schema atteso.");
+        }
+    }
+
+    /**
+     * Confini degli intervalli: ogni confine interno è spostato all'inizio della riga successiva.
+     */
+    private static long[] chunkBounds(FileChannel channel, long start, long size, int threads) throws IOException {
+        long bytes = size - start;
+        long byThreads = Math.min(threads, bytes / MIN_CHUNK_BYTES);
+        long bySize = (bytes + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES;
+        int chunks = (int) Math.max(1, Math.max(byThreads, bySize));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        for (int i = 1; i < chunks; i++) {
+            long target = start + bytes * i / chunks;
+            long aligned = nextLineStart(channel, Math.max(target, bounds.getLast()), size, probe);
+            if (aligned > bounds.getLast() && aligned < size) bounds.add(aligned);
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long position = from - 1;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) break;
+            int newline = indexOf(probe.array(), read, (byte) '\n');
+            if (newline >= 0) return position + newline + 1;
+            position += read;
+        }
+        return size;
+    }
+
+    private static int indexOf(byte[] bytes, int to, byte value) {
+        for (int i = 0; i < to; i++) {
+            if (bytes[i] == value) return i;
+        }
+        return -1;
+    }
+
+    // --- buffer di colonna ---
+
+    /**
+     * Dizionari per campo: Java non crea direttamente array di tipi generici.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<String>[] newDictionaries() {
+        return new List[FIELDS];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, Integer>[] newDictionaryIndex() {
+        return new Map[FIELDS];
+    }
+
+    /**
+     * Colonne concatenate di tutti gli intervalli: metriche come double (NaN se mancanti),
+     * campi di testo come codici in un dizionario in ordine di prima apparizione.
+     */
+    private static final class Columns {
+        private final int rows;
+        private final double[][] numbers = new double[FIELDS][];
+        private final int[][] codes = new int[FIELDS][];
+        private final List<String>[] dictionaries = newDictionaries();
+        private final int invalidNumbers;
+
+        private Columns(int rows, int invalidNumbers) {
+            this.rows = rows;
+            this.invalidNumbers = invalidNumbers;
+        }
+
+        static Columns concat(List<ChunkParser> chunks) {
+            int rows = chunks.stream().mapToInt(c -> c.rows).sum();
+            Columns columns = new Columns(rows, chunks.stream().mapToInt(c -> c.invalidNumbers).sum());
+            ChunkParser first = chunks.getFirst();
+            for (int f = 0; f < FIELDS; f++) {
+                if (first.numbers[f] != null) {
+                    double[] merged = new double[rows];
+                    int at = 0;
+                    for (ChunkParser chunk : chunks) {
+                        System.arraycopy(chunk.numbers[f], 0, merged, at, chunk.rows);
+                        at += chunk.rows;
+                    }
+                    columns.numbers[f] = merged;
+                } else if (first.codes[f] != null) {
+                    mergeCodes(columns, f, chunks);
+                }
+            }
+            return columns;
+        }
+
+        /**
+         * Unisce i dizionari locali in un dizionario globale, mantenendo l'ordine di prima apparizione nel file.
+         */
+        private static void mergeCodes(Columns columns, int f, List<ChunkParser> chunks) {
+            List<String> dictionary = new ArrayList<>();
+            Map<String, Integer> index = new HashMap<>();
+            int[] merged = new int[columns.rows];
+            int at = 0;
+            for (ChunkParser chunk : chunks) {
+                List<String> local = chunk.dictionaries[f];
+                int[] remap = new int[local.size()];
+                for (int i = 0; i < remap.length; i++) {
+                    remap[i] = index.computeIfAbsent(local.get(i), v -> {
+                        dictionary.add(v);
+                        return dictionary.size() - 1;
+                    });
+                }
+                int[] localCodes = chunk.codes[f];
+                for (int r = 0; r < chunk.rows; r++) merged[at++] = remap[localCodes[r]];
+            }
+            columns.codes[f] = merged;
+            columns.dictionaries[f] = dictionary;
+        }
+
+        String[] strings(int f) {
+            String[] result = new String[rows];
+            List<String> dictionary = dictionaries[f];
+            for (int r = 0; r < rows; r++) result[r] = dictionary.get(codes[f][r]);
+            return result;
+        }
+
+        void requireNumeric() throws IOException {
+            if (invalidNumbers > 0) {
+                throw new IOException(invalidNumbers + " valori non numerici nelle colonne delle metriche.");
+            }
+        }
+    }
+
+    /**
+     * Analizza le righe di un intervallo nei propri buffer di colonna.
+     */
+    private static final class ChunkParser {
+        private final Set<String> wanted;
+        private int rows;
+        private int capacity;
+        private int malformedRows;
+        private int invalidNumbers;
+        private final double[][] numbers = new double[FIELDS][];
+        private final int[][] codes = new int[FIELDS][];
+        private final List<String>[] dictionaries = newDictionaries();
+        private final Map<String, Integer>[] dictionaryIndex = newDictionaryIndex();
+        // Ultimo valore visto per campo di testo: i valori ripetuti su righe consecutive non vengono decodificati
+        private final byte[][] lastBytes = new byte[FIELDS][];
+        private final int[] lastCode = new int[FIELDS];
+        // Esito del filtro per codice di release
+        private final List<Boolean> releaseAccepted = new ArrayList<>();
+        private final double[] rowNumbers = new double[FIELDS];
+        private final int[] rowCodes = new int[FIELDS];
+        private byte[] scratch = new byte[256];
+
+        ChunkParser(Set<String> wanted, boolean allColumns, int expectedRows) {
+            this.wanted = wanted;
+            this.capacity = expectedRows;
+            for (int f = 0; f < FIELDS; f++) {
+                if (NUMERIC[f]) {
+                    numbers[f] = new double[capacity];
+                } else if (allColumns || f == DatasetSchema.RELEASE || f == DatasetSchema.BUGGINESS) {
+                    codes[f] = new int[capacity];
+                    dictionaries[f] = new ArrayList<>();
+                    dictionaryIndex[f] = new HashMap<>();
+                }
+            }
+        }
+
+        void parseLine(ByteBuffer data, int start, int end) {
+            if (end > start && data.get(end - 1) == '\r') end--;
+            if (end == start) return;
+            int position = start;
+            for (int f = 0; f < FIELDS; f++) {
+                if (position > end) {
+                    malformedRows++;
+                    return;
+                }
+                int fieldEnd = fieldEnd(data, position, end);
+                if (NUMERIC[f]) {
+                    rowNumbers[f] = parseNumber(data, position, fieldEnd, this);
+                } else if (codes[f] != null) {
+                    rowCodes[f] = code(f, data, position, fieldEnd);
+                    if (f == DatasetSchema.RELEASE && wanted != null && !releaseAccepted.get(rowCodes[f])) return;
+                }
+                position = fieldEnd + 1;
+            }
+            if (position <= end) {
+                // Più campi del previsto
+                malformedRows++;
+                return;
+            }
+            if (rows == capacity) grow();
+            for (int f = 0; f < FIELDS; f++) {
+                if (numbers[f] != null) numbers[f][rows] = rowNumbers[f];
+                else if (codes[f] != null) codes[f][rows] = rowCodes[f];
+            }
+            rows++;
+        }
+
+        private int code(int f, ByteBuffer data, int start, int end) {
+            int length = end - start;
+            byte[] last = lastBytes[f];
+            if (last != null && last.length == length && sameBytes(data, start, last)) {
+                return lastCode[f];
+            }
+            byte[] bytes = new byte[length];
+            data.get(start, bytes);
+            lastBytes[f] = bytes;
+            String value = unquote(new String(bytes, StandardCharsets.UTF_8));
+            Integer code = dictionaryIndex[f].get(value);
+            if (code == null) {
+                code = dictionaries[f].size();
+                dictionaries[f].add(value);
+                dictionaryIndex[f].put(value, code);
+                if (f == DatasetSchema.RELEASE) releaseAccepted.add(wanted == null || wanted.contains(value));
+            }
+            lastCode[f] = code;
+            return code;
+        }
+
+        private static boolean sameBytes(ByteBuffer data, int start, byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                if (data.get(start + i) != bytes[i]) return false;
+            }
+            return true;
+        }
+
+        private void grow() {
+            capacity *= 2;
+            for (int f = 0; f < FIELDS; f++) {
+                if (numbers[f] != null) numbers[f] = Arrays.copyOf(numbers[f], capacity);
+                if (codes[f] != null) codes[f] = Arrays.copyOf(codes[f], capacity);
+            }
+        }
+
+        private double parseSlow(ByteBuffer data, int start, int end) {
+            int length = end - start;
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            data.get(start, scratch, 0, length);
+            String value = new String(scratch, 0, length, StandardCharsets.US_ASCII).trim();
+            if (value.isEmpty() || "?".equals(value)) return Utils.missingValue();
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                invalidNumbers++;
+                return Utils.missingValue();
+            }
+        }
+    }
+
+    private static int fieldEnd(ByteBuffer data, int start, int end) {
+        int i = start;
+        if (i < end && data.get(i) == '"') {
+            i++;
+            while (i < end) {
+                if (data.get(i) == '"') {
+                    if (i + 1 < end && data.get(i + 1) == '"') {
+                        i += 2;
+                        continue;
+                    }
+                    i++;
+                    break;
+                }
+                i++;
+            }
+        }
+        while (i < end && data.get(i) != ',') i++;
+        return i;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+        return value;
+    }
+
+    /**
+     * Numero decimale senza esponente (come quelli scritti da CsvWriter) convertito direttamente dai byte.
+     * Con cifre significative sotto 2^53 e al più 22 decimali il risultato è esatto come Double.parseDouble,
+     * che resta il ripiego per tutti gli altri casi. Un campo vuoto o "?" diventa missing.
+     */
+    private static double parseNumber(ByteBuffer data, int start, int end, ChunkParser parser) {
+        if (start >= end) return Utils.missingValue();
+        int i = start;
+        boolean negative = false;
+        byte first = data.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int decimals = -1;
+        boolean digits = false;
+        for (; i < end; i++) {
+            byte c = data.get(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA) return parser.parseSlow(data, start, end);
+                mantissa = mantissa * 10 + (c - '0');
+                digits = true;
+                if (decimals >= 0) decimals++;
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return parser.parseSlow(data, start, end);
+            }
+        }
+        if (!digits || mantissa >= MAX_EXACT_MANTISSA || decimals >= POW10.length) return parser.parseSlow(data, start, end);
+        double value = decimals <= 0 ? mantissa : mantissa / POW10[decimals];
+        return negative ? -value : value;
+    }
+}
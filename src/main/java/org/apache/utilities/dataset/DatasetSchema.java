@@ -0,0 +1,100 @@
+package org.apache.utilities.dataset;
+
+import org.apache.utilities.RunConfig;
+
+import java.util.List;
+
+/**
+ * Schema del dataset per metodo prodotto dalla milestone 1: nomi e tipi delle colonne, nell'ordine del CSV.
+ * Lo stesso schema è usato dal CSV e dal formato colonnare binario.
+ */
+public final class DatasetSchema {
+
+    /**
+     * Tipo fisico di una colonna: DICTIONARY per testi ripetuti (codici interi più dizionario),
+     * METHOD_NAME per il nome del metodo (id del path della classe più id della firma, vedi MethodNameDictionary),
+     * INT e DOUBLE per le metriche.
+     */
+    public enum ColumnType { DICTIONARY, METHOD_NAME, INT, DOUBLE }
+
+    public record ColumnDef(String name, ColumnType type) {}
+
+    public static final List<ColumnDef> COLUMNS = List.of(
+            // Contesto
+            new ColumnDef("ProjectName", ColumnType.DICTIONARY),
+            new ColumnDef("Release", ColumnType.DICTIONARY),
+            new ColumnDef("MethodName", ColumnType.METHOD_NAME),
+            // Metriche di Complessità
+            new ColumnDef("LOC", ColumnType.INT),
+            new ColumnDef("ParameterCount", ColumnType.INT),
+            new ColumnDef("CycloComplexity", ColumnType.INT),
+            new ColumnDef("CognitiveComplexity", ColumnType.INT),
+            new ColumnDef("NestingDepth", ColumnType.INT),
+            // Metriche Storiche
+            new ColumnDef("Revisions", ColumnType.INT),
+            new ColumnDef("Authors", ColumnType.INT),
+            // Metriche di Cambiamento Dettagliate
+            new ColumnDef("TotalChurn", ColumnType.INT),
+            new ColumnDef("MaxChurn", ColumnType.INT),
+            new ColumnDef("AvgChurn", ColumnType.DOUBLE),
+            new ColumnDef("NumberOfCodeSmells", ColumnType.INT),
+            // Metriche Storiche a livello di metodo
+            new ColumnDef("MethodRevisions", ColumnType.INT),
+            new ColumnDef("MethodAuthors", ColumnType.INT),
+            new ColumnDef("MethodAge", ColumnType.INT),
+            new ColumnDef("MethodHistory", ColumnType.INT),
+            new ColumnDef("MethodAddedLOC", ColumnType.INT),
+            new ColumnDef("MethodRemovedLOC", ColumnType.INT),
+            new ColumnDef("MethodTotalChurn", ColumnType.INT),
+            new ColumnDef("MethodMaxChurn", ColumnType.INT),
+            new ColumnDef("MethodAvgChurn", ColumnType.DOUBLE),
+            // Etichetta
+            new ColumnDef("Bugginess", ColumnType.DICTIONARY)
+    );
+
+    public static final int PROJECT_NAME = 0;
+    public static final int RELEASE = 1;
+    public static final int METHOD_NAME = 2;
+    public static final int BUGGINESS = COLUMNS.size() - 1;
+
+    /**
+     * Metriche storiche per metodo, aggiunte al CSV dopo le analisi della milestone 2: non fanno parte dei suoi
+     * attributi (correlazione, feature selection, modelli), così i risultati restano quelli di prima.
+     * Con MILESTONE2_METHOD_HISTORY=true vengono incluse.
+     */
+    public static final List<String> METHOD_HISTORY_COLUMNS = List.of(
+            "MethodRevisions", "MethodAuthors", "MethodAge", "MethodHistory", "MethodAddedLOC",
+            "MethodRemovedLOC", "MethodTotalChurn", "MethodMaxChurn", "MethodAvgChurn");
+    private static final String METHOD_HISTORY_KEY = "MILESTONE2_METHOD_HISTORY";
+
+    private DatasetSchema() {}
+
+    public static List<String> names() {
+        return COLUMNS.stream().map(ColumnDef::name).toList();
+    }
+
+    /**
+     * Vero se la milestone 2 usa le metriche storiche per metodo (opzione MILESTONE2_METHOD_HISTORY, default false).
+     */
+    public static boolean milestone2UsesMethodHistory() {
+        return RunConfig.getBoolean(METHOD_HISTORY_KEY, false);
+    }
+
+    /**
+     * Vero se la colonna è esclusa dagli attributi della milestone 2.
+     */
+    public static boolean isExcludedFromMilestone2(String columnName) {
+        return !milestone2UsesMethodHistory() && METHOD_HISTORY_COLUMNS.contains(columnName);
+    }
+
+    /**
+     * Impronta stabile di nomi e tipi delle colonne: cambia quando cambia lo schema.
+     */
+    public static String fingerprint() {
+        StringBuilder columns = new StringBuilder();
+        for (ColumnDef column : COLUMNS) {
+            columns.append(column.name()).append(':').append(column.type().name()).append(',');
+        }
+        return Integer.toHexString(columns.toString().hashCode());
+    }
+}
@@ -0,0 +1,356 @@
+package org.apache.utilities.dataset;
+
+import org.apache.logging.Printer;
+import org.apache.utilities.RunConfig;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Cache delle Instances di Weka ricavate da un file di dataset, in memoria e su disco.
+ * La chiave è l'hash SHA-256 del contenuto del file più una variante che descrive caricamento e preprocessing,
+ * quindi un file modificato o parametri diversi non riusano mai una voce vecchia.
+ * Su disco ogni voce è &lt;sha256(chiave)&gt;.inst: intestazione ARFF, indice della classe e valori colonna per colonna
+ * (int32 quando la colonna è intera, altrimenti float64), protetti da un CRC32; una voce corrotta viene scartata
+ * e ricalcolata. I chiamanti ricevono sempre una copia, che possono modificare liberamente.
+ * Le voci stanno in &lt;CACHE_DIR&gt;/instances (o in INSTANCES_CACHE_DIR); oltre INSTANCES_CACHE_MAX_MB su disco
+ * vengono cancellate quelle usate meno di recente, e in memoria si tengono al più INSTANCES_CACHE_MEMORY_MB di valori.
+ * Le Instances con attributi stringa o relazionali non passano dalla cache: il formato salva solo i valori
+ * numerici e l'intestazione ARFF non conserva i valori delle stringhe.
+ */
+public class InstancesCache {
+
+    private static final String ENABLED_KEY = "INSTANCES_CACHE";
+    private static final String DIR_KEY = "INSTANCES_CACHE_DIR";
+    private static final String MAX_MB_KEY = "INSTANCES_CACHE_MAX_MB";
+    private static final String MEMORY_MB_KEY = "INSTANCES_CACHE_MEMORY_MB";
+    private static final String EXTENSION = ".inst";
+    private static final byte[] MAGIC = "SMINST02".getBytes(StandardCharsets.US_ASCII);
+    private static final byte INT_COLUMN = 0;
+    private static final byte DOUBLE_COLUMN = 1;
+    private static final long MB = 1024L * 1024L;
+
+    /**
+     * Calcolo delle Instances quando la voce non è in cache.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Instances load() throws Exception;
+    }
+
+    private static final class SharedHolder {
+        private static final InstancesCache INSTANCE = new InstancesCache(
+                directory(), RunConfig.getBoolean(ENABLED_KEY, true),
+                RunConfig.getInt(MAX_MB_KEY, 512) * MB, RunConfig.getInt(MEMORY_MB_KEY, 256) * MB);
+
+        private static Path directory() {
+            String dir = RunConfig.getString(DIR_KEY, "");
+            return dir.isBlank() ? RunConfig.cacheDirectory().resolve("instances") : Paths.get(dir);
+        }
+    }
+
+    private record FileStamp(String path, long size, long lastModified) {}
+
+    private final Path directory;
+    private final boolean enabled;
+    private final long maxDiskBytes;
+    private final long maxMemoryBytes;
+    // Ordine di accesso: la prima voce è quella usata meno di recente
+    private final LinkedHashMap<String, Instances> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private final Map<FileStamp, String> contentHashes = new ConcurrentHashMap<>();
+
+    public InstancesCache(Path directory, boolean enabled) {
+        this(directory, enabled, 512 * MB, 256 * MB);
+    }
+
+    public InstancesCache(Path directory, boolean enabled, long maxDiskBytes, long maxMemoryBytes) {
+        this.directory = directory;
+        this.enabled = enabled;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    public static InstancesCache shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Instances per il file sorgente e la variante indicati: dalla memoria, dal disco o calcolate con il loader.
+     */
+    public Instances get(Path source, String variant, Loader loader) throws Exception {
+        if (!enabled || !Files.isRegularFile(source)) {
+            return loader.load();
+        }
+        String key = sha256(contentHash(source) + "|" + variant);
+
+        Instances cached = fromMemory(key);
+        if (cached != null) {
+            return new Instances(cached);
+        }
+        Path file = directory.resolve(key + EXTENSION);
+        cached = readEntry(file);
+        if (cached == null) {
+            long start = System.nanoTime();
+            cached = loader.load();
+            if (!isCacheable(cached)) {
+                return cached;
+            }
+            writeEntry(file, cached);
+            Printer.print(String.format("Cache istanze: %s (%s) calcolato in %d ms%n",
+                    source.getFileName(), variant, (System.nanoTime() - start) / 1_000_000));
+        } else {
+            touch(file);
+        }
+        toMemory(key, cached);
+        return new Instances(cached);
+    }
+
+    private static boolean isCacheable(Instances instances) {
+        for (int j = 0; j < instances.numAttributes(); j++) {
+            Attribute attribute = instances.attribute(j);
+            if (attribute.isString() || attribute.isRelationValued()) return false;
+        }
+        return true;
+    }
+
+    // --- memoria ---
+
+    private synchronized Instances fromMemory(String key) {
+        return memory.get(key);
+    }
+
+    private synchronized void toMemory(String key, Instances instances) {
+        long bytes = sizeOf(instances);
+        if (bytes > maxMemoryBytes) return;
+        Instances previous = memory.put(key, instances);
+        if (previous != null) memoryBytes -= sizeOf(previous);
+        memoryBytes += bytes;
+        Iterator<Instances> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= sizeOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    // Stima dell'occupazione: un double per valore (DenseInstance)
+    private static long sizeOf(Instances instances) {
+        return (long) instances.numInstances() * instances.numAttributes() * Double.BYTES;
+    }
+
+    // --- formato su disco ---
+
+    private Instances readEntry(Path file) {
+        if (!Files.exists(file)) return null;
+        CRC32 crc = new CRC32();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            byte[] magic = raw.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("intestazione non valida");
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            Instances structure = new Instances(new StringReader(new String(header, StandardCharsets.UTF_8)));
+            int classIndex = in.readInt();
+            int rows = in.readInt();
+            int attributes = structure.numAttributes();
+            double[][] values = new double[rows][attributes];
+            for (int j = 0; j < attributes; j++) {
+                boolean ints = in.readByte() == INT_COLUMN;
+                for (int r = 0; r < rows; r++) {
+                    values[r][j] = ints ? in.readInt() : in.readDouble();
+                }
+            }
+            double[] weights = null;
+            if (in.readBoolean()) {
+                weights = new double[rows];
+                for (int r = 0; r < rows; r++) weights[r] = in.readDouble();
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(raw).readLong() != expected) throw new IOException("checksum non valido");
+
+            Instances instances = new Instances(structure, rows);
+            for (int r = 0; r < rows; r++) {
+                instances.add(new DenseInstance(weights == null ? 1.0 : weights[r], values[r]));
+            }
+            instances.setClassIndex(classIndex);
+            return instances;
+        } catch (Exception e) {
+            Printer.printYellow("Voce della cache istanze scartata (" + file.getFileName() + "): " + e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // verrà sovrascritta
+            }
+            return null;
+        }
+    }
+
+    private void writeEntry(Path file, Instances instances) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, "instances", EXTENSION + ".tmp");
+            try {
+                try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                    raw.write(MAGIC);
+                    CRC32 crc = new CRC32();
+                    DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+                    writePayload(out, instances);
+                    out.flush();
+                    new DataOutputStream(raw).writeLong(crc.getValue());
+                }
+                try {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            Printer.printYellow("Impossibile salvare la cache istanze: " + e.getMessage());
+            return;
+        }
+        prune();
+    }
+
+    // La data di modifica segna l'ultimo uso, così prune() cancella le voci usate meno di recente
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // la voce resta valida, sarà solo tra le prime a essere cancellata
+        }
+    }
+
+    /**
+     * Riporta la cartella sotto maxDiskBytes cancellando le voci usate meno di recente.
+     */
+    private synchronized void prune() {
+        record Entry(Path file, long size, long lastModified) {}
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                try {
+                    Entry entry = new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                    entries.add(entry);
+                    total += entry.size();
+                } catch (IOException ignored) {
+                    // cancellata nel frattempo
+                }
+            }
+        } catch (IOException e) {
+            Printer.printYellow("Impossibile ridurre la cache istanze: " + e.getMessage());
+            return;
+        }
+        if (total <= maxDiskBytes) return;
+        entries.sort(Comparator.comparingLong(Entry::lastModified));
+        int removed = 0;
+        for (Entry entry : entries) {
+            if (total <= maxDiskBytes) break;
+            try {
+                Files.deleteIfExists(entry.file());
+                total -= entry.size();
+                removed++;
+            } catch (IOException ignored) {
+                // riprovata alla prossima scrittura
+            }
+        }
+        Printer.print("Cache istanze: " + removed + " voci cancellate per restare entro "
+                + maxDiskBytes / MB + " MB\n");
+    }
+
+    private static void writePayload(DataOutputStream out, Instances instances) throws IOException {
+        byte[] header = new Instances(instances, 0).toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(header.length);
+        out.write(header);
+        out.writeInt(instances.classIndex());
+        int rows = instances.numInstances();
+        out.writeInt(rows);
+        boolean unitWeights = true;
+        for (int j = 0; j < instances.numAttributes(); j++) {
+            boolean ints = true;
+            for (int r = 0; r < rows && ints; r++) {
+                double v = instances.instance(r).value(j);
+                ints = v == Math.rint(v) && v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE
+                        && !(v == 0.0 && 1.0 / v < 0);
+            }
+            out.writeByte(ints ? INT_COLUMN : DOUBLE_COLUMN);
+            for (int r = 0; r < rows; r++) {
+                double v = instances.instance(r).value(j);
+                if (ints) out.writeInt((int) v);
+                else out.writeDouble(v);
+            }
+        }
+        for (int r = 0; r < rows && unitWeights; r++) {
+            unitWeights = instances.instance(r).weight() == 1.0;
+        }
+        out.writeBoolean(!unitWeights);
+        if (!unitWeights) {
+            for (Instance instance : instances) out.writeDouble(instance.weight());
+        }
+    }
+
+    // --- chiavi ---
+
+    private String contentHash(Path source) throws IOException {
+        FileStamp stamp = new FileStamp(source.toAbsolutePath().toString(), Files.size(source),
+                Files.getLastModifiedTime(source).toMillis());
+        String hash = contentHashes.get(stamp);
+        if (hash == null) {
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[1 << 16];
+            try (InputStream in = Files.newInputStream(source)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) digest.update(buffer, 0, read);
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+            contentHashes.put(stamp, hash);
+        }
+        return hash;
+    }
+
+    private static String sha256(String value) {
+        return HexFormat.of().formatHex(newDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.apache.utilities.dataset;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabella delle stringhe che identificano i metodi di un dataset: path delle classi e firme, ciascuno con un id intero.
+ * Il MethodName del CSV ({@code <path della classe>/<firma>}) diventa la coppia (id path, id firma):
+ * ogni path e ogni firma è memorizzato una sola volta per tutte le release e due metodi si confrontano con due int.
+ * La tabella è condivisa fra la tabella delle identità dei metodi e il writer colonnare, che la salva nel footer.
+ */
+public final class MethodNameDictionary {
+
+    private final Map<String, Integer> pathIds = new HashMap<>();
+    private final List<String> paths = new ArrayList<>();
+    private final Map<String, Integer> signatureIds = new HashMap<>();
+    private final List<String> signatures = new ArrayList<>();
+
+    public synchronized int pathId(String path) {
+        return intern(path, pathIds, paths);
+    }
+
+    public synchronized int signatureId(String signature) {
+        return intern(signature, signatureIds, signatures);
+    }
+
+    public synchronized String path(int id) {
+        return paths.get(id);
+    }
+
+    public synchronized String signature(int id) {
+        return signatures.get(id);
+    }
+
+    /**
+     * Path registrati, in ordine di id.
+     */
+    public synchronized List<String> paths() {
+        return new ArrayList<>(paths);
+    }
+
+    /**
+     * Firme registrate, in ordine di id.
+     */
+    public synchronized List<String> signatures() {
+        return new ArrayList<>(signatures);
+    }
+
+    /**
+     * Chiave del metodo: id del path nei 32 bit alti, id della firma in quelli bassi.
+     */
+    public static long methodKey(int pathId, int signatureId) {
+        return ((long) pathId << 32) | (signatureId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * MethodName come scritto nel CSV.
+     */
+    public static String methodName(String path, String signature) {
+        return path + "/" + signature;
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<String> values) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,85 @@
+package org.apache.utilities.dataset;
+
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import tech.tablesaw.selection.Selection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indice release -> intervalli di righe di una tabella del dataset.
+ * Il dataset è scritto una release alla volta, quindi ogni release occupa di norma un solo intervallo contiguo:
+ * selezionare un insieme di release significa unire pochi intervalli, senza confrontare le righe una per una.
+ */
+public final class ReleaseRowIndex {
+
+    // Release -> [inizio0, fine0, inizio1, fine1, ...] (fine esclusa), nell'ordine delle righe
+    private final Map<String, int[]> ranges = new LinkedHashMap<>();
+    private final int rowCount;
+
+    ReleaseRowIndex(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Costruisce l'indice con una sola scansione della colonna Release.
+     */
+    public static ReleaseRowIndex of(StringColumn releaseColumn) {
+        int rows = releaseColumn.size();
+        ReleaseRowIndex index = new ReleaseRowIndex(rows);
+        int start = 0;
+        for (int r = 1; r <= rows; r++) {
+            if (r == rows || !releaseColumn.get(r).equals(releaseColumn.get(start))) {
+                index.addRange(releaseColumn.get(start), start, r);
+                start = r;
+            }
+        }
+        return index;
+    }
+
+    void addRange(String release, int start, int end) {
+        if (start >= end) return;
+        int[] current = ranges.get(release);
+        if (current == null) {
+            ranges.put(release, new int[]{start, end});
+        } else if (current[current.length - 1] == start) {
+            current[current.length - 1] = end;
+        } else {
+            int[] extended = Arrays.copyOf(current, current.length + 2);
+            extended[current.length] = start;
+            extended[current.length + 1] = end;
+            ranges.put(release, extended);
+        }
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Release presenti, nell'ordine in cui compaiono le loro righe.
+     */
+    public List<String> releases() {
+        return new ArrayList<>(ranges.keySet());
+    }
+
+    /**
+     * Righe delle release indicate, nell'ordine della tabella; le release assenti sono ignorate.
+     */
+    public Selection select(Collection<String> releases) {
+        Selection selection = new BitmapBackedSelection();
+        for (String release : releases) {
+            int[] releaseRanges = ranges.get(release);
+            if (releaseRanges == null) continue;
+            for (int i = 0; i < releaseRanges.length; i += 2) {
+                selection.addRange(releaseRanges[i], releaseRanges[i + 1]);
+            }
+        }
+        return selection;
+    }
+}
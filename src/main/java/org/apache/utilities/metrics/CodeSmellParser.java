@@ -5,12 +5,16 @@ import lombok.Setter;
 import org.apache.logging.Printer;
 import org.apache.model.AnalyzedClass;
 import org.apache.model.AnalyzedMethod;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import org.apache.utilities.BlockGzipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,43 +35,52 @@ public class CodeSmellParser {
         for (AnalyzedClass ac : analyzedClasses) {
             String fqcn = ac.getPackageName() + "." + ac.getFileName().replace(".java", "");
             for (AnalyzedMethod am : ac.getMethods()) {
-                String methodName = am.getMethodDeclaration().getNameAsString();
+                String methodName = am.getSimpleName();
                 String fqmn = fqcn + "." + methodName;
                 methodsByFqmn.put(fqmn, am);
             }
         }
         Printer.print("Mappa di " + methodsByFqmn.size() + " metodi FQMN creata per lookup.\n");
 
-        String pmdReportPath = "pmd_analysis" + File.separator + targetName + File.separator + releaseId + ".xml";
-        File pmdReportFile = new File(pmdReportPath);
+        // Il report può essere in chiaro o compresso (.xml.gz); in entrambi i casi è letto come stream
+        Path pmdReportFile = BlockGzipFile.resolve(Paths.get("pmd_analysis" + File.separator + targetName + File.separator + releaseId + ".xml"));
+        String pmdReportPath = pmdReportFile.toString();
 
-        if (!pmdReportFile.exists()) {
+        if (!Files.exists(pmdReportFile)) {
             Printer.printYellow("Report PMD non trovato per release " + releaseId + " al percorso: " + pmdReportPath + ". Non verranno associati code smell.");
             return;
         }
 
-        try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(pmdReportFile);
-            doc.getDocumentElement().normalize();
-
-            NodeList violationList = doc.getElementsByTagName("violation");
-
-            for (int i = 0; i < violationList.getLength(); i++) {
-                Element violationElement = (Element) violationList.item(i);
-                processViolation(violationElement, analyzedClasses);
+        try (InputStream in = BlockGzipFile.openStream(pmdReportFile)) {
+            // Lettura in streaming: servono solo gli attributi degli elementi <violation>
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            int violations = 0;
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "violation".equals(reader.getLocalName())) {
+                        processViolation(attribute(reader, "class"), attribute(reader, "method"), analyzedClasses);
+                        violations++;
+                    }
+                }
+            } finally {
+                reader.close();
             }
-            Printer.printGreen("Estrazione code smell completata per release " + releaseId + ". Trovate " + violationList.getLength() + " violazioni.\n");
+            Printer.printGreen("Estrazione code smell completata per release " + releaseId + ". Trovate " + violations + " violazioni.\n");
 
         } catch (Exception e) {
             Printer.errorPrint("Errore durante parsing o associazione del report PMD per release " + releaseId + " al percorso " + pmdReportPath + ": " + e.getMessage());
         }
     }
 
-    private static void processViolation(Element violationElement, List<AnalyzedClass> analyzedClasses) {
-        String className = violationElement.getAttribute("class");
-        String methodName = violationElement.getAttribute("method");
+    // Come Element.getAttribute del DOM: stringa vuota se l'attributo manca
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    private static void processViolation(String className, String methodName, List<AnalyzedClass> analyzedClasses) {
 
         AnalyzedClass matchingClass = null;
         for (AnalyzedClass ac : analyzedClasses) {
@@ -81,7 +94,7 @@ public class CodeSmellParser {
         if (matchingClass != null) {
             AnalyzedMethod matchingMethod = null;
             for (AnalyzedMethod am : matchingClass.getMethods()) {
-                if (am.getMethodDeclaration().getNameAsString().equals(methodName)) {
+                if (am.getSimpleName().equals(methodName)) {
                     matchingMethod = am;
                     break;
                 }
@@ -34,6 +34,14 @@ public  class CognitiveComplexityVisitor extends VoidVisitorAdapter<Void> {
         super.visit(n, arg);
     }
 
+    /**
+     * Visita il solo corpo di un metodo (fallback del motore AST), con il nome usato per riconoscere la ricorsione.
+     */
+    public void visitBody(String methodName, BlockStmt body) {
+        this.methodName = methodName;
+        body.accept(this, null);
+    }
+
     // Strutture di Nesting: +1 + nesting
     @Override
     public void visit(IfStmt n, Void arg) {
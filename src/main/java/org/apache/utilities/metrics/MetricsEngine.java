@@ -0,0 +1,27 @@
+package org.apache.utilities.metrics;
+
+import org.apache.logging.Printer;
+import org.apache.utilities.RunConfig;
+
+/**
+ * Motore usato per estrarre metodi e metriche statiche da un file sorgente.
+ * AST: parsing completo con JavaParser (default, include la Cognitive Complexity).
+ * TOKEN: scanner lessicale senza AST ({@link TokenMetricScanner}), molto più veloce.
+ * Si seleziona per run con METRICS_ENGINE=AST|TOKEN.
+ */
+public enum MetricsEngine {
+    AST,
+    TOKEN;
+
+    public static final String ENGINE_KEY = "METRICS_ENGINE";
+
+    public static MetricsEngine fromConfig() {
+        String value = RunConfig.getString(ENGINE_KEY, AST.name());
+        try {
+            return MetricsEngine.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Printer.printYellow("Motore metriche sconosciuto '" + value + "'. Uso AST.");
+            return AST;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.apache.utilities.metrics;
+
+import org.apache.controller.milestone1.MetricsController;
+import org.apache.logging.Printer;
+import org.apache.model.AnalyzedClass;
+import org.apache.model.AnalyzedMethod;
+import org.apache.model.MethodMetrics;
+import org.apache.model.Release;
+import org.apache.utilities.RunConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Confronto fra il motore AST (JavaParser) e lo scanner lessicale TOKEN.
+ * Per ogni file Java calcola le metriche con entrambi i motori, accoppia i metodi per firma
+ * e riporta la percentuale di valori identici e lo scarto medio per metrica, oltre ai tempi.
+ * Uso: MetricsEngineComparison [file o cartelle...] (default: i sorgenti in refactor/ dei due progetti
+ * oppure il clone locale del progetto, es. ~/repo/bookkeeper).
+ */
+public class MetricsEngineComparison {
+
+    private static final String[] DEFAULT_INPUTS = {"refactor", "storm/refactor", "bookkeeper/refactor"};
+    private static final String[] METRICS = {"LOC", "ParameterCount", "CycloComplexity", "NestingDepth"};
+
+    private MetricsEngineComparison() {}
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = collectJavaFiles(args.length > 0 ? args : DEFAULT_INPUTS);
+        if (files.isEmpty()) {
+            Printer.errorPrint("Nessun file Java trovato da confrontare.");
+            return;
+        }
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (Path file : files) {
+            sources.put(file.toString(), Files.readString(file));
+        }
+        Printer.printlnBlue("Confronto motori metriche su " + sources.size() + " file...");
+
+        int rounds = Math.max(1, RunConfig.getInt("COMPARISON_ROUNDS", 3));
+        Release release = new Release("0", "comparison", "2000-01-01");
+
+        List<AnalyzedClass> astClasses = null;
+        List<AnalyzedClass> tokenClasses = null;
+        long astNanos = Long.MAX_VALUE;
+        long tokenNanos = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            astClasses = analyze(sources, release, MetricsEngine.AST);
+            astNanos = Math.min(astNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            tokenClasses = analyze(sources, release, MetricsEngine.TOKEN);
+            tokenNanos = Math.min(tokenNanos, System.nanoTime() - start);
+        }
+
+        report(astClasses, tokenClasses);
+        Printer.printlnGreen(String.format("Tempo migliore su %d round: AST %.1f ms, TOKEN %.1f ms (speedup %.1fx)",
+                rounds, astNanos / 1e6, tokenNanos / 1e6, (double) astNanos / Math.max(1, tokenNanos)));
+    }
+
+    private static List<AnalyzedClass> analyze(Map<String, String> sources, Release release, MetricsEngine engine) {
+        List<AnalyzedClass> classes = new ArrayList<>(sources.size());
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            String name = source.getKey();
+            classes.add(new AnalyzedClass(name, source.getValue(), release, "", name, engine));
+        }
+        new MetricsController(classes, null).processMetrics();
+        return classes;
+    }
+
+    private static void report(List<AnalyzedClass> astClasses, List<AnalyzedClass> tokenClasses) {
+        long[] equal = new long[METRICS.length];
+        long[] absDiff = new long[METRICS.length];
+        int matched = 0;
+        int onlyAst = 0;
+        int onlyToken = 0;
+
+        for (int i = 0; i < astClasses.size(); i++) {
+            Map<String, Deque<AnalyzedMethod>> tokenBySignature = new HashMap<>();
+            for (AnalyzedMethod am : tokenClasses.get(i).getMethods()) {
+                tokenBySignature.computeIfAbsent(am.getSignature(), k -> new ArrayDeque<>()).add(am);
+            }
+            for (AnalyzedMethod astMethod : astClasses.get(i).getMethods()) {
+                Deque<AnalyzedMethod> candidates = tokenBySignature.get(astMethod.getSignature());
+                AnalyzedMethod tokenMethod = candidates == null ? null : candidates.poll();
+                if (tokenMethod == null) {
+                    onlyAst++;
+                    Printer.print("Solo AST: " + astClasses.get(i).getClassName() + "/" + astMethod.getSignature() + "\n");
+                    continue;
+                }
+                matched++;
+                long[] a = values(astMethod.getMetrics());
+                long[] t = values(tokenMethod.getMetrics());
+                for (int m = 0; m < METRICS.length; m++) {
+                    if (a[m] == t[m]) equal[m]++;
+                    absDiff[m] += Math.abs(a[m] - t[m]);
+                }
+            }
+            for (Deque<AnalyzedMethod> rest : tokenBySignature.values()) {
+                for (AnalyzedMethod am : rest) {
+                    onlyToken++;
+                    Printer.print("Solo TOKEN: " + tokenClasses.get(i).getClassName() + "/" + am.getSignature() + "\n");
+                }
+            }
+        }
+
+        Printer.printlnBlue(String.format("Metodi accoppiati: %d, solo AST: %d, solo TOKEN: %d", matched, onlyAst, onlyToken));
+        for (int m = 0; m < METRICS.length; m++) {
+            double agreement = matched == 0 ? 0.0 : 100.0 * equal[m] / matched;
+            double meanDiff = matched == 0 ? 0.0 : (double) absDiff[m] / matched;
+            Printer.printlnBlue(String.format("%-16s identici: %6.2f%%  scarto medio: %.3f", METRICS[m], agreement, meanDiff));
+        }
+    }
+
+    private static long[] values(MethodMetrics mm) {
+        return new long[]{mm.getLoc(), mm.getParameterCount(), mm.getCycloComplexity(), mm.getNestingDepth()};
+    }
+
+    private static List<Path> collectJavaFiles(String[] inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : inputs) {
+            Path path = Paths.get(input);
+            if (Files.isRegularFile(path) && input.endsWith(".java")) {
+                files.add(path);
+            } else if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(p -> p.toString().endsWith(".java"))
+                            .filter(p -> !p.toString().contains("/src/test/"))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -3,6 +3,7 @@ package org.apache.utilities.metrics;
 
 import org.apache.logging.Printer;
 import org.apache.model.Release;
+import org.apache.utilities.BlockGzipFile;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -12,6 +13,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Comparator;
 import java.util.List;
 
@@ -29,6 +33,7 @@ public class NumOfCodeSmells {
     private final List<Release> releases;
     private final String originalBranch;
     private static final String PMD_RESULTS="PMD ha terminato con successo per la release ";
+    private static final String FILE_ELEMENT = "<file name=\"";
 
     /**
      * Costruttore per l'orchestratore di analisi PMD.
@@ -90,7 +95,7 @@ public class NumOfCodeSmells {
         // CAMBIA QUI L'ESTENSIONE DEL FILE DI REPORT
         String reportPath = PMD_ANALYSIS_BASE_DIR + File.separator + this.project + File.separator + releaseId + ".xml";
 
-        if (new File(reportPath).exists()) {
+        if (Files.exists(BlockGzipFile.resolve(Paths.get(reportPath)))) {
             Printer.print("Report PMD (XML) per la release " + releaseId + " già esistente. Salto l'analisi.\n");
             return;
         }
@@ -156,6 +161,9 @@ public class NumOfCodeSmells {
                                         ". Output di PMD:\n" + pmdOutput + "\n"
                         );
             }
+            if ((exitCode == 0 || exitCode == 4) && BlockGzipFile.compressionEnabled()) {
+                compressReport(Paths.get(reportPath));
+            }
 
 
         } catch (GitAPIException e) {
@@ -167,6 +175,39 @@ public class NumOfCodeSmells {
         }
     }
 
+    /**
+     * Sostituisce il report XML con la versione compressa a blocchi: ogni elemento {@code <file name="...">}
+     * è indicizzato con il nome del file, così si può decomprimere solo il blocco che lo contiene.
+     */
+    private static void compressReport(Path report) {
+        if (!Files.exists(report)) return;
+        Path compressed = BlockGzipFile.compressedPath(report);
+        try {
+            BlockGzipFile.compress(report, compressed, NumOfCodeSmells::reportBlockKey);
+            long before = Files.size(report);
+            long after = Files.size(compressed);
+            Files.delete(report);
+            Printer.print(String.format("Report PMD compresso: %s (%d KB -> %d KB)%n", compressed, before / 1024, after / 1024));
+        } catch (IOException e) {
+            // Si tiene il report in chiaro e si scarta il .gz incompleto, che altrimenti risulterebbe più recente
+            Printer.printYellow("Compressione del report PMD non riuscita, resta il file in chiaro: " + e.getMessage());
+            try {
+                Files.deleteIfExists(compressed);
+                Files.deleteIfExists(BlockGzipFile.indexPath(compressed));
+            } catch (IOException ignored) {
+                // il file in chiaro è comunque presente
+            }
+        }
+    }
+
+    private static String reportBlockKey(String line) {
+        String trimmed = line.stripLeading();
+        if (!trimmed.startsWith(FILE_ELEMENT)) return null;
+        int end = trimmed.indexOf('"', FILE_ELEMENT.length());
+        String key = end < 0 ? null : trimmed.substring(FILE_ELEMENT.length(), end);
+        return key == null || key.indexOf('\t') >= 0 ? null : key;
+    }
+
     private Process buildPmdProcess(String reportPath) throws IOException {
         String pmdHome = System.getenv("PMD_HOME");
         if (pmdHome == null || pmdHome.isEmpty()) {
@@ -0,0 +1,1005 @@
+package org.apache.utilities.metrics;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scanner lessicale per il calcolo delle metriche di metodo senza costruire un AST.
+ * Tokenizza il sorgente direttamente sulla String (niente sottostringhe per token),
+ * tiene traccia delle graffe con uno stack di interi riutilizzato e replica le regole di
+ * MetricsController/NestingVisitor: LOC, numero di parametri, punti di decisione
+ * ciclomatici e profondità di annidamento.
+ * Viene usato come motore alternativo (METRICS_ENGINE=TOKEN) e come fallback quando
+ * JavaParser rifiuta un file. Non è thread-safe: usare {@link #forCurrentThread()}.
+ */
+public class TokenMetricScanner {
+
+    private static final ThreadLocal<TokenMetricScanner> LOCAL = ThreadLocal.withInitial(TokenMetricScanner::new);
+
+    // Tipi di token
+    private static final int T_EOF = 0;
+    private static final int T_IDENT = 1;
+    private static final int T_LITERAL = 2;
+    private static final int T_OP = 3;
+
+    // Operatori composti riconosciuti (gli altri sono il singolo carattere)
+    private static final int OP_AND = 256;
+    private static final int OP_OR = 257;
+    private static final int OP_ARROW = 258;
+    private static final int OP_ELLIPSIS = 259;
+    private static final int OP_COLONS = 260;
+
+    // Keyword rilevanti
+    private static final int KW_NONE = 0;
+    private static final int KW_IF = 1;
+    private static final int KW_ELSE = 2;
+    private static final int KW_FOR = 3;
+    private static final int KW_WHILE = 4;
+    private static final int KW_DO = 5;
+    private static final int KW_SWITCH = 6;
+    private static final int KW_CASE = 7;
+    private static final int KW_DEFAULT = 8;
+    private static final int KW_TRY = 9;
+    private static final int KW_CATCH = 10;
+    private static final int KW_FINALLY = 11;
+    private static final int KW_CLASS = 12;
+    private static final int KW_NEW = 13;
+    private static final int KW_TYPE = 14;      // void e tipi primitivi
+    private static final int KW_MODIFIER = 15;
+    private static final int KW_FINAL = 16;
+    private static final int KW_RETURN = 17;
+    private static final int KW_OTHER = 18;
+    private static final int KW_THROWS = 19;
+
+    private static final String[][] KEYWORDS_BY_LENGTH = new String[13][];
+    private static final int[][] KEYWORD_IDS_BY_LENGTH = new int[13][];
+
+    static {
+        Object[][] table = {
+                {"if", KW_IF}, {"do", KW_DO},
+                {"for", KW_FOR}, {"try", KW_TRY}, {"new", KW_NEW}, {"int", KW_TYPE},
+                {"else", KW_ELSE}, {"case", KW_CASE}, {"enum", KW_CLASS}, {"void", KW_TYPE}, {"byte", KW_TYPE},
+                {"char", KW_TYPE}, {"long", KW_TYPE}, {"this", KW_OTHER}, {"goto", KW_OTHER},
+                {"while", KW_WHILE}, {"catch", KW_CATCH}, {"class", KW_CLASS}, {"final", KW_FINAL},
+                {"float", KW_TYPE}, {"short", KW_TYPE}, {"throw", KW_OTHER}, {"break", KW_OTHER},
+                {"super", KW_OTHER}, {"yield", KW_RETURN}, {"const", KW_OTHER},
+                {"assert", KW_OTHER},
+                {"switch", KW_SWITCH}, {"return", KW_RETURN}, {"double", KW_TYPE}, {"static", KW_MODIFIER},
+                {"public", KW_MODIFIER}, {"native", KW_MODIFIER}, {"throws", KW_THROWS}, {"import", KW_OTHER},
+                {"sealed", KW_MODIFIER},
+                {"default", KW_DEFAULT}, {"finally", KW_FINALLY}, {"boolean", KW_TYPE}, {"private", KW_MODIFIER},
+                {"package", KW_OTHER}, {"extends", KW_OTHER},
+                {"abstract", KW_MODIFIER}, {"volatile", KW_MODIFIER}, {"strictfp", KW_MODIFIER},
+                {"continue", KW_OTHER},
+                {"interface", KW_CLASS}, {"protected", KW_MODIFIER}, {"transient", KW_MODIFIER},
+                {"instanceof", KW_OTHER}, {"implements", KW_OTHER},
+                {"synchronized", KW_MODIFIER}
+        };
+        for (int len = 0; len < KEYWORDS_BY_LENGTH.length; len++) {
+            List<String> words = new ArrayList<>();
+            List<Integer> ids = new ArrayList<>();
+            for (Object[] entry : table) {
+                if (((String) entry[0]).length() == len) {
+                    words.add((String) entry[0]);
+                    ids.add((Integer) entry[1]);
+                }
+            }
+            KEYWORDS_BY_LENGTH[len] = words.toArray(new String[0]);
+            KEYWORD_IDS_BY_LENGTH[len] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // Tipi di frame (graffe aperte)
+    private static final int F_BLOCK = 0;
+    private static final int F_CLASS = 1;
+    private static final int F_METHOD = 2;
+    private static final int F_LAMBDA = 3;
+    private static final int F_IF = 4;
+    private static final int F_ELSE = 5;
+    private static final int F_LOOP = 6;
+    private static final int F_DO = 7;
+    private static final int F_SWITCH = 8;
+    private static final int F_SWITCH_EXPR = 9;
+    private static final int F_TRY = 10;
+    private static final int F_CATCH = 11;
+    private static final int F_FINALLY = 12;
+
+    /**
+     * Metriche di un singolo metodo trovato dallo scanner.
+     */
+    @Getter
+    public static class MethodScan {
+        private final String simpleName;
+        private final String signature;
+        private final int parameterCount;
+        private final int startLine;
+        private int endLine;
+        private int loc;
+        private int cycloComplexity;
+        private int nestingDepth;
+        private boolean hasBody;
+        // Offset nel sorgente del corpo, dalla graffa di apertura a quella di chiusura inclusa
+        private int bodyStart = -1;
+        private int bodyEnd = -1;
+
+        MethodScan(String simpleName, String signature, int parameterCount, int startLine) {
+            this.simpleName = simpleName;
+            this.signature = signature;
+            this.parameterCount = parameterCount;
+            this.startLine = startLine;
+            this.endLine = startLine;
+            this.cycloComplexity = 1;
+        }
+    }
+
+    // --- Stato del tokenizer ---
+    private String src;
+    private int length;
+    private int pos;
+    private int line;
+    private int codeLines;
+    private int lastCodeLine;
+
+    private int tokType;
+    private int tokStart;
+    private int tokEnd;
+    private int tokOp;
+    private int tokKw;
+    private int tokLine;
+
+    // --- Stack dei frame (array riutilizzati fra le chiamate) ---
+    private int[] frameKind = new int[64];
+    private int[] frameWeight = new int[64];
+    private int[] frameLabels = new int[64];
+    private int[] frameParen = new int[64];
+    private int[] frameNameStart = new int[64];
+    private int[] frameNameEnd = new int[64];
+    private int top;
+    private int controlDepth;
+    private int parenDepth;
+
+    // --- Stack dei metodi aperti ---
+    private MethodScan[] methodScan = new MethodScan[16];
+    private int[] methodBaseDepth = new int[16];
+    private int[] methodMaxDepth = new int[16];
+    private int[] methodLocStart = new int[16];
+    private int methodTop;
+
+    private final StringBuilder signatureBuffer = new StringBuilder(128);
+
+    public static TokenMetricScanner forCurrentThread() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Analizza un file sorgente e restituisce i metodi trovati (nell'ordine di apertura).
+     */
+    public List<MethodScan> scan(String source) {
+        List<MethodScan> result = new ArrayList<>();
+        if (source == null || source.isEmpty()) return result;
+        reset(source);
+        new Pass(result).run();
+        src = null;
+        Arrays.fill(methodScan, null);
+        return result;
+    }
+
+    private void reset(String source) {
+        src = source;
+        length = source.length();
+        pos = 0;
+        line = 1;
+        codeLines = 0;
+        lastCodeLine = 0;
+        top = 0;
+        frameKind[0] = F_BLOCK;
+        frameWeight[0] = 0;
+        controlDepth = 0;
+        parenDepth = 0;
+        methodTop = -1;
+    }
+
+    /**
+     * Stato del singolo passaggio di parsing (token precedenti, costrutti in attesa della graffa).
+     */
+    private final class Pass {
+        private final List<MethodScan> result;
+
+        private int prevType = T_EOF;
+        private int prevOp;
+        private int prevKw;
+        private boolean prevTypeish;
+
+        // Classe in attesa della graffa di apertura
+        private boolean pendingClass;
+        private int pendingClassNameStart = -1;
+        private int pendingClassNameEnd = -1;
+        private boolean maybeRecord;
+        private boolean expectClassName;
+
+        // Classe anonima: new X(...) {
+        private int newParen = -1;
+        private int newTop = -1;
+        private boolean anonCandidate;
+
+        // Candidato metodo
+        private int candidateNameStart = -1;
+        private int candidateNameEnd = -1;
+        private int previousCandidate = -1;
+        private int candidateLine;
+        private boolean inParams;
+        private int paramsParen;
+        private int paramsAngle;
+        private int paramCount;
+        private boolean paramHasTokens;
+        private int paramTypeEnd;
+        private int genericStart = -1;
+        private int pendingGenericCut = -1;
+        private boolean paramPrevWord;
+        private boolean skippingAnnotation;
+        private int annotationParen = -1;
+        private boolean awaitingBody;
+        private int awaitingTop;
+        private String awaitingName;
+        private String awaitingSignature;
+        private int awaitingParams;
+        private int awaitingLine;
+
+        // Costrutto di controllo in attesa del corpo
+        private int pendingKind = -1;
+        private int pendingWeight;
+        private int pendingTop;
+        private int pendingParen;
+        private boolean pendingHeaderClosed;
+        private int unbracedExtra;
+        // Peso (profondità aggiunta) dell'ultimo if/try chiuso, per else e catch/finally
+        private int lastIfWeight = -1;
+        private int lastTryWeight = -1;
+        private int lastClosedKind = -1;
+
+        // Etichette case
+        private boolean inCaseLabel;
+        private boolean caseArrow;
+        private boolean prevCaseArrow;
+
+        Pass(List<MethodScan> result) {
+            this.result = result;
+        }
+
+        void run() {
+            while (nextToken() != T_EOF) {
+                handleToken();
+                prevType = tokType;
+                prevOp = tokOp;
+                prevKw = tokKw;
+                prevTypeish = (tokType == T_IDENT && (tokKw == KW_NONE || tokKw == KW_TYPE))
+                        || (tokType == T_OP && (tokOp == '>' || tokOp == ']'));
+            }
+            while (methodTop >= 0) {
+                closeMethod(line);
+            }
+        }
+
+        private void handleToken() {
+            int savedIfWeight = lastIfWeight;
+            int savedTryWeight = lastTryWeight;
+            int savedClosedKind = lastClosedKind;
+            lastIfWeight = -1;
+            lastTryWeight = -1;
+            lastClosedKind = -1;
+
+            if (inParams) {
+                handleParamToken();
+                return;
+            }
+            if (awaitingBody && handleAwaitingBody()) {
+                return;
+            }
+
+            boolean wasAnonCandidate = anonCandidate;
+            boolean wasMaybeRecord = maybeRecord;
+            boolean wasCaseArrow = caseArrow;
+            anonCandidate = false;
+            maybeRecord = false;
+            caseArrow = false;
+            prevCaseArrow = wasCaseArrow;
+            previousCandidate = candidateNameStart;
+            candidateNameStart = -1;
+
+            if (tokType == T_IDENT) {
+                handleIdentifier(savedIfWeight, savedTryWeight, savedClosedKind, wasMaybeRecord);
+                return;
+            }
+            if (tokType != T_OP) {
+                return;
+            }
+            switch (tokOp) {
+                case '{' -> openBrace(wasAnonCandidate, wasCaseArrow);
+                case '}' -> closeBrace();
+                case '(' -> openParen();
+                case ')' -> closeParen();
+                case ';' -> semicolon();
+                case ':' -> endCaseLabel(false);
+                case OP_ARROW -> endCaseLabel(true);
+                case OP_AND, OP_OR -> addDecision(1);
+                default -> { /* altri operatori non rilevanti */ }
+            }
+        }
+
+        // ---------------- identificatori e keyword ----------------
+
+        private void handleIdentifier(int savedIfWeight, int savedTryWeight, int savedClosedKind, boolean wasMaybeRecord) {
+            boolean afterDot = prevType == T_OP && (prevOp == '.' || prevOp == OP_COLONS);
+            if (afterDot) {
+                return;
+            }
+            if (expectClassName) {
+                expectClassName = false;
+                pendingClassNameStart = tokStart;
+                pendingClassNameEnd = tokEnd;
+                return;
+            }
+            if (wasMaybeRecord) {
+                if (tokKw == KW_NONE) {
+                    pendingClass = true;
+                    pendingClassNameStart = tokStart;
+                    pendingClassNameEnd = tokEnd;
+                    return;
+                }
+            }
+            switch (tokKw) {
+                case KW_NONE -> handlePlainIdentifier();
+                case KW_CLASS -> {
+                    pendingClass = true;
+                    expectClassName = true;
+                }
+                case KW_NEW -> {
+                    newParen = parenDepth;
+                    newTop = top;
+                }
+                case KW_IF -> controlKeyword(F_IF, prevKw == KW_ELSE && prevType == T_IDENT ? 0 : -1);
+                case KW_ELSE -> controlElse(savedIfWeight);
+                case KW_FOR -> controlKeyword(F_LOOP, -1);
+                case KW_WHILE -> {
+                    if (savedClosedKind != F_DO) {
+                        controlKeyword(F_LOOP, -1);
+                    }
+                }
+                case KW_DO -> controlKeyword(F_DO, -1);
+                case KW_SWITCH -> controlKeyword(isExpressionPosition() ? F_SWITCH_EXPR : F_SWITCH, -1);
+                case KW_TRY -> controlKeyword(F_TRY, -1);
+                case KW_CATCH -> controlKeyword(F_CATCH, Math.max(savedTryWeight, 1));
+                case KW_FINALLY -> controlKeyword(F_FINALLY, Math.max(savedTryWeight, 1));
+                case KW_CASE -> caseLabel();
+                case KW_DEFAULT -> {
+                    if (innermostSwitch() >= 0) caseLabel();
+                }
+                default -> { /* modificatori, tipi primitivi e altre keyword */ }
+            }
+        }
+
+        private void handlePlainIdentifier() {
+            boolean classBody = frameKind[top] == F_CLASS || top == 0;
+            if (classBody && tokLength() == 6 && src.regionMatches(tokStart, "record", 0, 6)) {
+                maybeRecord = true;
+            }
+            // Metodi (preceduti da un tipo) e costruttori (stesso nome della classe, scartati in emitMethod)
+            if (frameKind[top] == F_CLASS && parenDepth == 0 && (prevTypeish || isConstructorPosition())) {
+                candidateNameStart = tokStart;
+                candidateNameEnd = tokEnd;
+                candidateLine = tokLine;
+            }
+        }
+
+        private boolean isExpressionPosition() {
+            if (prevType == T_IDENT) {
+                return prevKw == KW_RETURN;
+            }
+            return prevType == T_OP && (prevOp == '=' || prevOp == '(' || prevOp == ',' || prevOp == '?'
+                    || (prevOp == OP_ARROW && !prevCaseArrow) || prevOp == '+');
+        }
+
+        // ---------------- costrutti di controllo ----------------
+
+        private boolean pendingInBody() {
+            return pendingKind >= 0 && pendingHeaderClosed && pendingTop == top && parenDepth == pendingParen;
+        }
+
+        /** Profondità aggiunta da un corpo senza graffe che contiene il token corrente. */
+        private int unbracedDepth() {
+            boolean enclosing = pendingKind >= 0 && pendingHeaderClosed && pendingTop == top && parenDepth >= pendingParen;
+            return enclosing ? unbracedExtra + pendingWeight : 0;
+        }
+
+        /**
+         * Registra un costrutto di controllo in attesa del suo corpo.
+         * @param base per else-if il segnale 0, per catch/finally il peso del try; -1 altrimenti
+         */
+        private void controlKeyword(int kind, int base) {
+            if (methodTop < 0) return;
+            int weight;
+            if (kind == F_IF && base == 0 && pendingKind == F_ELSE && pendingTop == top) {
+                // else if: l'if annidato nell'else aggiunge un livello al peso dell'if precedente
+                weight = pendingWeight + 1;
+                unbracedExtra = 0;
+            } else {
+                if (pendingInBody()) {
+                    unbracedExtra += pendingWeight;
+                } else {
+                    unbracedExtra = 0;
+                }
+                weight = switch (kind) {
+                    case F_CATCH -> base + 1;
+                    case F_FINALLY -> base;
+                    case F_SWITCH_EXPR -> 0;
+                    default -> 1;
+                };
+                if (kind == F_CATCH || kind == F_FINALLY) {
+                    unbracedExtra = 0;
+                }
+            }
+            if (kind == F_IF || kind == F_LOOP || kind == F_CATCH) {
+                addDecision(1);
+            }
+            pendingKind = kind;
+            pendingWeight = weight;
+            pendingTop = top;
+            pendingParen = parenDepth;
+            pendingHeaderClosed = kind == F_DO || kind == F_TRY || kind == F_FINALLY;
+            if (kind != F_FINALLY && weight > 0) {
+                updateDepth(controlDepth + unbracedExtra + weight);
+            }
+        }
+
+        private void controlElse(int savedIfWeight) {
+            if (methodTop < 0) return;
+            unbracedExtra = 0;
+            pendingKind = F_ELSE;
+            pendingWeight = Math.max(savedIfWeight, 1);
+            pendingTop = top;
+            pendingParen = parenDepth;
+            pendingHeaderClosed = true;
+        }
+
+        private void clearPending() {
+            pendingKind = -1;
+            unbracedExtra = 0;
+        }
+
+        private void caseLabel() {
+            int sw = innermostSwitch();
+            if (sw < 0) return;
+            if (frameKind[sw] == F_SWITCH) {
+                frameLabels[sw]++;
+            }
+            inCaseLabel = true;
+        }
+
+        private void endCaseLabel(boolean arrow) {
+            if (inCaseLabel) {
+                inCaseLabel = false;
+                caseArrow = arrow;
+            }
+        }
+
+        private int innermostSwitch() {
+            for (int i = top; i > 0; i--) {
+                int kind = frameKind[i];
+                if (kind == F_SWITCH || kind == F_SWITCH_EXPR) return i;
+                if (kind == F_METHOD || kind == F_CLASS || kind == F_LAMBDA) return -1;
+            }
+            return -1;
+        }
+
+        // ---------------- graffe ----------------
+
+        private void openBrace(boolean wasAnonCandidate, boolean wasCaseArrow) {
+            int kind;
+            int weight = 0;
+            boolean lambdaArrow = prevType == T_OP && prevOp == OP_ARROW && !wasCaseArrow;
+            boolean arrayInitializer = prevType == T_OP && (prevOp == '=' || prevOp == ']' || prevOp == ',');
+
+            if (wasAnonCandidate || (pendingClass && !expectClassName)) {
+                kind = F_CLASS;
+                pendingClass = false;
+            } else if (pendingKind >= 0 && pendingTop == top && parenDepth == pendingParen) {
+                kind = pendingKind;
+                weight = pendingWeight + unbracedExtra;
+                clearPending();
+            } else if (lambdaArrow) {
+                kind = F_LAMBDA;
+                weight = methodTop >= 0 ? 1 + unbracedDepth() : 0;
+            } else if (frameKind[top] == F_CLASS && !arrayInitializer) {
+                // Corpo di costante enum o blocco di inizializzazione
+                kind = F_CLASS;
+            } else {
+                kind = F_BLOCK;
+                weight = unbracedDepth();
+            }
+            pushFrame(kind, weight);
+            if (kind == F_CLASS) {
+                frameNameStart[top] = pendingClassNameStart;
+                frameNameEnd[top] = pendingClassNameEnd;
+                pendingClassNameStart = -1;
+            }
+        }
+
+        private void pushFrame(int kind, int weight) {
+            top++;
+            if (top == frameKind.length) growFrames();
+            frameKind[top] = kind;
+            frameWeight[top] = weight;
+            frameLabels[top] = 0;
+            frameParen[top] = parenDepth;
+            frameNameStart[top] = -1;
+            frameNameEnd[top] = -1;
+            parenDepth = 0;
+            controlDepth += weight;
+            if (weight > 0) {
+                updateDepth(controlDepth);
+            }
+        }
+
+        private void closeBrace() {
+            if (top == 0) return;
+            int kind = frameKind[top];
+            controlDepth -= frameWeight[top];
+            if (kind == F_SWITCH) {
+                addDecision(Math.max(0, frameLabels[top] - 1));
+            }
+            if (kind == F_METHOD) {
+                closeMethod(tokLine);
+            }
+            if (kind == F_IF) {
+                lastIfWeight = frameWeight[top];
+            } else if (kind == F_TRY) {
+                lastTryWeight = frameWeight[top];
+            } else if (kind == F_CATCH) {
+                lastTryWeight = frameWeight[top] - 1;
+            }
+            lastClosedKind = kind;
+            parenDepth = frameParen[top];
+            top--;
+            if (pendingKind >= 0 && pendingTop > top) {
+                clearPending();
+            }
+        }
+
+        // ---------------- parentesi tonde e punto e virgola ----------------
+
+        private void openParen() {
+            if (previousCandidate >= 0 && prevType == T_IDENT && frameKind[top] == F_CLASS && parenDepth == 0) {
+                startParams();
+                return;
+            }
+            if (pendingKind == F_TRY && pendingTop == top && parenDepth == pendingParen) {
+                pendingHeaderClosed = false; // try-with-resources
+            }
+            parenDepth++;
+        }
+
+        private void closeParen() {
+            if (parenDepth > 0) parenDepth--;
+            if (pendingKind >= 0 && !pendingHeaderClosed && pendingTop == top && parenDepth == pendingParen) {
+                pendingHeaderClosed = true;
+            }
+            if (newParen >= 0 && newTop == top && parenDepth == newParen) {
+                anonCandidate = true;
+                newParen = -1;
+            }
+        }
+
+        private void semicolon() {
+            if (pendingInBody()) {
+                if (pendingKind == F_IF) {
+                    lastIfWeight = pendingWeight + unbracedExtra;
+                }
+                clearPending();
+            }
+            newParen = -1;
+            pendingClass = false;
+            expectClassName = false;
+        }
+
+        // ---------------- firma dei metodi ----------------
+
+        private void startParams() {
+            inParams = true;
+            paramsParen = parenDepth;
+            parenDepth++;
+            paramsAngle = 0;
+            paramCount = 0;
+            paramHasTokens = false;
+            paramPrevWord = false;
+            pendingGenericCut = -1;
+            skippingAnnotation = false;
+            annotationParen = -1;
+            signatureBuffer.setLength(0);
+            candidateNameStart = previousCandidate;
+            signatureBuffer.append(src, candidateNameStart, candidateNameEnd).append('(');
+            paramTypeEnd = signatureBuffer.length();
+        }
+
+        private void handleParamToken() {
+            if (tokType == T_OP && tokOp == '(') {
+                if (skippingAnnotation && annotationParen < 0 && parenDepth == paramsParen + 1) {
+                    annotationParen = parenDepth;
+                }
+                parenDepth++;
+                return;
+            }
+            if (tokType == T_OP && tokOp == ')') {
+                parenDepth--;
+                if (annotationParen >= 0 && parenDepth == annotationParen) {
+                    annotationParen = -1;
+                    skippingAnnotation = false;
+                    return;
+                }
+                if (parenDepth == paramsParen) {
+                    finishParam();
+                    signatureBuffer.append(')');
+                    inParams = false;
+                    awaitingBody = true;
+                    awaitingTop = top;
+                    awaitingName = src.substring(candidateNameStart, candidateNameEnd);
+                    awaitingSignature = signatureBuffer.toString();
+                    awaitingParams = paramCount;
+                    awaitingLine = candidateLine;
+                    candidateNameStart = -1;
+                }
+                return;
+            }
+            if (parenDepth > paramsParen + 1 || annotationParen >= 0) {
+                return; // argomenti di annotazioni
+            }
+            if (skippingAnnotation) {
+                boolean annotationName = tokType == T_IDENT || (tokType == T_OP && tokOp == '.');
+                if (annotationName) return;
+                skippingAnnotation = false;
+            }
+            if (tokType == T_OP && tokOp == '@') {
+                skippingAnnotation = true;
+                return;
+            }
+            if (pendingGenericCut >= 0) {
+                // Come JavaParser, gli argomenti generici restano nella firma solo per i tipi array
+                boolean arrayType = tokType == T_OP && (tokOp == '[' || tokOp == OP_ELLIPSIS);
+                if (!arrayType) signatureBuffer.setLength(pendingGenericCut);
+                pendingGenericCut = -1;
+            }
+            if (tokType == T_OP && tokOp == '<') {
+                if (paramsAngle == 0) genericStart = signatureBuffer.length();
+                paramsAngle++;
+                signatureBuffer.append('<');
+                paramPrevWord = false;
+                return;
+            }
+            if (tokType == T_OP && tokOp == '>') {
+                if (paramsAngle > 0) {
+                    paramsAngle--;
+                    signatureBuffer.append('>');
+                    if (paramsAngle == 0) pendingGenericCut = genericStart;
+                }
+                paramPrevWord = false;
+                return;
+            }
+            if (paramsAngle > 0) {
+                appendTypeArgumentToken();
+                return;
+            }
+            if (tokType == T_OP && tokOp == ',') {
+                finishParam();
+                signatureBuffer.append(", ");
+                paramTypeEnd = signatureBuffer.length();
+                return;
+            }
+            if (tokType == T_IDENT && tokKw == KW_FINAL) return;
+            appendParamToken();
+        }
+
+        private void appendParamToken() {
+            if (!paramHasTokens) {
+                paramHasTokens = true;
+                paramCount++;
+            }
+            boolean word = tokType == T_IDENT;
+            if (word) {
+                // L'ultimo identificatore è il nome del parametro: lo tagliamo a fine parametro
+                paramTypeEnd = signatureBuffer.length();
+                if (paramPrevWord) signatureBuffer.append(' ');
+                signatureBuffer.append(src, tokStart, tokEnd);
+            } else if (tokOp == OP_ELLIPSIS) {
+                signatureBuffer.append("[]");
+            } else if (tokOp == '?') {
+                signatureBuffer.append('?');
+                word = true;
+            } else {
+                signatureBuffer.append(src, tokStart, tokEnd);
+            }
+            paramPrevWord = word;
+        }
+
+        private void appendTypeArgumentToken() {
+            boolean word = tokType == T_IDENT || (tokType == T_OP && tokOp == '?');
+            if (word && paramPrevWord) signatureBuffer.append(' ');
+            signatureBuffer.append(src, tokStart, tokEnd);
+            paramPrevWord = word;
+        }
+
+        private void finishParam() {
+            if (paramHasTokens) {
+                signatureBuffer.setLength(paramTypeEnd);
+            }
+            paramHasTokens = false;
+            paramPrevWord = false;
+        }
+
+        private boolean handleAwaitingBody() {
+            if (tokType == T_OP && tokOp == '{' && top == awaitingTop) {
+                awaitingBody = false;
+                openMethod();
+                return true;
+            }
+            if (tokType == T_OP && tokOp == ';') {
+                awaitingBody = false;
+                emitMethod().hasBody = false;
+                return false;
+            }
+            if (tokType == T_IDENT && tokKw == KW_DEFAULT) {
+                awaitingBody = false;
+                emitMethod().hasBody = false;
+                return true;
+            }
+            boolean throwsClause = (tokType == T_IDENT && (tokKw == KW_THROWS || tokKw == KW_NONE))
+                    || (tokType == T_OP && (tokOp == '.' || tokOp == ',' || tokOp == '[' || tokOp == ']' || tokOp == '@'));
+            if (!throwsClause) {
+                awaitingBody = false;
+                return false;
+            }
+            return true;
+        }
+
+        private MethodScan emitMethod() {
+            MethodScan ms = new MethodScan(awaitingName, awaitingSignature, awaitingParams, awaitingLine);
+            if (!isConstructorName()) {
+                result.add(ms);
+            }
+            return ms;
+        }
+
+        private boolean isConstructorName() {
+            int start = frameNameStart[top];
+            int end = frameNameEnd[top];
+            return start >= 0 && end - start == awaitingName.length()
+                    && src.regionMatches(start, awaitingName, 0, awaitingName.length());
+        }
+
+        private boolean isConstructorPosition() {
+            if (prevType == T_IDENT && prevKw == KW_NEW) return false;
+            int nameStart = frameNameStart[top];
+            int len = tokEnd - tokStart;
+            return nameStart >= 0 && frameNameEnd[top] - nameStart == len && src.regionMatches(nameStart, src, tokStart, len);
+        }
+
+        private void openMethod() {
+            MethodScan ms = emitMethod();
+            ms.hasBody = true;
+            ms.bodyStart = tokStart;
+            pushFrame(F_METHOD, 0);
+            methodTop++;
+            if (methodTop == methodScan.length) growMethods();
+            methodScan[methodTop] = ms;
+            methodBaseDepth[methodTop] = controlDepth;
+            methodMaxDepth[methodTop] = controlDepth;
+            // La riga della graffa di apertura è già stata contata
+            methodLocStart[methodTop] = codeLines - 1;
+            clearPending();
+        }
+
+        private void closeMethod(int closingLine) {
+            MethodScan ms = methodScan[methodTop];
+            ms.endLine = closingLine;
+            ms.bodyEnd = tokType == T_EOF ? length : tokEnd;
+            ms.loc = Math.max(0, codeLines - methodLocStart[methodTop]);
+            ms.nestingDepth = methodMaxDepth[methodTop] - methodBaseDepth[methodTop];
+            int childMax = methodMaxDepth[methodTop];
+            int childDecisions = ms.cycloComplexity - 1;
+            methodScan[methodTop] = null;
+            methodTop--;
+            if (methodTop >= 0) {
+                methodMaxDepth[methodTop] = Math.max(methodMaxDepth[methodTop], childMax);
+                methodScan[methodTop].cycloComplexity += childDecisions;
+            }
+        }
+
+        private void addDecision(int amount) {
+            if (methodTop >= 0 && amount > 0) {
+                methodScan[methodTop].cycloComplexity += amount;
+            }
+        }
+
+        private void updateDepth(int depth) {
+            if (methodTop >= 0 && depth > methodMaxDepth[methodTop]) {
+                methodMaxDepth[methodTop] = depth;
+            }
+        }
+    }
+
+    // ---------------- tokenizer ----------------
+
+    private int tokLength() {
+        return tokEnd - tokStart;
+    }
+
+    private int nextToken() {
+        skipWhitespaceAndComments();
+        if (pos >= length) {
+            tokType = T_EOF;
+            return T_EOF;
+        }
+        tokStart = pos;
+        tokLine = line;
+        tokKw = KW_NONE;
+        tokOp = 0;
+        if (line != lastCodeLine) {
+            lastCodeLine = line;
+            codeLines++;
+        }
+        char c = src.charAt(pos);
+        if (Character.isJavaIdentifierStart(c)) {
+            pos++;
+            while (pos < length && Character.isJavaIdentifierPart(src.charAt(pos))) pos++;
+            tokType = T_IDENT;
+            tokEnd = pos;
+            tokKw = keywordAt(tokStart, tokEnd - tokStart);
+        } else if (Character.isDigit(c) || (c == '.' && pos + 1 < length && Character.isDigit(src.charAt(pos + 1)))) {
+            readNumber();
+        } else if (c == '"') {
+            readString();
+        } else if (c == '\'') {
+            readQuoted('\'');
+        } else {
+            readOperator(c);
+        }
+        return tokType;
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (pos < length) {
+            char c = src.charAt(pos);
+            if (c == '\n') {
+                line++;
+                pos++;
+            } else if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+                pos++;
+            } else if (c == '/' && pos + 1 < length && src.charAt(pos + 1) == '/') {
+                while (pos < length && src.charAt(pos) != '\n') pos++;
+            } else if (c == '/' && pos + 1 < length && src.charAt(pos + 1) == '*') {
+                pos += 2;
+                while (pos < length && !(src.charAt(pos) == '*' && pos + 1 < length && src.charAt(pos + 1) == '/')) {
+                    if (src.charAt(pos) == '\n') line++;
+                    pos++;
+                }
+                pos = Math.min(length, pos + 2);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readNumber() {
+        while (pos < length) {
+            char c = src.charAt(pos);
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+                pos++;
+            } else if ((c == '+' || c == '-') && isExponentMarker(src.charAt(pos - 1))) {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        tokType = T_LITERAL;
+        tokEnd = pos;
+    }
+
+    private boolean isExponentMarker(char c) {
+        return c == 'e' || c == 'E' || c == 'p' || c == 'P';
+    }
+
+    private void readString() {
+        if (pos + 2 < length && src.charAt(pos + 1) == '"' && src.charAt(pos + 2) == '"') {
+            // Text block
+            pos += 3;
+            while (pos < length && !(src.charAt(pos) == '"' && pos + 2 < length
+                    && src.charAt(pos + 1) == '"' && src.charAt(pos + 2) == '"')) {
+                if (src.charAt(pos) == '\\') pos++;
+                else if (src.charAt(pos) == '\n') line++;
+                pos++;
+            }
+            pos = Math.min(length, pos + 3);
+            tokType = T_LITERAL;
+            tokEnd = pos;
+            return;
+        }
+        readQuoted('"');
+    }
+
+    private void readQuoted(char quote) {
+        pos++;
+        while (pos < length) {
+            char c = src.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == quote || c == '\n') {
+                pos++;
+                break;
+            } else {
+                pos++;
+            }
+        }
+        pos = Math.min(pos, length);
+        tokType = T_LITERAL;
+        tokEnd = pos;
+    }
+
+    private void readOperator(char c) {
+        tokType = T_OP;
+        char n = pos + 1 < length ? src.charAt(pos + 1) : '\0';
+        if (c == '&' && n == '&') {
+            tokOp = OP_AND;
+            pos += 2;
+        } else if (c == '|' && n == '|') {
+            tokOp = OP_OR;
+            pos += 2;
+        } else if (c == '-' && n == '>') {
+            tokOp = OP_ARROW;
+            pos += 2;
+        } else if (c == ':' && n == ':') {
+            tokOp = OP_COLONS;
+            pos += 2;
+        } else if (c == '.' && n == '.' && pos + 2 < length && src.charAt(pos + 2) == '.') {
+            tokOp = OP_ELLIPSIS;
+            pos += 3;
+        } else {
+            tokOp = c;
+            pos++;
+        }
+        tokEnd = pos;
+    }
+
+    private int keywordAt(int start, int len) {
+        if (len >= KEYWORDS_BY_LENGTH.length) return KW_NONE;
+        char first = src.charAt(start);
+        if (first < 'a' || first > 'y') return KW_NONE;
+        String[] words = KEYWORDS_BY_LENGTH[len];
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].charAt(0) == first && src.regionMatches(start, words[i], 0, len)) {
+                return KEYWORD_IDS_BY_LENGTH[len][i];
+            }
+        }
+        return KW_NONE;
+    }
+
+    // ---------------- crescita degli stack ----------------
+
+    private void growFrames() {
+        int size = frameKind.length * 2;
+        frameKind = Arrays.copyOf(frameKind, size);
+        frameWeight = Arrays.copyOf(frameWeight, size);
+        frameLabels = Arrays.copyOf(frameLabels, size);
+        frameParen = Arrays.copyOf(frameParen, size);
+        frameNameStart = Arrays.copyOf(frameNameStart, size);
+        frameNameEnd = Arrays.copyOf(frameNameEnd, size);
+    }
+
+    private void growMethods() {
+        int size = methodScan.length * 2;
+        methodScan = Arrays.copyOf(methodScan, size);
+        methodBaseDepth = Arrays.copyOf(methodBaseDepth, size);
+        methodMaxDepth = Arrays.copyOf(methodMaxDepth, size);
+        methodLocStart = Arrays.copyOf(methodLocStart, size);
+    }
+}
@@ -0,0 +1,224 @@
+package org.apache.utilities.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Codifica delle righe CSV in un buffer di caratteri riutilizzabile: numeri e testo vengono scritti
+ * direttamente nel buffer, senza creare stringhe intermedie per ogni campo.
+ * Il formato è identico a quello di String.valueOf / String.format(Locale.US, "%.2f") e all'escaping CSV
+ * usato in precedenza, quindi il file prodotto non cambia.
+ */
+public class CsvRowEncoder {
+
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+    // Oltre questa soglia (o vicino a un x.5 dopo la scala) si usa la formattazione esatta: sotto 1e9 il valore
+    // scalato per 100 ha ancora abbondanti bit frazionari e il suo errore resta entro pochi ulp
+    private static final double FAST_FORMAT_LIMIT = 1e9;
+    private static final double HALF_TOLERANCE = 1e-6;
+    private static final double HALF_TOLERANCE_ULPS = 8;
+
+    private char[] buffer;
+    private int length;
+    // Testi ricorrenti (es. nomi di release) già codificati
+    private final Map<String, char[]> encodedCache = new HashMap<>();
+
+    public CsvRowEncoder(int initialCapacity) {
+        this.buffer = new char[Math.max(64, initialCapacity)];
+    }
+
+    /**
+     * Versione già codificata di un testo, da riusare con appendRaw per valori costanti.
+     */
+    public static char[] escape(String value) {
+        CsvRowEncoder encoder = new CsvRowEncoder(value == null ? 0 : value.length() + 2);
+        encoder.appendEscaped(value);
+        return Arrays.copyOf(encoder.buffer, encoder.length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * Scrive il contenuto del buffer sul writer e lo svuota.
+     */
+    public void drainTo(Writer writer) throws IOException {
+        writer.write(buffer, 0, length);
+        length = 0;
+    }
+
+    public CsvRowEncoder comma() {
+        ensure(1);
+        buffer[length++] = ',';
+        return this;
+    }
+
+    public CsvRowEncoder endRow() {
+        ensure(LINE_SEPARATOR.length);
+        for (char c : LINE_SEPARATOR) {
+            buffer[length++] = c;
+        }
+        return this;
+    }
+
+    public CsvRowEncoder appendRaw(String value) {
+        int n = value.length();
+        ensure(n);
+        value.getChars(0, n, buffer, length);
+        length += n;
+        return this;
+    }
+
+    public CsvRowEncoder appendRaw(char[] value) {
+        ensure(value.length);
+        System.arraycopy(value, 0, buffer, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+    /**
+     * Testo ricorrente scritto così com'è, copiato da una cache per valore.
+     */
+    public CsvRowEncoder appendCachedRaw(String value) {
+        return appendRaw(encodedCache.computeIfAbsent(value, String::toCharArray));
+    }
+
+    /**
+     * Campo di testo con escaping CSV: fra virgolette (raddoppiate) se contiene virgole, virgolette o a capo.
+     */
+    public CsvRowEncoder appendEscaped(String value) {
+        if (value == null) return this;
+        if (!needsQuotes(value)) return appendRaw(value);
+        ensure(2);
+        buffer[length++] = '"';
+        appendQuotedContent(value);
+        ensure(1);
+        buffer[length++] = '"';
+        return this;
+    }
+
+    /**
+     * Come appendEscaped(first + separator + second), senza concatenare le stringhe.
+     */
+    public CsvRowEncoder appendEscaped(String first, char separator, String second) {
+        if (!needsQuotes(first) && !needsQuotes(second) && separator != ',' && separator != '"' && separator != '\n') {
+            appendRaw(first);
+            ensure(1);
+            buffer[length++] = separator;
+            return appendRaw(second);
+        }
+        ensure(2);
+        buffer[length++] = '"';
+        appendQuotedContent(first);
+        appendQuotedContent(String.valueOf(separator));
+        appendQuotedContent(second);
+        ensure(1);
+        buffer[length++] = '"';
+        return this;
+    }
+
+    public CsvRowEncoder appendLong(long value) {
+        if (value == Long.MIN_VALUE) return appendRaw(Long.toString(value));
+        ensure(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            buffer[length++] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        reverse(start, length - 1);
+        return this;
+    }
+
+    /**
+     * Numero con due decimali, identico a String.format(Locale.US, "%.2f", value).
+     * Il caso comune è solo aritmetica intera; i valori enormi, non finiti o a metà fra due centesimi
+     * (dove conta l'arrotondamento HALF_UP sulla rappresentazione decimale) passano dal Formatter.
+     */
+    public CsvRowEncoder appendFixed2(double value) {
+        double abs = Math.abs(value);
+        double scaled = abs * 100.0;
+        if (!fastFormat(abs, scaled)) {
+            return appendRaw(String.format(Locale.US, "%.2f", value));
+        }
+        // Anche -0.0 e i negativi arrotondati a zero vengono stampati con il segno, come fa il Formatter
+        if (value < 0 || (value == 0.0 && 1.0 / value < 0)) {
+            ensure(1);
+            buffer[length++] = '-';
+        }
+        long cents = Math.round(scaled);
+        appendLong(cents / 100);
+        long rest = cents % 100;
+        ensure(3);
+        buffer[length++] = '.';
+        buffer[length++] = (char) ('0' + rest / 10);
+        buffer[length++] = (char) ('0' + rest % 10);
+        return this;
+    }
+
+    /**
+     * Valore numerico che si ottiene rileggendo il testo scritto da appendFixed2.
+     */
+    public static double fixed2Value(double value) {
+        double abs = Math.abs(value);
+        double scaled = abs * 100.0;
+        if (!fastFormat(abs, scaled)) {
+            return Double.parseDouble(String.format(Locale.US, "%.2f", value));
+        }
+        return Math.copySign(Math.round(scaled) / 100.0, value);
+    }
+
+    /**
+     * Vero se arrotondare abs * 100 all'intero dà gli stessi centesimi del Formatter, che arrotonda HALF_UP la
+     * rappresentazione decimale più corta di value. Le due differiscono al massimo di un paio di ulp del valore
+     * scalato, quindi si esclude tutto ciò che è entro qualche ulp da un x.5.
+     */
+    private static boolean fastFormat(double abs, double scaled) {
+        if (!(abs < FAST_FORMAT_LIMIT)) return false;
+        double tolerance = Math.max(HALF_TOLERANCE, HALF_TOLERANCE_ULPS * Math.ulp(scaled));
+        return Math.abs(scaled - Math.floor(scaled) - 0.5) >= tolerance;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n') return true;
+        }
+        return false;
+    }
+
+    private void appendQuotedContent(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            ensure(2);
+            if (c == '"') buffer[length++] = '"';
+            buffer[length++] = c;
+        }
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            char tmp = buffer[from];
+            buffer[from++] = buffer[to];
+            buffer[to--] = tmp;
+        }
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
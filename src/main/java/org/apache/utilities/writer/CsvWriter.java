@@ -5,69 +5,107 @@ import org.apache.model.AnalyzedMethod;
 import org.apache.model.ClassMetrics;
 import org.apache.model.MethodMetrics;
 
+import org.apache.utilities.BlockGzipFile;
+import org.apache.utilities.dataset.DatasetSchema;
+
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
  * Scrive i risultati dell'analisi in un file CSV, con una riga per ogni metodo.
  * Questa versione è stata aggiornata per corrispondere esattamente alla struttura
  * della classe MethodMetrics e ai dati calcolati da MetricsController.
+ * Le righe sono codificate da un CsvRowEncoder riutilizzato e passate a un BufferedWriter grande;
+ * il file viene svuotato su disco solo dopo l'intestazione, con flush() e alla chiusura.
+ * In modalità compressa scrive &lt;file&gt;.gz in formato BlockGzipFile: ogni release è una chiave
+ * che inizia un blocco (o si aggiunge a quello corrente se è ancora piccolo), l'intestazione ha chiave vuota.
  */
 public class CsvWriter implements AutoCloseable {
     private final BufferedWriter writer;
-    private final Object writeLock = new Object();
+    // Scritture bloccanti sotto lock: ReentrantLock non blocca il carrier dei virtual thread come synchronized
+    private final ReentrantLock writeLock = new ReentrantLock();
     private volatile boolean isClosed = false;
     private final String targetName;
+    private static final int WRITER_BUFFER_SIZE = 1 << 20;
+    // Oltre questa dimensione l'encoder passa le righe al writer
+    private static final int ENCODER_DRAIN_THRESHOLD = 1 << 16;
+    private final CsvRowEncoder encoder = new CsvRowEncoder(ENCODER_DRAIN_THRESHOLD + 1024);
+    private final char[] escapedTargetName;
+    private final Path path;
+    // Solo in modalità compressa: writer dei blocchi e release del blocco corrente
+    private final BlockGzipFile.Writer blocks;
+    private String currentBlock;
 
 
 
     public CsvWriter(String fileName,String targetName) throws IOException {
-        this.writer = new BufferedWriter(new FileWriter(fileName));
+        this(fileName, targetName, false);
+    }
+
+    public CsvWriter(String fileName, String targetName, boolean compressed) throws IOException {
+        if (compressed) {
+            this.path = BlockGzipFile.compressedPath(Paths.get(fileName));
+            this.blocks = new BlockGzipFile.Writer(path);
+            this.writer = new BufferedWriter(new OutputStreamWriter(blocks, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+        } else {
+            this.path = Paths.get(fileName);
+            this.blocks = null;
+            this.writer = new BufferedWriter(new FileWriter(fileName), WRITER_BUFFER_SIZE);
+        }
         this.targetName = targetName;
+        this.escapedTargetName = CsvRowEncoder.escape(targetName);
+    }
+
+    /**
+     * File effettivamente scritto (con .gz in modalità compressa).
+     */
+    public Path getPath() {
+        return path;
     }
 
     /**
      * Scrive l'intestazione del file CSV. L'ordine è cruciale.
      */
     public void writeHeader() throws IOException {
-        synchronized (writeLock) {
+        writeLock.lock();
+        try {
             if (isClosed) throw new IllegalStateException("CsvWriter è già chiuso.");
 
-            // Header aggiornato per riflettere TUTTE le metriche calcolate in MethodMetrics.
-            String header = String.join(",",
-                    // Contesto
-                    "ProjectName","Release", "MethodName",
-                    // Metriche di Complessità
-                    "LOC", "ParameterCount", "CycloComplexity", "CognitiveComplexity", "NestingDepth",
-                    // Metriche Storiche
-                    "Revisions", "Authors",
-                    // Metriche di Cambiamento Dettagliate
-                    "TotalChurn", "MaxChurn", "AvgChurn", "NumberOfCodeSmells",
-                    // Etichetta
-                    "Bugginess"
-            );
+            // Colonne e ordine sono definiti in DatasetSchema, condiviso con il formato colonnare
+            String header = String.join(",", DatasetSchema.names());
             writer.write(header);
             writer.newLine();
             writer.flush();
+        } finally {
+            writeLock.unlock();
         }
     }
 
 
-    private String csvEscape(String value) {
-        if (value == null) return "";
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
+    /**
+     * Punto di flush esplicito: porta su disco le righe scritte finora.
+     */
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            if (!isClosed) writer.flush();
+        } finally {
+            writeLock.unlock();
         }
-        return value;
     }
 
     @Override
     public void close() throws IOException {
-        synchronized (writeLock) {
+        writeLock.lock();
+        try {
             if (!isClosed) {
                 try {
                     writer.flush();
@@ -76,55 +114,80 @@ public class CsvWriter implements AutoCloseable {
                     isClosed = true;
                 }
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     public void writeResultsForClass(List<AnalyzedClass> classes) throws IOException {
-        synchronized (writeLock) {
+        writeLock.lock();
+        try {
             if (isClosed) throw new IOException("Writer è già chiuso.");
 
             for (AnalyzedClass ac : classes) {
+                startReleaseBlock(ac.getRelease().getReleaseName());
                 // Per ogni classe, iteriamo sui suoi metodi
                 for (AnalyzedMethod am : ac.getMethods()) {
-                    // Costruiamo e scriviamo una riga per ogni metodo
-                    String row = buildHybridRowString(ac, am);
-                    writer.write(row);
-                    writer.newLine();
+                    // Codifichiamo una riga per ogni metodo
+                    encodeHybridRow(ac, am);
+                    if (encoder.length() >= ENCODER_DRAIN_THRESHOLD) {
+                        encoder.drainTo(writer);
+                    }
                 }
             }
-            writer.flush(); // Scrive i dati sul disco dopo aver processato la lista
+            encoder.drainTo(writer);
+        } finally {
+            writeLock.unlock();
         }
     }
 
 
-    private String buildHybridRowString(AnalyzedClass analyzedClass, AnalyzedMethod analyzedMethod) {
+    /**
+     * In modalità compressa segna l'inizio di una nuova release, così le sue righe iniziano in un blocco indicizzato con il suo nome.
+     */
+    private void startReleaseBlock(String releaseName) throws IOException {
+        if (blocks == null || releaseName.equals(currentBlock)) return;
+        encoder.drainTo(writer);
+        writer.flush();
+        blocks.startBlock(releaseName);
+        currentBlock = releaseName;
+    }
+
+    private void encodeHybridRow(AnalyzedClass analyzedClass, AnalyzedMethod analyzedMethod) {
         MethodMetrics methodMetrics = analyzedMethod.getMetrics();
         ClassMetrics cm = analyzedClass.getProcessMetrics();
-        String methodNameFormatted = analyzedClass.getClassName() + "/" + analyzedMethod.getSignature();
-
-        // Usiamo String.join per creare la riga CSV in modo pulito e sicuro
-        return String.join(",",
-                // Contesto
-                csvEscape(targetName),
-                String.valueOf(analyzedClass.getRelease().getReleaseName()),
-                csvEscape(methodNameFormatted),
-
-
-                String.valueOf(methodMetrics.getLoc()),
-                String.valueOf(methodMetrics.getParameterCount()),
-                String.valueOf(methodMetrics.getCycloComplexity()),
-                String.valueOf(methodMetrics.getCognitiveComplexity()),
-                String.valueOf(methodMetrics.getNestingDepth()),
-                String.valueOf(cm.getNumberOfRevisions()),
-                String.valueOf(cm.getNumAuthors()),
-                String.valueOf(cm.getChurnMetrics().getVal()),
-                String.valueOf(cm.getChurnMetrics().getMaxVal()),
-                String.format(Locale.US, "%.2f", cm.getChurnMetrics().getAvgVal()),
-                String.valueOf(methodMetrics.getNumberOfCodeSmells()) ,
+
+        // Contesto
+        encoder.appendRaw(escapedTargetName).comma()
+                .appendCachedRaw(analyzedClass.getRelease().getReleaseName()).comma()
+                .appendEscaped(analyzedClass.getClassName(), '/', analyzedMethod.getSignature()).comma()
+
+                .appendLong(methodMetrics.getLoc()).comma()
+                .appendLong(methodMetrics.getParameterCount()).comma()
+                .appendLong(methodMetrics.getCycloComplexity()).comma()
+                .appendLong(methodMetrics.getCognitiveComplexity()).comma()
+                .appendLong(methodMetrics.getNestingDepth()).comma()
+                .appendLong(cm.getNumberOfRevisions()).comma()
+                .appendLong(cm.getNumAuthors()).comma()
+                .appendLong(cm.getChurnMetrics().getVal()).comma()
+                .appendLong(cm.getChurnMetrics().getMaxVal()).comma()
+                .appendFixed2(cm.getChurnMetrics().getAvgVal()).comma()
+                .appendLong(methodMetrics.getNumberOfCodeSmells()).comma()
+
+                // Metriche storiche del metodo (MethodHistoryController)
+                .appendLong(methodMetrics.getNumberOfRevisions()).comma()
+                .appendLong(methodMetrics.getNumAuthors()).comma()
+                .appendLong(methodMetrics.getAge()).comma()
+                .appendLong(methodMetrics.getMethodHistory()).comma()
+                .appendLong(methodMetrics.getAddedLOCMetrics().getVal()).comma()
+                .appendLong(methodMetrics.getRemovedLOCMetrics().getVal()).comma()
+                .appendLong(methodMetrics.getChurnMetrics().getVal()).comma()
+                .appendLong(methodMetrics.getChurnMetrics().getMaxVal()).comma()
+                .appendFixed2(methodMetrics.getChurnMetrics().getAvgVal()).comma()
 
                 // Etichetta (usiamo quella della classe, che è stata calcolata da SZZ)
-                analyzedMethod.isBuggy() ? "yes" : "no"
-        );
+                .appendRaw(analyzedMethod.isBuggy() ? "yes" : "no")
+                .endRow();
     }
 
 
@@ -0,0 +1,259 @@
+package org.apache.utilities.writer;
+
+import org.apache.model.AnalyzedClass;
+import org.apache.utilities.BlockGzipFile;
+import org.apache.utilities.ExecutionPools;
+import org.apache.utilities.RunConfig;
+import org.apache.utilities.dataset.DatasetSchema;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Scrittura del dataset a partizioni: ogni release finisce in un proprio file &lt;target&gt;_dataset.parts/part-NNNNN.csv
+ * (o .csv.gz in modalità compressa), scritto da un CsvWriter dedicato su un executor di I/O, quindi le release
+ * non si contendono più il lock di un unico writer. Ogni partizione ha l'intestazione ed è un CSV valido da sola.
+ * Dopo l'ultima partizione commit() scrive il manifest (una riga per partizione, nell'ordine delle release) con un
+ * rename atomico: la cartella è un dataset completo solo se il manifest esiste. DatasetCsvReader legge la cartella
+ * tramite il manifest come un unico dataset; merge() la ricompone nel CSV unico per chi ne ha bisogno.
+ */
+public class ShardedDatasetWriter implements AutoCloseable {
+
+    public static final String DIRECTORY_SUFFIX = "_dataset.parts";
+    public static final String MANIFEST = "manifest.tsv";
+    private static final String PART_PREFIX = "part-";
+    private static final String WRITERS_KEY = "DATASET_SHARD_WRITERS";
+
+    /**
+     * Partizione del dataset: posizione della release, nome della release, righe scritte e nome del file nella cartella.
+     */
+    public record Part(int index, String release, long rows, String file) {}
+
+    private final Path directory;
+    private final String targetName;
+    private final boolean compressed;
+    private final ExecutorService executor;
+    // Limita le release in scrittura: la fase di scrittura della pipeline attende invece di accumulare classi in memoria
+    private final Semaphore slots;
+    private final List<Future<Part>> pending = new ArrayList<>();
+    private boolean closed;
+
+    public ShardedDatasetWriter(Path directory, String targetName, boolean compressed) throws IOException {
+        this.directory = directory;
+        this.targetName = targetName;
+        this.compressed = compressed;
+        Files.createDirectories(directory);
+        clear(directory);
+        int writers = Math.max(1, RunConfig.getInt(WRITERS_KEY, ExecutionPools.cpuThreads()));
+        this.executor = ExecutionPools.newIoExecutor(writers);
+        this.slots = new Semaphore(writers);
+    }
+
+    public static Path directoryFor(String targetName) {
+        return Paths.get(targetName + DIRECTORY_SUFFIX);
+    }
+
+    public static Path manifestPath(Path directory) {
+        return directory.resolve(MANIFEST);
+    }
+
+    /**
+     * Vero se il percorso è una cartella di partizioni completa (con il manifest).
+     */
+    public static boolean isSharded(Path path) {
+        return Files.isDirectory(path) && Files.isRegularFile(manifestPath(path));
+    }
+
+    /**
+     * Accoda la scrittura della release: ritorna appena un writer è libero, il file viene scritto in background.
+     */
+    public void writeRelease(int index, String releaseName, List<AnalyzedClass> classes) throws IOException {
+        if (closed) throw new IOException("Writer a partizioni già chiuso.");
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrotto in attesa di un writer libero");
+        }
+        try {
+            Future<Part> future = executor.submit(() -> {
+                try {
+                    return writePart(index, releaseName, classes);
+                } finally {
+                    slots.release();
+                }
+            });
+            synchronized (pending) {
+                pending.add(future);
+            }
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw new IOException("Scrittura della release " + releaseName + " rifiutata", e);
+        }
+    }
+
+    private Part writePart(int index, String releaseName, List<AnalyzedClass> classes) throws IOException {
+        Path plain = directory.resolve(String.format(Locale.ROOT, "%s%05d.csv", PART_PREFIX, index));
+        long rows = 0;
+        for (AnalyzedClass analyzedClass : classes) rows += analyzedClass.getMethods().size();
+        try (CsvWriter part = new CsvWriter(plain.toString(), targetName, compressed)) {
+            part.writeHeader();
+            ExecutionPools.onCpu(() -> {
+                part.writeResultsForClass(classes);
+                return null;
+            });
+            return new Part(index, releaseName, rows, part.getPath().getFileName().toString());
+        }
+    }
+
+    /**
+     * Attende tutte le partizioni e scrive il manifest; se anche una sola scrittura è fallita il manifest non viene
+     * scritto e l'errore è rilanciato. Restituisce le partizioni nell'ordine delle release.
+     */
+    public List<Part> commit() throws IOException {
+        List<Part> parts = awaitAll();
+        parts.sort(Comparator.comparingInt(Part::index));
+        writeManifest(directory, parts);
+        return parts;
+    }
+
+    /**
+     * Attende le scritture ancora in corso. Senza commit() la cartella resta senza manifest e non viene letta.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            awaitAll();
+        } finally {
+            executor.close();
+        }
+    }
+
+    private List<Part> awaitAll() throws IOException {
+        List<Future<Part>> futures;
+        synchronized (pending) {
+            futures = new ArrayList<>(pending);
+            pending.clear();
+        }
+        List<Part> parts = new ArrayList<>();
+        IOException failure = null;
+        for (Future<Part> future : futures) {
+            try {
+                parts.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrotto in attesa delle partizioni del dataset");
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                if (failure == null) failure = cause;
+                else failure.addSuppressed(cause);
+            }
+        }
+        if (failure != null) throw failure;
+        return parts;
+    }
+
+    // --- manifest ---
+
+    private static void writeManifest(Path directory, List<Part> parts) throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        for (Part part : parts) {
+            if (part.release().indexOf('\t') >= 0 || part.release().indexOf('\n') >= 0) {
+                throw new IOException("Nome di release non valido per il manifest: " + part.release());
+            }
+            manifest.append(part.index()).append('\t').append(part.rows()).append('\t')
+                    .append(part.file()).append('\t').append(part.release()).append('\n');
+        }
+        Path target = manifestPath(directory);
+        Path tmp = target.resolveSibling(MANIFEST + ".tmp");
+        Files.writeString(tmp, manifest, StandardCharsets.UTF_8);
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Partizioni elencate nel manifest, nell'ordine delle release.
+     */
+    public static List<Part> readManifest(Path directory) throws IOException {
+        List<Part> parts = new ArrayList<>();
+        for (String line : Files.readAllLines(manifestPath(directory), StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split("\t", 4);
+            if (fields.length < 4) throw new IOException("Manifest non valido in " + directory + ": " + line);
+            parts.add(new Part(Integer.parseInt(fields[0]), fields[3], Long.parseLong(fields[1]), fields[2]));
+        }
+        return parts;
+    }
+
+    /**
+     * Rimuove manifest e partizioni di un'esecuzione precedente; il manifest per primo, così una cartella
+     * rimasta a metà non viene mai scambiata per un dataset completo.
+     */
+    private static void clear(Path directory) throws IOException {
+        Files.deleteIfExists(manifestPath(directory));
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, PART_PREFIX + "*")) {
+            for (Path file : stale) Files.deleteIfExists(file);
+        }
+    }
+
+    // --- ricomposizione ---
+
+    /**
+     * Ricompone le partizioni nel CSV unico (target .gz: formato BlockGzipFile con un blocco per release), con
+     * l'intestazione della prima partizione: il risultato è identico a quello di un singolo CsvWriter.
+     */
+    public static void merge(Path directory, Path target) throws IOException {
+        List<Part> parts = readManifest(directory);
+        boolean blocks = BlockGzipFile.isCompressed(target);
+        try (OutputStream out = blocks ? new BlockGzipFile.Writer(target)
+                : new BufferedOutputStream(Files.newOutputStream(target), 1 << 16)) {
+            if (parts.isEmpty()) {
+                out.write((String.join(",", DatasetSchema.names()) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < parts.size(); i++) {
+                Part part = parts.get(i);
+                try (InputStream in = BlockGzipFile.openStream(directory.resolve(part.file()))) {
+                    byte[] header = readLine(in);
+                    if (i == 0) out.write(header);
+                    if (blocks) ((BlockGzipFile.Writer) out).startBlock(part.release());
+                    in.transferTo(out);
+                }
+            }
+        }
+    }
+
+    private static byte[] readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+        int b;
+        while ((b = in.read()) != -1) {
+            line.write(b);
+            if (b == '\n') break;
+        }
+        return line.toByteArray();
+    }
+}
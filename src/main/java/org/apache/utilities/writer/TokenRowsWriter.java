@@ -0,0 +1,68 @@
+package org.apache.utilities.writer;
+
+import org.apache.model.AnalyzedClass;
+import org.apache.model.AnalyzedMethod;
+import org.apache.utilities.metrics.MetricsEngine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Righe del dataset di una run AST le cui metriche statiche vengono dallo scanner lessicale: file rifiutato da
+ * JavaParser e corpo del metodo non analizzabile nemmeno da solo. Il file &lt;target&gt;_dataset_token_rows.csv ha
+ * Release e MethodName come nel CSV del dataset; per queste righe il LOC conta le righe fisiche invece di quelle
+ * del corpo stampato da JavaParser e la CognitiveComplexity è 0, quindi non sono confrontabili con le altre.
+ * Il file viene creato solo alla prima riga; quello di un'esecuzione precedente viene cancellato, così la sua
+ * presenza indica sempre righe dell'ultima run.
+ */
+public class TokenRowsWriter implements AutoCloseable {
+
+    private final Path path;
+    private BufferedWriter writer;
+    private final CsvRowEncoder encoder = new CsvRowEncoder(1024);
+    private int rows;
+
+    public TokenRowsWriter(Path path) throws IOException {
+        this.path = path;
+        Files.deleteIfExists(path);
+    }
+
+    public static Path pathFor(String targetName) {
+        return Paths.get(targetName + "_dataset_token_rows.csv");
+    }
+
+    public synchronized void writeResultsForClass(List<AnalyzedClass> classes) throws IOException {
+        for (AnalyzedClass ac : classes) {
+            for (AnalyzedMethod am : ac.getMethods()) {
+                if (am.getMetricsEngine() != MetricsEngine.TOKEN) continue;
+                if (writer == null) open();
+                encoder.appendEscaped(ac.getRelease().getReleaseName()).comma()
+                        .appendEscaped(ac.getClassName(), '/', am.getSignature()).endRow();
+                rows++;
+            }
+        }
+        if (writer != null) encoder.drainTo(writer);
+    }
+
+    private void open() throws IOException {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        encoder.appendRaw("Release").comma().appendRaw("MethodName").endRow();
+    }
+
+    /**
+     * Righe segnalate finora.
+     */
+    public synchronized int getRows() {
+        return rows;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) writer.close();
+    }
+}
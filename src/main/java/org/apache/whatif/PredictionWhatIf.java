@@ -1,6 +1,8 @@
 package org.apache.whatif;
 
 import org.apache.logging.Printer;
+import org.apache.utilities.dataset.DatasetCsvReader;
+import org.apache.utilities.dataset.InstancesCache;
 import weka.attributeSelection.InfoGainAttributeEval;
 import weka.attributeSelection.Ranker;
 import weka.classifiers.Classifier;
@@ -9,7 +11,7 @@ import weka.classifiers.trees.RandomTree;
 import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils;
+import weka.core.Utils;
 import weka.filters.Filter;
 import weka.filters.supervised.attribute.AttributeSelection;
 import weka.filters.supervised.instance.SMOTE;
@@ -18,17 +20,22 @@ import weka.filters.unsupervised.attribute.RemoveType;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
 public class PredictionWhatIf {
 
+    // Preprocessing del dataset A: da aggiornare insieme a PREPROCESS_VERSION se cambia il codice dei filtri
+    private static final int PREPROCESS_VERSION = 1;
+    private static final double RANKER_THRESHOLD = 0.00;
 
     private PredictionWhatIf(){}
     public static void runPrediction(String datasetAPath, String outputPath,String projectName) throws Exception {
         int featureIdx;
         Instances datasetRaW= loadDataset(datasetAPath);
-        Instances datasetA= preprocess(datasetRaW);
+        Instances datasetA= InstancesCache.shared().get(Paths.get(datasetAPath), preprocessVariant(),
+                () -> preprocess(datasetRaW));
         datasetA=reorderBugginessValues(datasetA);
         final Instances modelHeader= new Instances(datasetA,0);
         Instances datasetBplus= new Instances(modelHeader,0);
@@ -83,7 +90,7 @@ public class PredictionWhatIf {
     }
 
     private static Instances loadDataset(String path) throws Exception {
-        Instances data = new ConverterUtils.DataSource(path).getDataSet();
+        Instances data = DatasetCsvReader.loadDataSource(path);
         if (data.classIndex() == -1) {
             data.setClassIndex(data.numAttributes() - 1);
         }
@@ -110,17 +117,31 @@ public class PredictionWhatIf {
         }
 
 
+        AttributeSelection fs = featureSelection();
+        fs.setInputFormat(data);
+        data = Filter.useFilter(data, fs);
+
+        return data;
+    }
+
+    private static AttributeSelection featureSelection() {
         AttributeSelection fs = new AttributeSelection();
         InfoGainAttributeEval eval = new InfoGainAttributeEval();
         Ranker search = new Ranker();
-        search.setThreshold(0.00);
+        search.setThreshold(RANKER_THRESHOLD);
 
         fs.setEvaluator(eval);
         fs.setSearch(search);
-        fs.setInputFormat(data);
-        data = Filter.useFilter(data, fs);
+        return fs;
+    }
 
-        return data;
+    /**
+     * Variante di InstancesCache per il dataset preprocessato: attributi rimossi, configurazione completa della
+     * feature selection e versione del preprocessing.
+     */
+    private static String preprocessVariant() {
+        return DatasetCsvReader.cacheVariant("whatif-preprocess/" + PREPROCESS_VERSION
+                + "|remove=string,releaseID|select=" + Utils.joinOptions(featureSelection().getOptions()));
     }
 
     // Applica SMOTE per riequilibrare le classi
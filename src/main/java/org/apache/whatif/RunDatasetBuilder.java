@@ -1,8 +1,8 @@
 package org.apache.whatif;
 
 import org.apache.logging.Printer;
+import org.apache.utilities.dataset.DatasetCsvReader;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils;
 
 
 public class RunDatasetBuilder {
@@ -14,7 +14,7 @@ public class RunDatasetBuilder {
 
                 // Carica il dataset A (dal path corretto in base al progetto)
 
-                Instances datasetA = new ConverterUtils.DataSource("datasetA.csv").getDataSet();
+                Instances datasetA = DatasetCsvReader.loadDataSource("datasetA.csv");
 
 
                 // Imposta l'attributo target se necessario
@@ -0,0 +1,89 @@
+package org.apache.utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Ogni blocco letto con readBlock dalla posizione indicata nell'indice contiene esattamente le righe delle sue chiavi,
+ * e l'intero file resta un gzip valido.
+ */
+public class BlockGzipFileTest {
+
+    private Path directory;
+    private Path file;
+    private final Map<String, String> contentByKey = new LinkedHashMap<>();
+
+    @Before
+    public void writeFile() throws IOException {
+        directory = Files.createTempDirectory("block-gzip");
+        file = directory.resolve("demo_dataset.csv" + BlockGzipFile.EXTENSION);
+        // Blocchi piccoli: più chiavi finiscono nello stesso blocco, le più grandi ne aprono uno nuovo
+        try (BlockGzipFile.Writer writer = new BlockGzipFile.Writer(file, 4096)) {
+            for (int k = 0; k < 20; k++) {
+                String key = "4." + k + ".0";
+                StringBuilder lines = new StringBuilder();
+                for (int line = 0; line < (k % 3 == 0 ? 200 : 5); line++) {
+                    lines.append("demo,").append(key).append(",\"m(int, long)\",").append(line * k).append('\n');
+                }
+                writer.startBlock(key);
+                writer.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+                contentByKey.put(key, lines.toString());
+            }
+        }
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(BlockGzipFile.indexPath(file));
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void readBlockMatchesIndex() throws IOException {
+        List<BlockGzipFile.Block> blocks = BlockGzipFile.readIndex(file);
+        assertTrue(blocks.size() > 1);
+        assertTrue(blocks.stream().anyMatch(block -> block.keys().size() > 1));
+
+        List<String> keys = new ArrayList<>();
+        long offset = 0;
+        for (BlockGzipFile.Block block : blocks) {
+            assertEquals(offset, block.offset());
+            offset += block.compressedLength();
+
+            StringBuilder expected = new StringBuilder();
+            for (String key : block.keys()) expected.append(contentByKey.get(key));
+            byte[] raw = BlockGzipFile.readBlock(file, block);
+            assertEquals(block.rawLength(), raw.length);
+            assertEquals(expected.toString(), new String(raw, StandardCharsets.UTF_8));
+            keys.addAll(block.keys());
+        }
+        assertEquals(Files.size(file), offset);
+        assertEquals(new ArrayList<>(contentByKey.keySet()), keys);
+    }
+
+    @Test
+    public void wholeFileIsOneGzipStream() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (String content : contentByKey.values()) expected.write(content.getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = BlockGzipFile.openStream(file)) {
+            assertArrayEquals(expected.toByteArray(), in.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.apache.utilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * JiraHttpClient contro un server HTTP locale: limite di concorrenza, ordine delle pagine, rivalidazione con 304,
+ * corpo gzip, risposte di errore e annullamento.
+ */
+public class JiraHttpClientTest {
+
+    private static final JiraHttpClient.BodyReader<String> TEXT =
+            body -> new String(body.readAllBytes(), StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private String base;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    public void concurrencyIsCapped() throws IOException {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        server.createContext("/slow", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            send(exchange, 200, "ok");
+        });
+        JiraHttpClient client = new JiraHttpClient(2);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) urls.add(base + "/slow?page=" + i);
+
+        List<String> bodies = client.getAll(urls, TEXT);
+
+        assertEquals(8, bodies.size());
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    public void pagesKeepRequestOrder() throws IOException {
+        // Le prime pagine rispondono per ultime
+        server.createContext("/page", exchange -> {
+            int page = Integer.parseInt(exchange.getRequestURI().getQuery().substring("n=".length()));
+            try {
+                Thread.sleep(10L * (6 - page));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            send(exchange, 200, "page-" + page);
+        });
+        JiraHttpClient client = new JiraHttpClient(6);
+        List<String> urls = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            urls.add(base + "/page?n=" + i);
+            expected.add("page-" + i);
+        }
+
+        assertEquals(expected, client.getAll(urls, TEXT));
+    }
+
+    @Test
+    public void notModifiedIsServedFromCache() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        List<String> conditional = new ArrayList<>();
+        server.createContext("/cached", exchange -> {
+            requests.incrementAndGet();
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            synchronized (conditional) {
+                conditional.add(etag);
+            }
+            if ("\"v1\"".equals(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            send(exchange, 200, "contenuto");
+        });
+        Path directory = Files.createTempDirectory("jira-cache");
+        JiraHttpClient client = new JiraHttpClient(2, new HttpResponseCache(directory), false);
+
+        assertEquals("contenuto", client.get(base + "/cached", TEXT));
+        assertEquals("contenuto", client.get(base + "/cached", TEXT));
+        assertEquals(2, requests.get());
+        assertNull(conditional.get(0));
+        assertEquals("\"v1\"", conditional.get(1));
+    }
+
+    @Test
+    public void gzipBodyIsDecompressed() throws IOException {
+        String text = "{\"issues\":[]}".repeat(100);
+        server.createContext("/gzip", exchange -> {
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            if (accepted == null || !accepted.contains("gzip")) {
+                send(exchange, 400, "gzip non richiesto");
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            send(exchange, 200, compressed.toByteArray());
+        });
+        JiraHttpClient client = new JiraHttpClient(1);
+
+        assertEquals(text, client.get(base + "/gzip", TEXT));
+    }
+
+    @Test
+    public void errorStatusFails() {
+        server.createContext("/missing", exchange -> send(exchange, 404, "non trovato"));
+        JiraHttpClient client = new JiraHttpClient(1);
+        try {
+            client.get(base + "/missing", TEXT);
+            fail("attesa IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("404"));
+        }
+    }
+
+    @Test
+    public void cancelReleasesThePermit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/hang", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            send(exchange, 200, "tardi");
+        });
+        server.createContext("/quick", exchange -> send(exchange, 200, "ok"));
+        JiraHttpClient client = new JiraHttpClient(1);
+        try {
+            CompletableFuture<String> hanging = client.getAsync(base + "/hang", TEXT);
+            CompletableFuture<String> queued = client.getAsync(base + "/hang?coda", TEXT);
+            queued.cancel(true);
+            hanging.cancel(true);
+
+            // Con un solo permesso la richiesta successiva parte solo se l'annullamento lo ha restituito
+            assertEquals("ok", client.getAsync(base + "/quick", TEXT).get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.utilities.dataset;
+
+import org.apache.model.AnalyzedClass;
+import org.apache.utilities.writer.CsvWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Andata e ritorno ColumnarDatasetWriter → ColumnarDataset, confrontata con il CSV scritto dalle stesse classi.
+ */
+public class ColumnarDatasetTest {
+
+    private Path directory;
+    private Path csv;
+    private Path cols;
+
+    @Before
+    public void writeBothFormats() throws IOException {
+        directory = Files.createTempDirectory("columnar");
+        csv = directory.resolve("demo_dataset.csv");
+        cols = directory.resolve("demo_dataset" + ColumnarDatasetWriter.EXTENSION);
+        List<List<AnalyzedClass>> releases = DatasetFixture.releases(4, 30, 12, 11);
+        try (CsvWriter writer = new CsvWriter(csv.toString(), "demo");
+             ColumnarDatasetWriter columnar = new ColumnarDatasetWriter(cols, "demo")) {
+            writer.writeHeader();
+            for (List<AnalyzedClass> classes : releases) {
+                writer.writeResultsForClass(classes);
+                columnar.writeResultsForClass(classes);
+            }
+            columnar.commit();
+        }
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void tableMatchesCsv() throws IOException {
+        Table expected = DatasetCsvReader.readTable(csv, "demo");
+        Table actual = ColumnarDataset.open(cols).toTable("demo");
+        assertTablesEqual(expected, actual);
+    }
+
+    @Test
+    public void releasesAndInstancesMatchCsv() throws IOException {
+        ColumnarDataset dataset = ColumnarDataset.open(cols);
+        assertEquals(List.of("4.0.0", "4.1.0", "4.2.0", "4.3.0"), dataset.releases());
+        assertEquals(4 * 30 * 12, dataset.rowCount());
+
+        List<String> selected = List.of("4.1.0", "4.3.0");
+        DatasetCsvReaderTest.assertInstancesEqual(DatasetCsvReader.readInstances(csv, selected, "demo", 1),
+                dataset.toInstances("demo", selected));
+        assertEquals(30 * 12, dataset.toTable("demo", List.of("4.2.0")).rowCount());
+    }
+
+    @Test
+    public void closeWithoutCommitKeepsPreviousFile() throws IOException {
+        byte[] committed = Files.readAllBytes(cols);
+        try (ColumnarDatasetWriter columnar = new ColumnarDatasetWriter(cols, "demo")) {
+            columnar.writeResultsForClass(DatasetFixture.releases(1, 2, 2, 3).getFirst());
+        }
+        assertArrayEquals(committed, Files.readAllBytes(cols));
+        assertFalse(Files.exists(cols.resolveSibling(cols.getFileName() + ".tmp")));
+    }
+
+    private static void assertTablesEqual(Table expected, Table actual) {
+        assertEquals(expected.columnNames(), actual.columnNames());
+        assertEquals(expected.rowCount(), actual.rowCount());
+        for (int c = 0; c < expected.columnCount(); c++) {
+            Column<?> expectedColumn = expected.column(c);
+            Column<?> actualColumn = actual.column(c);
+            assertEquals(expectedColumn.name(), expectedColumn.type(), actualColumn.type());
+            for (int r = 0; r < expected.rowCount(); r++) {
+                assertEquals(expectedColumn.name() + " riga " + r, expectedColumn.getString(r), actualColumn.getString(r));
+            }
+        }
+    }
+}
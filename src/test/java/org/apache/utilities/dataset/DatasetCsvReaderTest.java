@@ -0,0 +1,123 @@
+package org.apache.utilities.dataset;
+
+import org.apache.model.AnalyzedClass;
+import org.apache.utilities.writer.CsvWriter;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import weka.core.Instances;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DatasetCsvReader confrontato con Tablesaw su un CSV con righe CRLF e MethodName tra apici, abbastanza grande
+ * da essere diviso in più intervalli: i confini calcolati cadono a metà riga e vanno spostati alla riga successiva.
+ */
+public class DatasetCsvReaderTest {
+
+    private static final String THREADS_KEY = "DATASET_READER_THREADS";
+    private static final int RELEASES = 3;
+
+    private static Path directory;
+    private static Path csv;
+    private static int rows;
+
+    @BeforeClass
+    public static void writeFixture() throws IOException {
+        directory = Files.createTempDirectory("dataset-reader");
+        Path plain = directory.resolve("demo_dataset.csv");
+        try (CsvWriter writer = new CsvWriter(plain.toString(), "demo")) {
+            writer.writeHeader();
+            for (List<AnalyzedClass> classes : DatasetFixture.releases(RELEASES, 200, 40, 7)) {
+                writer.writeResultsForClass(classes);
+            }
+        }
+        String text = Files.readString(plain, StandardCharsets.UTF_8);
+        rows = (int) text.lines().count() - 1;
+        csv = directory.resolve("demo_dataset_crlf.csv");
+        Files.writeString(csv, text.replace("\r\n", "\n").replace("\n", "\r\n"), StandardCharsets.UTF_8);
+        // Oltre tre intervalli da 1 MB con quattro thread
+        assertTrue(Files.size(csv) > 3L << 20);
+        System.setProperty(THREADS_KEY, "4");
+    }
+
+    @AfterClass
+    public static void cleanUp() throws IOException {
+        System.clearProperty(THREADS_KEY);
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void readTableMatchesTablesaw() throws IOException {
+        Table expected = Table.read().csv(csv.toFile());
+        Table actual = DatasetCsvReader.readTable(csv, expected.name());
+
+        assertEquals(rows, actual.rowCount());
+        assertEquals(expected.columnNames(), actual.columnNames());
+        for (int c = 0; c < expected.columnCount(); c++) {
+            Column<?> expectedColumn = expected.column(c);
+            Column<?> actualColumn = actual.column(c);
+            assertEquals(expectedColumn.name(), expectedColumn.type(), actualColumn.type());
+            for (int r = 0; r < rows; r++) {
+                assertEquals(expectedColumn.name() + " riga " + r, expectedColumn.getString(r), actualColumn.getString(r));
+            }
+        }
+        assertTrue(actual.stringColumn("MethodName").getString(1).contains(", "));
+    }
+
+    @Test
+    public void readInstancesMatchesTablesaw() throws IOException {
+        Table table = Table.read().csv(csv.toFile());
+        Instances instances = DatasetCsvReader.readInstances(csv, null, "demo");
+
+        assertEquals(rows, instances.numInstances());
+        int classIndex = instances.numAttributes() - 1;
+        for (int a = 0; a < classIndex; a++) {
+            Column<?> column = table.column(instances.attribute(a).name());
+            for (int r = 0; r < rows; r++) {
+                assertEquals(column.name() + " riga " + r, Double.parseDouble(column.getString(r)), instances.instance(r).value(a), 0.0);
+            }
+        }
+        Column<?> bugginess = table.column("Bugginess");
+        for (int r = 0; r < rows; r++) {
+            assertEquals(bugginess.getString(r), instances.instance(r).stringValue(classIndex));
+        }
+    }
+
+    @Test
+    public void chunkedReadMatchesSingleThread() throws IOException {
+        Instances single = DatasetCsvReader.readInstances(csv, null, "demo", 1);
+        Instances chunked = DatasetCsvReader.readInstances(csv, null, "demo", 4);
+        assertInstancesEqual(single, chunked);
+
+        List<String> releases = List.of("4.1.0");
+        Instances filtered = DatasetCsvReader.readInstances(csv, releases, "demo", 4);
+        assertEquals(rows / RELEASES, filtered.numInstances());
+        for (int r = 0; r < filtered.numInstances(); r++) {
+            assertEquals(single.instance(rows / RELEASES + r).toString(), filtered.instance(r).toString());
+        }
+    }
+
+    static void assertInstancesEqual(Instances expected, Instances actual) {
+        assertTrue(expected.equalHeadersMsg(actual), expected.equalHeaders(actual));
+        assertEquals(expected.numInstances(), actual.numInstances());
+        for (int r = 0; r < expected.numInstances(); r++) {
+            for (int a = 0; a < expected.numAttributes(); a++) {
+                assertEquals("riga " + r + ", " + expected.attribute(a).name(),
+                        expected.instance(r).value(a), actual.instance(r).value(a), 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.apache.utilities.dataset;
+
+import org.apache.model.AnalyzedClass;
+import org.apache.model.AnalyzedMethod;
+import org.apache.model.ClassMetrics;
+import org.apache.model.LOCMetrics;
+import org.apache.model.MethodMetrics;
+import org.apache.model.Release;
+import org.apache.utilities.metrics.MetricsEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Classi analizzate sintetiche per i test dei formati del dataset: metriche casuali ma riproducibili
+ * e nomi di metodo che nel CSV vanno tra apici (virgole e doppi apici nella firma).
+ */
+public final class DatasetFixture {
+
+    private DatasetFixture() {}
+
+    /**
+     * Classi di ogni release, nell'ordine in cui la pipeline le passa ai writer.
+     */
+    public static List<List<AnalyzedClass>> releases(int releases, int classesPerRelease, int methodsPerClass, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<List<AnalyzedClass>> result = new ArrayList<>();
+        for (int r = 0; r < releases; r++) {
+            Release release = new Release(String.valueOf(1000 + r), "4." + r + ".0", "2020-0" + (r % 9 + 1) + "-15");
+            List<AnalyzedClass> classes = new ArrayList<>();
+            for (int c = 0; c < classesPerRelease; c++) {
+                String className = "src/main/java/org/demo/p" + (c % 7) + "/Class" + c + ".java";
+                AnalyzedClass analyzedClass = new AnalyzedClass(className, "", release, "org.demo", "Class" + c + ".java",
+                        MetricsEngine.TOKEN);
+                ClassMetrics classMetrics = new ClassMetrics();
+                classMetrics.setNumberOfRevisions(random.nextInt(200));
+                classMetrics.setNumAuthors(random.nextInt(20));
+                classMetrics.setChurnMetrics(random.nextInt(5000), random.nextInt(500), random.nextDouble() * 100);
+                analyzedClass.setProcessMetrics(classMetrics);
+                List<AnalyzedMethod> methods = new ArrayList<>();
+                for (int m = 0; m < methodsPerClass; m++) {
+                    AnalyzedMethod method = new AnalyzedMethod(signature(m), m * 10, m * 10 + 9);
+                    method.setMetrics(methodMetrics(random));
+                    method.setBuggy(random.nextInt(10) == 0);
+                    methods.add(method);
+                }
+                analyzedClass.setMethods(methods);
+                classes.add(analyzedClass);
+            }
+            result.add(classes);
+        }
+        return result;
+    }
+
+    private static String signature(int m) {
+        return switch (m % 4) {
+            case 0 -> "run()";
+            case 1 -> "put(Map<String, Integer>, int)";
+            case 2 -> "quote(String \"label\", char)";
+            default -> "method" + m + "(long)";
+        } + "#" + m;
+    }
+
+    private static MethodMetrics methodMetrics(SplittableRandom random) {
+        MethodMetrics metrics = new MethodMetrics();
+        metrics.setLoc(random.nextInt(1, 400));
+        metrics.setParameterCount(random.nextInt(8));
+        metrics.setCycloComplexity(random.nextInt(1, 40));
+        metrics.setCognitiveComplexity(random.nextInt(60));
+        metrics.setNestingDepth(random.nextInt(8));
+        metrics.setNumberOfCodeSmells(random.nextInt(12));
+        metrics.setNumberOfRevisions(random.nextInt(50));
+        metrics.setNumAuthors(random.nextInt(10));
+        metrics.setAge(random.nextInt(3000));
+        metrics.setMethodHistory(random.nextInt(30));
+        metrics.setAddedLOCMetrics(loc(random));
+        metrics.setRemovedLOCMetrics(loc(random));
+        metrics.setChurnMetrics(loc(random));
+        return metrics;
+    }
+
+    private static LOCMetrics loc(SplittableRandom random) {
+        LOCMetrics metrics = new LOCMetrics();
+        metrics.setVal(random.nextInt(2000));
+        metrics.setMaxVal(random.nextInt(300));
+        // Anche valori esattamente a metà fra due centesimi, arrotondati come nel CSV
+        metrics.setAvgVal(random.nextBoolean() ? random.nextDouble() * 50 : random.nextInt(5000) / 100.0 + 0.005);
+        return metrics;
+    }
+}
@@ -0,0 +1,77 @@
+package org.apache.utilities.writer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Confronto di appendFixed2 e fixed2Value con String.format(Locale.US, "%.2f"), che il CSV usava in precedenza.
+ */
+public class CsvRowEncoderTest {
+
+    private static final int SAMPLES = 1_000_000;
+
+    @Test
+    public void fixedValuesMatchFormatter() {
+        double[] values = {
+                0.0, -0.0, 0.005, -0.005, 0.015, 0.125, -0.125, 1.005, 2.675, 1.115, 10.235, 0.994999, 0.995,
+                -0.001, -0.004999, 99.995, 1e9 - 0.005, 1e9 + 0.005, 1.8607728525225E10, 123456789.125,
+                4503599627370.495, 1e15, 1e16, 9.007199254740993E15, 1e300, -1e300, Double.MIN_VALUE,
+                Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+        };
+        for (double value : values) {
+            check(value);
+        }
+    }
+
+    @Test
+    public void ties() {
+        for (long cents = -200_000; cents <= 200_000; cents++) {
+            check((cents + 0.5) / 100.0);
+            check(cents / 100.0 + 0.005);
+        }
+    }
+
+    @Test
+    public void randomValuesMatchFormatter() {
+        SplittableRandom random = new SplittableRandom(20260101L);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Magnitudini da 1e-4 a 1e18, con segno casuale
+            double magnitude = Math.pow(10, random.nextDouble(-4, 18));
+            double value = random.nextBoolean() ? magnitude : -magnitude;
+            check(value);
+            // Valori con esattamente tre decimali, il caso più delicato per l'arrotondamento
+            long thousandths = random.nextLong(-10_000_000_000_000L, 10_000_000_000_000L);
+            check(thousandths / 1000.0);
+        }
+    }
+
+    @Test
+    public void randomBitPatternsMatchFormatter() {
+        SplittableRandom random = new SplittableRandom(7L);
+        for (int i = 0; i < SAMPLES; i++) {
+            check(Double.longBitsToDouble(random.nextLong()));
+        }
+    }
+
+    private static void check(double value) {
+        String expected = String.format(Locale.US, "%.2f", value);
+        CsvRowEncoder encoder = new CsvRowEncoder(32);
+        encoder.appendFixed2(value);
+        StringWriter actual = new StringWriter();
+        try {
+            encoder.drainTo(actual);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        assertEquals("appendFixed2(" + value + ")", expected, actual.toString());
+        if (!Double.isNaN(value)) {
+            assertEquals("fixed2Value(" + value + ")", Double.parseDouble(expected), CsvRowEncoder.fixed2Value(value), 0.0);
+        }
+    }
+}
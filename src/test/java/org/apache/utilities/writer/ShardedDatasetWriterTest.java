@@ -0,0 +1,89 @@
+package org.apache.utilities.writer;
+
+import org.apache.model.AnalyzedClass;
+import org.apache.utilities.BlockGzipFile;
+import org.apache.utilities.dataset.DatasetFixture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Le partizioni ricomposte con merge danno lo stesso CSV di un singolo CsvWriter, in chiaro e compresso.
+ */
+public class ShardedDatasetWriterTest {
+
+    private Path directory;
+    private List<List<AnalyzedClass>> releases;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("sharded");
+        releases = DatasetFixture.releases(5, 40, 10, 5);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void mergeMatchesSingleWriter() throws IOException {
+        Path single = writeSingle(directory.resolve("single.csv"), false);
+        Path merged = directory.resolve("merged.csv");
+        ShardedDatasetWriter.merge(writeShards(false), merged);
+        assertArrayEquals(Files.readAllBytes(single), Files.readAllBytes(merged));
+    }
+
+    @Test
+    public void compressedMergeMatchesSingleWriter() throws IOException {
+        Path single = writeSingle(directory.resolve("single.csv"), true);
+        Path merged = directory.resolve("merged.csv" + BlockGzipFile.EXTENSION);
+        ShardedDatasetWriter.merge(writeShards(true), merged);
+        assertArrayEquals(decompressed(single), decompressed(merged));
+
+        // Le chiavi dei blocchi sono le release in ordine; l'intestazione precede la prima e ha chiave vuota
+        List<String> keys = new ArrayList<>();
+        for (BlockGzipFile.Block block : BlockGzipFile.readIndex(merged)) keys.addAll(block.keys());
+        assertEquals(List.of("", "4.0.0", "4.1.0", "4.2.0", "4.3.0", "4.4.0"), keys);
+    }
+
+    private Path writeSingle(Path file, boolean compressed) throws IOException {
+        try (CsvWriter writer = new CsvWriter(file.toString(), "demo", compressed)) {
+            writer.writeHeader();
+            for (List<AnalyzedClass> classes : releases) writer.writeResultsForClass(classes);
+            return writer.getPath();
+        }
+    }
+
+    private Path writeShards(boolean compressed) throws IOException {
+        Path shards = directory.resolve("demo" + ShardedDatasetWriter.DIRECTORY_SUFFIX);
+        try (ShardedDatasetWriter writer = new ShardedDatasetWriter(shards, "demo", compressed)) {
+            // Le release arrivano in ordine, ma le partizioni possono completarsi in un ordine qualsiasi
+            for (int i = releases.size() - 1; i >= 0; i--) {
+                writer.writeRelease(i, releases.get(i).getFirst().getRelease().getReleaseName(), releases.get(i));
+            }
+            assertEquals(releases.size(), writer.commit().size());
+        }
+        return shards;
+    }
+
+    private static byte[] decompressed(Path file) throws IOException {
+        try (InputStream in = BlockGzipFile.openStream(file)) {
+            return in.readAllBytes();
+        }
+    }
+}